@@ -0,0 +1,325 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.BarMagnet;
+import fieldvisualizer.Charge;
+import fieldvisualizer.CsvWriter;
+import fieldvisualizer.DormandPrinceIntegrator;
+import fieldvisualizer.ElectroMagneticField;
+import fieldvisualizer.Field;
+import fieldvisualizer.Integrator;
+import fieldvisualizer.PathIterator;
+import fieldvisualizer.PointCharge;
+import fieldvisualizer.PathWriter;
+import fieldvisualizer.Scene;
+import fieldvisualizer.SceneFile;
+import fieldvisualizer.SvgWriter;
+import fieldvisualizer.Viewport;
+import fieldvisualizer.Wire;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import static java.lang.Math.PI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+/**
+ * The batch renderer draws the field lines of every scene file in a folder
+ * into PNG pictures, without a display, or exports them as SVG or CSV.
+ * Scenes are drawn at once on a pool of workers, one per processor unless
+ * told otherwise, and each worker traces its scene on its own thread. The
+ * time taken by each scene is printed as it finishes. Usage:
+ * <pre>
+ * java -cp Electric_Field_Simulator.jar electricfieldsimulator.BatchRenderer
+ *         [-threads n] [-smooth] [-format png|svg|csv] scenes [output]
+ * </pre>
+ * Every file ending in .scene in the scenes folder is read, as described
+ * by {@link Scene}, as is every binary scene file ending in .fvs, as
+ * described by {@link SceneFile}, and drawn to a file of the same name in
+ * the output folder, which is the scenes folder if it is not given. A
+ * binary scene is traced straight from the charge store it is loaded into,
+ * so a scene of millions of charges opens in milliseconds. SVG and CSV
+ * files are written line by line as the lines are traced, so the lines of
+ * a scene are never all held in memory.
+ *
+ * @author Jeff Niu
+ */
+public class BatchRenderer {
+
+    /**
+     * The endings of text and binary scene files.
+     */
+    private static final String SCENE = ".scene";
+    private static final String BINARY = "." + SceneDialog.EXTENSION;
+
+    /**
+     * The integrator that steps along the field lines. It is the one the
+     * displays use, but with a shorter longest step, so that the lines of
+     * a picture stay smooth where they are drawn with few points. It keeps
+     * no state, so the workers share it.
+     */
+    private static final Integrator INTEGRATOR
+            = new DormandPrinceIntegrator(3, 0.05, 0.3, 10);
+
+    /**
+     * The size of the sprites of point charges and wires.
+     */
+    private static final int SPRITE = 30;
+
+    /**
+     * Draw a folder of scenes.
+     *
+     * @param args the options, the scenes folder and the output folder
+     * @throws IOException if a folder cannot be read
+     * @throws InterruptedException if interrupted while waiting for the
+     * workers
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean smooth = false;
+        String format = "png";
+        List<String> folders = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-smooth":
+                    smooth = true;
+                    break;
+                case "-format":
+                    format = args[++i];
+                    break;
+                default:
+                    folders.add(args[i]);
+            }
+        }
+        if (folders.isEmpty() || folders.size() > 2
+                || !format.matches("png|svg|csv")) {
+            System.err.println("Usage: BatchRenderer [-threads n] [-smooth]"
+                    + " [-format png|svg|csv] scenes [output]");
+            System.exit(2);
+        }
+        Path input = Paths.get(folders.get(0));
+        Path output = Paths.get(folders.get(folders.size() - 1));
+        Files.createDirectories(output);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input,
+                "*{" + SCENE + "," + BINARY + "}")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> jobs = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Path target = output.resolve(name.substring(0,
+                    name.lastIndexOf('.')) + "." + format);
+            boolean antialiased = smooth;
+            String type = format;
+            jobs.add(workers.submit(() -> {
+                if (type.equals("png")) {
+                    render(file, target, antialiased);
+                } else {
+                    export(file, target, type);
+                }
+                return null;
+            }));
+        }
+        workers.shutdown();
+        int failed = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                jobs.get(i).get();
+            } catch (ExecutionException ex) {
+                System.err.println(files.get(i) + ": " + ex.getCause());
+                failed++;
+            }
+        }
+        System.out.printf("%d scenes in %.0f ms on %d threads, %d failed%n",
+                files.size(), (System.nanoTime() - start) / 1e6, threads,
+                failed);
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Draw one scene into a PNG and print how long each part took.
+     *
+     * @param file the scene file
+     * @param png the picture file
+     * @param smooth whether to antialias the field lines
+     * @throws IOException if the scene cannot be read or the picture
+     * cannot be written
+     */
+    private static void render(Path file, Path png, boolean smooth)
+            throws IOException {
+        long start = System.nanoTime();
+        Loaded scene = load(file);
+        long read = System.nanoTime();
+
+        Viewport view = scene.view;
+        List<PathIterator> trace = scene.field.trace(PI / 6, INTEGRATOR,
+                view);
+        long traced = System.nanoTime();
+
+        int width = view.getWidth();
+        int height = view.getHeight();
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.white);
+        g.fillRect(0, 0, width, height);
+        new FieldPainter().paint(g, trace, view, smooth);
+        drawCharges(g, scene.charges());
+        g.dispose();
+        long drawn = System.nanoTime();
+
+        ImageIO.write(image, "png", png.toFile());
+        long written = System.nanoTime();
+
+        System.out.printf("%s: %d charges, %d lines, read %.1f ms,"
+                + " trace %.1f ms, draw %.1f ms, write %.1f ms%n",
+                file.getFileName(), scene.count, trace.size(),
+                (read - start) / 1e6, (traced - read) / 1e6,
+                (drawn - traced) / 1e6, (written - drawn) / 1e6);
+    }
+
+    /**
+     * Export the field lines of one scene as they are traced and print how
+     * long it took.
+     *
+     * @param file the scene file
+     * @param target the exported file
+     * @param format svg or csv
+     * @throws IOException if the scene cannot be read or the export cannot
+     * be written
+     */
+    private static void export(Path file, Path target, String format)
+            throws IOException {
+        long start = System.nanoTime();
+        Loaded scene = load(file);
+        long read = System.nanoTime();
+
+        int lines;
+        try (PathWriter writer = format.equals("svg")
+                ? new SvgWriter(target, scene.view.getWidth(),
+                        scene.view.getHeight())
+                : new CsvWriter(target)) {
+            scene.field.trace(PI / 6, INTEGRATOR, scene.view, writer);
+            lines = writer.getLines();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        long written = System.nanoTime();
+
+        System.out.printf("%s: %d charges, %d lines, read %.1f ms,"
+                + " trace and write %.1f ms%n", file.getFileName(),
+                scene.count, lines, (read - start) / 1e6,
+                (written - read) / 1e6);
+    }
+
+    /**
+     * Read a text or binary scene file, by its ending.
+     *
+     * @param file the scene file
+     * @return the scene
+     * @throws IOException if the scene cannot be read
+     */
+    private static Loaded load(Path file) throws IOException {
+        if (file.getFileName().toString().endsWith(BINARY)) {
+            SceneFile scene = SceneFile.load(file);
+            Field field = scene.getField();
+            return new Loaded(field, scene.getViewport(),
+                    field.getCharges().size(), scene, null);
+        }
+        Scene scene = Scene.read(file);
+        ElectroMagneticField field = new ElectroMagneticField();
+        field.getCharges().addAll(scene.getCharges());
+        return new Loaded(field, scene.getViewport(),
+                scene.getCharges().size(), null, scene);
+    }
+
+    /**
+     * Draw the charges of a scene over its field lines, as the displays
+     * do.
+     *
+     * @param g the graphics of the picture
+     * @param charges the charges
+     */
+    private static void drawCharges(Graphics2D g,
+            List<? extends Charge> charges) {
+        int r = SPRITE / 2;
+        for (Charge charge : charges) {
+            if (charge instanceof PointCharge) {
+                PointCharge point = (PointCharge) charge;
+                String sprite = point.q > 0 ? "proton.png" : "electron.png";
+                g.drawImage(Sprites.sprite(sprite, SPRITE),
+                        (int) point.x - r, (int) point.y - r, null);
+            } else if (charge instanceof Wire) {
+                Wire wire = (Wire) charge;
+                String sprite = wire.q > 0 ? "inWire.png" : "outWire.png";
+                g.drawImage(Sprites.sprite(sprite, SPRITE),
+                        (int) wire.x - r, (int) wire.y - r, null);
+            } else if (charge instanceof BarMagnet) {
+                BarMagnet magnet = (BarMagnet) charge;
+                Polygon[] halves = MagneticDisplay.magnetToPolygon(
+                        (int) magnet.south.x, (int) magnet.south.y,
+                        (int) magnet.north.x, (int) magnet.north.y);
+                g.setColor(Color.blue);
+                g.fillPolygon(halves[0]);
+                g.setColor(Color.red);
+                g.fillPolygon(halves[1]);
+            }
+        }
+    }
+
+    /**
+     * A scene read from a text or binary file, with the field to trace it
+     * in.
+     */
+    private static class Loaded {
+
+        private final Field field;
+        private final Viewport view;
+        private final int count;
+        private final SceneFile binary;
+        private final Scene text;
+
+        Loaded(Field field, Viewport view, int count, SceneFile binary,
+                Scene text) {
+            this.field = field;
+            this.view = view;
+            this.count = count;
+            this.binary = binary;
+            this.text = text;
+        }
+
+        /**
+         * @return the charges of the scene as objects, which a binary
+         * scene only makes when they are drawn
+         */
+        List<Charge> charges() {
+            return binary != null ? binary.toCharges() : text.getCharges();
+        }
+
+    }
+
+}
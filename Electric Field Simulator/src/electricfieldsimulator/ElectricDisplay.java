@@ -1,21 +1,21 @@
 package electricfieldsimulator;
 
-import static electricfieldsimulator.FieldSimulator.size;
-import fieldvisualizer.Line;
-import fieldvisualizer.PathIterator;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Insets;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
-import static java.lang.Math.PI;
+import java.awt.event.MouseMotionListener;
+import static java.lang.Math.pow;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JPanel;
+import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 
 /**
  *
@@ -25,25 +25,94 @@ public class ElectricDisplay extends JPanel {
 
     private static final int P_RAD = 15;
 
+    /**
+     * The factor that one notch of the mouse wheel zooms by.
+     */
+    private static final double ZOOM = 1.25;
+
+    /**
+     * The difference in potential between adjacent equipotentials, which
+     * puts the outermost one around a lone proton 500 pixels from it.
+     */
+    private static final double CONTOUR_SPACING = 0.002;
+
+    /**
+     * The number of pixels between field lines when they are spread
+     * evenly over the screen.
+     */
+    private static final double SEPARATION = 24;
+
+    /**
+     * The world width of the cells of the index of the charges, which is a
+     * few charges across.
+     */
+    private static final double CELL = 64;
+
+    /**
+     * The length of a step of simulated time when the charges run, the
+     * number of steps per second, the mass of a charge and the softening
+     * length, which let a proton and an electron 100 pixels apart meet in
+     * a few seconds, and pass through each other rather than collide.
+     */
+    private static final double STEP = 4;
+    private static final double RATE = 100;
+    private static final double MASS = 1;
+    private static final double SOFTENING = 8;
+
+    /**
+     * The ratio of charge to mass and the speed of the test particles,
+     * which are electrons that swing around a proton 100 pixels away in
+     * a few seconds.
+     */
+    private static final double PARTICLE_CHARGE = -50;
+    private static final double PARTICLE_SPEED = 0.5;
+
     private final FieldSimulator fieldSim;
 
-    private List<PointCharge> charges;
+    /**
+     * The placed charges, indexed by where they are for picking.
+     */
+    private SpatialIndex<PointCharge> charges;
 
     private ImageIcon proton;
     private ImageIcon electron;
 
+    /**
+     * The images of the charges, scaled to the size they are drawn at.
+     */
+    private BufferedImage protonSprite;
+    private BufferedImage electronSprite;
+
     private JButton protonButton;
     private JButton electronButton;
     private JButton garbageButton;
     private JButton resetButton;
     private JButton menuButton;
+    private JToggleButton smoothButton;
+    private JToggleButton contourButton;
+    private JToggleButton textureButton;
+    private JToggleButton evenButton;
+    private JToggleButton hudButton;
+    private JToggleButton runButton;
+    private JToggleButton particleButton;
+    private JButton saveButton;
+    private JButton openButton;
 
     private Point mouse;
-    private String held;
+    private Held held;
 
     private int mouseX;
     private int mouseY;
 
+    /**
+     * The part of the plane shown on the display, which is zoomed with the
+     * mouse wheel and panned by dragging with the right button, and the
+     * last point of the drag, or null if the view is not being dragged.
+     */
+    private fieldvisualizer.Viewport viewport
+            = fieldvisualizer.Viewport.DEFAULT;
+    private Point panFrom;
+
     /**
      * The local field object for drawing and rendering electric field
      * lines.
@@ -52,6 +121,49 @@ public class ElectricDisplay extends JPanel {
      */
     private fieldvisualizer.Field electricField;
 
+    /**
+     * The renderer that draws the field lines off the event thread.
+     */
+    private FieldRenderer renderer;
+
+    /**
+     * The test particles flying through the field, which are only shown
+     * while they run.
+     */
+    private ParticleLayer particles;
+
+    /**
+     * The simulation that moves the charges while they run, or null if
+     * they are still, and the latest snapshot of the moving charges, which
+     * is what is drawn while they run.
+     */
+    private fieldvisualizer.ChargeSimulation simulation;
+    private volatile List<fieldvisualizer.PointCharge> moving;
+
+    /**
+     * The version of the scene, which is increased whenever a charge is
+     * added, removed or moved.
+     */
+    private int sceneVersion;
+    /**
+     * The version and viewport of the scene in the last snapshot handed to
+     * the renderer.
+     */
+    private int drawnVersion = -1;
+    private fieldvisualizer.Viewport drawnViewport;
+    /**
+     * The snapshot of the moving charges in the last snapshot handed to
+     * the renderer, or null if the charges were still.
+     */
+    private List<fieldvisualizer.PointCharge> drawnMoving;
+
+    /**
+     * The integrator that steps along the field lines, which adapts its
+     * step to how sharply the lines bend.
+     */
+    private final fieldvisualizer.Integrator integrator
+            = new fieldvisualizer.DormandPrinceIntegrator(3, 0.05);
+
     /**
      * Constructor for instantiating display screen
      *
@@ -72,17 +184,20 @@ public class ElectricDisplay extends JPanel {
 
         setBackground(Color.white);
 
-        charges = new ArrayList<>();
+        charges = new SpatialIndex<>(CELL);
 
-        proton = new ImageIcon("proton.png");
-        electron = new ImageIcon("electron.png");
+        proton = Sprites.icon("proton.png");
+        electron = Sprites.icon("electron.png");
+        protonSprite = Sprites.sprite("proton.png", P_RAD * 2);
+        electronSprite = Sprites.sprite("electron.png", P_RAD * 2);
 
         protonButton = new JButton(proton);
         protonButton.setBounds(10, 30, 128, 128);
         add(protonButton);
         protonButton.addActionListener((protonAdd) -> {
             if (held == null) {
-                held = "proton";
+                held = Held.PROTON;
+                sceneChanged();
             }
         });
 
@@ -91,42 +206,148 @@ public class ElectricDisplay extends JPanel {
         add(electronButton);
         electronButton.addActionListener((electronAdd) -> {
             if (held == null) {
-                held = "electron";
+                held = Held.ELECTRON;
+                sceneChanged();
             }
         });
 
         menuButton = new JButton("Menu");
-        menuButton.setBounds(24, 740, 100, 30);
+        menuButton.setBounds(24, 820, 100, 30);
         add(menuButton);
         menuButton.addActionListener((goMenu) -> {
+            stopSimulation();
+            particles.stop();
+            particleButton.setSelected(false);
             held = null;
             charges.clear();
+            sceneChanged();
             fieldSim.setContentPane(fieldSim.menuDisplay);
             fieldSim.pack();
-
-            // Clear the field
-            electricField.getCharges().clear();
         });
 
-        garbageButton = new JButton(new ImageIcon("trash.png"));
+        garbageButton = new JButton(Sprites.icon("trash.png"));
         garbageButton.setBounds(10, 306, 128, 128);
         add(garbageButton);
         garbageButton.addActionListener((dropItem) -> {
             if (held != null) {
                 held = null;
+                sceneChanged();
+            }
+        });
+
+        // Saving and opening share a row of the column
+        saveButton = new JButton("Save");
+        saveButton.setBounds(24, 700, 48, 30);
+        saveButton.setMargin(new Insets(2, 2, 2, 2));
+        add(saveButton);
+        saveButton.addActionListener((save) -> SceneDialog.save(this,
+                shownCharges()));
+
+        // An opened scene replaces the charges on the display. Wires and
+        // magnets cannot be shown here, so they are left out.
+        openButton = new JButton("Open");
+        openButton.setBounds(76, 700, 48, 30);
+        openButton.setMargin(new Insets(2, 2, 2, 2));
+        add(openButton);
+        openButton.addActionListener((open) -> {
+            List<fieldvisualizer.Charge> opened = SceneDialog.open(this);
+            if (opened == null) {
+                return;
+            }
+            stopSimulation();
+            held = null;
+            charges.clear();
+            for (fieldvisualizer.Charge charge : opened) {
+                if (charge instanceof fieldvisualizer.PointCharge) {
+                    fieldvisualizer.PointCharge point
+                            = (fieldvisualizer.PointCharge) charge;
+                    charges.add(new PointCharge(point.x, point.y, point.q),
+                            point.x, point.y);
+                }
+            }
+            sceneChanged();
+        });
+
+        // The field can be drawn as a texture instead of as field lines
+        textureButton = new JToggleButton("Texture");
+        textureButton.setBounds(24, 580, 100, 30);
+        add(textureButton);
+        textureButton.addActionListener((texture) -> {
+            renderer.setTextured(textureButton.isSelected());
+            sceneChanged();
+        });
+
+        // Equipotentials are drawn under the field lines when asked for
+        contourButton = new JToggleButton("Potential");
+        contourButton.setBounds(24, 620, 100, 30);
+        add(contourButton);
+        contourButton.addActionListener((contours) -> {
+            renderer.setContourSpacing(contourButton.isSelected()
+                    ? CONTOUR_SPACING : 0);
+            sceneChanged();
+        });
+
+        // The field lines can be spread evenly instead of from the charges
+        evenButton = new JToggleButton("Even");
+        evenButton.setBounds(24, 660, 100, 30);
+        add(evenButton);
+        evenButton.addActionListener((even) -> {
+            renderer.setSeparation(evenButton.isSelected() ? SEPARATION : 0);
+            sceneChanged();
+        });
+
+        // Antialiasing the field lines is slower, so it is left to the user
+        smoothButton = new JToggleButton("Smooth");
+        smoothButton.setBounds(24, 740, 100, 30);
+        add(smoothButton);
+        smoothButton.addActionListener((smooth) -> {
+            renderer.setAntialiased(smoothButton.isSelected());
+            sceneChanged();
+        });
+
+        // The engine metrics can be shown over the field
+        hudButton = new JToggleButton("Stats");
+        hudButton.setBounds(24, 530, 100, 30);
+        add(hudButton);
+        hudButton.addActionListener((hud) -> repaint());
+
+        // The charges can be let go, to push and pull each other about
+        runButton = new JToggleButton("Run");
+        runButton.setBounds(24, 450, 100, 30);
+        add(runButton);
+        runButton.addActionListener((run) -> {
+            if (runButton.isSelected()) {
+                startSimulation();
+            } else {
+                stopSimulation();
+            }
+        });
+
+        // Electrons can be let loose in the field to show how it pushes
+        // charges about
+        particleButton = new JToggleButton("Particles");
+        particleButton.setBounds(24, 490, 100, 30);
+        add(particleButton);
+        particleButton.addActionListener((fly) -> {
+            if (particleButton.isSelected()) {
+                particles.start();
+                sceneChanged();
+            } else {
+                particles.stop();
+                repaint();
             }
         });
 
         // Hitting this will clear all onscreen objects
         resetButton = new JButton("Reset");
-        resetButton.setBounds(24, 700, 100, 30);
+        resetButton.setBounds(24, 780, 100, 30);
         add(resetButton);
         resetButton.addActionListener((reset) -> {
+            stopSimulation();
             charges.clear();
             held = null;
-
-            // Clear the field
-            electricField.getCharges().clear();
+            viewport = fieldvisualizer.Viewport.DEFAULT;
+            sceneChanged();
         });
 
         mouse = getMousePosition();
@@ -152,34 +373,40 @@ public class ElectricDisplay extends JPanel {
              */
             @Override
             public void mousePressed(MouseEvent e) {
+                mouse = e.getPoint();
+
+                if (SwingUtilities.isRightMouseButton(e)) {
+                    panFrom = mouse;
+                    return;
+                }
+
+                // The charges cannot be moved by hand while they run
+                if (simulation != null) {
+                    return;
+                }
 
                 // if something is held
                 if (held != null) {
 
                     // We create either a negative or positive point
                     // charge based on what is currently held
-                    mouse = getMousePosition();
-                    double x = mouse.getX();
-                    double y = mouse.getY();
-                    double charge = held.equals("proton") ? 1 : -1;
-                    charges.add(new PointCharge(x, y, charge));
+                    double x = viewport.toWorldX(mouse.getX());
+                    double y = viewport.toWorldY(mouse.getY());
+                    charges.add(new PointCharge(x, y, held.charge()), x, y);
                     held = null;
+                    sceneChanged();
 
                 } else {
-                    // check if clicked on point q
-                    if (mouse != null) {
-                        int x = mouse.x;
-                        int y = mouse.y;
-
-                        int size = charges.size();
-                        for (int i = 0; i < size; i++) {
-                            if (Math.abs(x - charges.get(i).x) < P_RAD
-                                    && Math.abs(y - charges.get(i).y) < P_RAD) {
-                                held = charges.get(i).toString();
-                                charges.remove(i);
-                                break;
-                            }
-                        }
+                    // Pick up the charge whose sprite is under the mouse
+                    double x = viewport.toWorldX(mouse.getX());
+                    double y = viewport.toWorldY(mouse.getY());
+                    PointCharge charge = charges.pick(x, y,
+                            P_RAD * viewport.getPixelSize(), (c) -> Math.max(
+                                    Math.abs(c.x - x), Math.abs(c.y - y)));
+                    if (charge != null) {
+                        held = Held.of(charge);
+                        charges.remove(charge);
+                        sceneChanged();
                     }
 
                 }
@@ -188,6 +415,7 @@ public class ElectricDisplay extends JPanel {
 
             @Override
             public void mouseReleased(MouseEvent e) {
+                panFrom = null;
             }
 
             @Override
@@ -199,19 +427,107 @@ public class ElectricDisplay extends JPanel {
             }
         });
 
-        // Initialize the field object
-        electricField = new fieldvisualizer.ElectroMagneticField();
-
-        // We will redraw everything on a set delay
-        Timer drawer = new Timer();
-        drawer.scheduleAtFixedRate(new TimerTask() {
+        // The held charge follows the mouse, so moving the mouse while
+        // holding a charge changes the scene
+        addMouseMotionListener(new MouseMotionListener() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                mouse = e.getPoint();
+                mouseX = e.getX();
+                mouseY = e.getY();
+                if (held != null) {
+                    sceneChanged();
+                }
+            }
 
             @Override
-            public void run() {
-                repaint();
+            public void mouseDragged(MouseEvent e) {
+                if (panFrom != null) {
+                    viewport = viewport.pan(e.getX() - panFrom.x,
+                            e.getY() - panFrom.y);
+                    panFrom = e.getPoint();
+                    sceneChanged();
+                }
+                mouseMoved(e);
             }
+        });
+
+        // The wheel zooms about the point under the mouse
+        addMouseWheelListener((e) -> {
+            viewport = viewport.zoom(pow(ZOOM, -e.getPreciseWheelRotation()),
+                    e.getX(), e.getY());
+            sceneChanged();
+        });
+
+        // Initialize the field object, tracing its lines on every core
+        fieldvisualizer.ElectroMagneticField field
+                = new fieldvisualizer.ElectroMagneticField();
+        field.setTracer(new fieldvisualizer.ParallelTracer());
+        electricField = field;
+        // The work of each frame is published for JConsole as well
+        fieldvisualizer.EngineMetrics metrics
+                = new fieldvisualizer.EngineMetrics("Electric");
+        metrics.register();
+        renderer = new FieldRenderer(this, field, integrator, metrics);
+        particles = new ParticleLayer(this, PARTICLE_CHARGE, PARTICLE_SPEED);
+    }
 
-        }, 100, 100);
+    /**
+     * Let the charges go. The charges are handed to a simulation, which
+     * moves them on its own thread and publishes snapshots of them, which
+     * are drawn until the charges are stopped. A charge held by the mouse
+     * stays held.
+     */
+    private void startSimulation() {
+        fieldvisualizer.ChargeDynamics dynamics
+                = new fieldvisualizer.ChargeDynamics(charges.items(), MASS,
+                        SOFTENING);
+        moving = dynamics.snapshot();
+        simulation = new fieldvisualizer.ChargeSimulation(dynamics, STEP,
+                RATE, (snapshot) -> {
+                    moving = snapshot;
+                    repaint();
+                });
+        simulation.start();
+        sceneChanged();
+    }
+
+    /**
+     * Stop the charges where they are. Once the simulation has stopped,
+     * the charges are indexed again at their new positions.
+     */
+    private void stopSimulation() {
+        if (simulation == null) {
+            return;
+        }
+        simulation.stop();
+        simulation = null;
+        moving = null;
+        List<PointCharge> moved = new ArrayList<>(charges.items());
+        charges.clear();
+        for (PointCharge charge : moved) {
+            charges.add(charge, charge.x, charge.y);
+        }
+        runButton.setSelected(false);
+        sceneChanged();
+    }
+
+    /**
+     * @return the charges as they are drawn: the latest snapshot while
+     * they run, and the placed charges otherwise
+     */
+    private List<? extends fieldvisualizer.PointCharge> shownCharges() {
+        List<fieldvisualizer.PointCharge> snapshot = moving;
+        return snapshot != null ? snapshot : charges.items();
+    }
+
+    /**
+     * Record that the charges, or the charge held by the mouse, have
+     * changed, so that the field lines are traced again on the next paint.
+     */
+    private void sceneChanged() {
+        sceneVersion++;
+        repaint();
     }
 
     /**
@@ -230,58 +546,79 @@ public class ElectricDisplay extends JPanel {
             mouseY = (int) mouse.getY();
         }
 
-        // Draw the electric field lines
-        drawField(g);
+        // Trace the field again only if the scene has changed
+        drawField();
+
+        // Draw the last frame of electric field lines
+        BufferedImage frame = renderer.getFrame();
+        if (frame != null) {
+            synchronized (frame) {
+                g.drawImage(frame, 0, 0, this);
+            }
+        }
+
+        // Draw the trails of the test particles over the field lines
+        BufferedImage trails = particles.getFrame();
+        if (trails != null) {
+            synchronized (trails) {
+                g.drawImage(trails, 0, 0, this);
+            }
+        }
 
         drawCharges(g);
         drawHeld(g);
         drawText(g);
+        if (hudButton.isSelected()) {
+            MetricsHud.paint(g, renderer.getMetrics(), getWidth() - 10, 10);
+        }
     }
 
     /**
-     * Transfer the charges into the electric field and draw the electric
-     * field lines.
+     * Take a snapshot of the charges and hand it to the renderer, which
+     * traces and draws the electric field lines in the background. Nothing
+     * is done if the scene and the viewport are the same as in the last
+     * snapshot, in which case the last frame is still current. While the
+     * charges run, each new snapshot of them is a new scene.
      *
-     * @param g
      * @author Jeff Niu
      */
-    private void drawField(Graphics g) {
-        // Transfer charges into the field
-        electricField.getCharges().clear();
-        electricField.getCharges().addAll(charges);
+    private void drawField() {
+        if (viewport.getWidth() != getWidth()
+                || viewport.getHeight() != getHeight()) {
+            viewport = viewport.resize(getWidth(), getHeight());
+        }
+        // The snapshot is read once, since the simulation may replace it
+        List<fieldvisualizer.PointCharge> snapshot = moving;
+        if (sceneVersion == drawnVersion && viewport == drawnViewport
+                && snapshot == drawnMoving) {
+            return;
+        }
+        drawnVersion = sceneVersion;
+        drawnViewport = viewport;
+        drawnMoving = snapshot;
+        List<fieldvisualizer.Charge> scene = new ArrayList<>(
+                snapshot != null ? snapshot : charges.items());
         // Add the charge held by the mouse
         if (held != null) {
-            fieldvisualizer.Charge heldCharge = new PointCharge(mouseX,
-                    mouseY, held.equals("proton") ? 1 : -1);
-            electricField.add(heldCharge);
+            fieldvisualizer.Charge heldCharge = new PointCharge(
+                    viewport.toWorldX(mouseX), viewport.toWorldY(mouseY),
+                    held.charge());
+            scene.add(heldCharge);
         }
-        List<PathIterator> trace = electricField.trace(PI / 6, 3);
-        for (PathIterator path : trace) {
-            while (path.hasNext()) {
-                Line l = path.next();
-                if (l.p.x > size.width || l.p.x < 0) {
-                    continue;
-                }
-                if (l.p.y > size.height || l.p.y < 0) {
-                    continue;
-                }
-                g.drawLine((int) l.p.x, (int) l.p.y, (int) l.q.x, (int) l.q.y);
-            }
+        renderer.request(scene, viewport);
+        if (particles.isRunning()) {
+            particles.setScene(scene, viewport);
         }
     }
 
     private void drawCharges(Graphics g) {
-        int size = charges.size();
-        for (int i = 0; i < size; i++) {
-            PointCharge charge = charges.get(i);
-            int x = (int) charge.x;
-            int y = (int) charge.y;
+        for (fieldvisualizer.PointCharge charge : shownCharges()) {
+            int x = (int) viewport.toScreenX(charge.x);
+            int y = (int) viewport.toScreenY(charge.y);
             if (charge.q > 0) {
-                g.drawImage(new ImageIcon("proton.png").getImage(), x - P_RAD,
-                        y - P_RAD, P_RAD * 2, P_RAD * 2, this);
+                g.drawImage(protonSprite, x - P_RAD, y - P_RAD, this);
             } else if (charge.q < 0) {
-                g.drawImage(new ImageIcon("electron.png").getImage(), x - P_RAD,
-                        y - P_RAD, P_RAD * 2, P_RAD * 2, this);
+                g.drawImage(electronSprite, x - P_RAD, y - P_RAD, this);
             }
         }
     }
@@ -292,14 +629,14 @@ public class ElectricDisplay extends JPanel {
 
     private void drawHeld(Graphics g) {
         if (held != null) {
-            switch (held) {
-                case "proton":
-                    g.drawImage(proton.getImage(), mouseX - P_RAD,
-                            mouseY - P_RAD, P_RAD * 2, P_RAD * 2, this);
+            switch (held.kind) {
+                case PROTON:
+                    g.drawImage(protonSprite, mouseX - P_RAD,
+                            mouseY - P_RAD, this);
                     break;
-                case "electron":
-                    g.drawImage(electron.getImage(), mouseX - P_RAD,
-                            mouseY - P_RAD, P_RAD * 2, P_RAD * 2, this);
+                case ELECTRON:
+                    g.drawImage(electronSprite, mouseX - P_RAD,
+                            mouseY - P_RAD, this);
                     break;
             }
         }
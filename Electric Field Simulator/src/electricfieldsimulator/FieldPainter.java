@@ -0,0 +1,252 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.PathIterator;
+import fieldvisualizer.Viewport;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The field painter draws traced field lines, with their arrows, in black,
+ * and equipotentials in a light blue. Each painter reuses its own buffers
+ * from one frame to the next, so a painter must only be used by one thread
+ * at a time.
+ *
+ * @author Jeff Niu
+ */
+class FieldPainter {
+
+    /**
+     * The number of pixels between the points at which the potential is
+     * sampled to find the equipotentials.
+     */
+    static final double CONTOUR_CELL = 4;
+    /**
+     * The number of equipotentials drawn on each side of zero.
+     */
+    static final int CONTOUR_LEVELS = 24;
+    /**
+     * The colour of the equipotentials, which is kept light so that the
+     * field lines stand out over it.
+     */
+    private static final Color CONTOUR_COLOR = new Color(120, 160, 220);
+
+    /**
+     * The points of the run of a field line being drawn, rounded down for
+     * polylines and exact for antialiased paths, and the path reused to
+     * draw the exact points.
+     */
+    private int[] runX = new int[256];
+    private int[] runY = new int[256];
+    private float[] runXs = new float[256];
+    private float[] runYs = new float[256];
+    private final Path2D.Float shape = new Path2D.Float();
+    /**
+     * The ends of the strokes of the arrowhead being drawn.
+     */
+    private final double[] head = new double[4];
+
+    /**
+     * The viewport of the frame being painted, whose size is kept as the
+     * size of the frame.
+     */
+    private Viewport view;
+    private int width;
+    private int height;
+
+    /**
+     * Draw field lines into a frame seen through a viewport. The lines are
+     * moved to the screen by the viewport, while the arrowheads keep their
+     * size, and roughly their spacing, in pixels at any zoom.
+     *
+     * @param g the graphics of the frame
+     * @param trace the field lines
+     * @param view the viewport of the frame
+     * @param smooth whether to antialias the field lines
+     */
+    void paint(Graphics2D g, List<PathIterator> trace, Viewport view,
+            boolean smooth) {
+        this.view = view;
+        width = view.getWidth();
+        height = view.getHeight();
+        g.setColor(Color.black);
+        if (smooth) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                    RenderingHints.VALUE_STROKE_PURE);
+        }
+        for (PathIterator path : trace) {
+            drawPath(g, path, smooth);
+        }
+    }
+
+    /**
+     * Draw equipotentials, given as separate segments in world coordinates,
+     * into a frame seen through a viewport. Without antialiasing each
+     * segment is drawn as a line; with it, the segments are gathered into
+     * one path.
+     *
+     * @param g the graphics of the frame
+     * @param segments the ends of the segments, four numbers per segment
+     * @param view the viewport of the frame
+     * @param smooth whether to antialias the equipotentials
+     */
+    void paintContours(Graphics2D g, float[] segments, Viewport view,
+            boolean smooth) {
+        g.setColor(CONTOUR_COLOR);
+        if (smooth) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            shape.reset();
+        }
+        for (int i = 0; i < segments.length; i += 4) {
+            double x1 = view.toScreenX(segments[i]);
+            double y1 = view.toScreenY(segments[i + 1]);
+            double x2 = view.toScreenX(segments[i + 2]);
+            double y2 = view.toScreenY(segments[i + 3]);
+            if (smooth) {
+                shape.moveTo(x1, y1);
+                shape.lineTo(x2, y2);
+            } else {
+                g.drawLine((int) x1, (int) y1, (int) x2, (int) y2);
+            }
+        }
+        if (smooth) {
+            g.draw(shape);
+        }
+    }
+
+    /**
+     * Draw a field line and its arrows. The segments of the line that are
+     * entirely to one side of the frame are left out, and each unbroken run
+     * of the remaining segments is drawn in one call, as a polyline or, if
+     * the frame is antialiased, as a path with fractional coordinates.
+     *
+     * @param g the graphics of the frame
+     * @param path the field line
+     * @param smooth whether the frame is antialiased
+     */
+    private void drawPath(Graphics2D g, PathIterator path, boolean smooth) {
+        int size = path.size();
+        int run = 0;
+        double px = 0;
+        double py = 0;
+        int outcode = 0;
+        if (size > 0) {
+            px = view.toScreenX(path.getX(0));
+            py = view.toScreenY(path.getY(0));
+            outcode = outcode(px, py, width, height);
+        }
+        for (int i = 1; i < size; i++) {
+            double x = view.toScreenX(path.getX(i));
+            double y = view.toScreenY(path.getY(i));
+            int next = outcode(x, y, width, height);
+            if ((outcode & next) == 0) {
+                if (run == 0) {
+                    run = add(run, px, py);
+                }
+                run = add(run, x, y);
+            } else if (run > 0) {
+                flush(g, run, smooth);
+                run = 0;
+            }
+            outcode = next;
+            px = x;
+            py = y;
+        }
+        if (run > 0) {
+            flush(g, run, smooth);
+        }
+        // Each arrowhead is a run of three points through its tip, and
+        // arrows are skipped when zoomed out to keep them apart on screen
+        int every = (int) Math.max(1, Math.round(view.getPixelSize()));
+        for (int i = 0; i < path.getArrowCount(); i += every) {
+            int k = path.getArrow(i);
+            double tx = path.getX(k);
+            double ty = path.getY(k);
+            double x = view.toScreenX(tx);
+            double y = view.toScreenY(ty);
+            if (outcode(x, y, width, height) != 0) {
+                continue;
+            }
+            path.getArrowHead(i, head);
+            run = add(0, x + head[0] - tx, y + head[1] - ty);
+            run = add(run, x, y);
+            run = add(run, x + head[2] - tx, y + head[3] - ty);
+            flush(g, run, smooth);
+        }
+    }
+
+    /**
+     * Find on which sides of the frame a point lies, as in Cohen-Sutherland
+     * clipping. A segment whose ends share a side is not visible.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @return a bit for each side of the frame that the point is beyond
+     */
+    private static int outcode(double x, double y, int width, int height) {
+        int code = 0;
+        if (x < 0) {
+            code |= 1;
+        } else if (x > width) {
+            code |= 2;
+        }
+        if (y < 0) {
+            code |= 4;
+        } else if (y > height) {
+            code |= 8;
+        }
+        return code;
+    }
+
+    /**
+     * Append a point to the run being built, growing the buffers if
+     * needed.
+     *
+     * @param run the number of points in the run
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the new number of points in the run
+     */
+    private int add(int run, double x, double y) {
+        if (run == runX.length) {
+            runX = Arrays.copyOf(runX, run * 2);
+            runY = Arrays.copyOf(runY, run * 2);
+            runXs = Arrays.copyOf(runXs, run * 2);
+            runYs = Arrays.copyOf(runYs, run * 2);
+        }
+        runX[run] = (int) x;
+        runY[run] = (int) y;
+        runXs[run] = (float) x;
+        runYs[run] = (float) y;
+        return run + 1;
+    }
+
+    /**
+     * Draw the run that has been built.
+     *
+     * @param g the graphics of the frame
+     * @param run the number of points in the run
+     * @param smooth whether to draw with fractional coordinates
+     */
+    private void flush(Graphics2D g, int run, boolean smooth) {
+        if (!smooth) {
+            g.drawPolyline(runX, runY, run);
+            return;
+        }
+        shape.reset();
+        shape.moveTo(runXs[0], runYs[0]);
+        for (int i = 1; i < run; i++) {
+            shape.lineTo(runXs[i], runYs[i]);
+        }
+        g.draw(shape);
+    }
+
+}
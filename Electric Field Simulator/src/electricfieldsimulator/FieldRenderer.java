@@ -0,0 +1,378 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.Charge;
+import fieldvisualizer.ChargeStore;
+import fieldvisualizer.ElectroMagneticField;
+import fieldvisualizer.EngineMetrics;
+import fieldvisualizer.Integrator;
+import fieldvisualizer.PathIterator;
+import fieldvisualizer.PotentialGrid;
+import fieldvisualizer.Viewport;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import static java.lang.Math.PI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.JComponent;
+
+/**
+ * The field renderer traces and draws the field lines of a display on a
+ * background thread, so that a heavy scene does not hold up the event
+ * thread. The display hands the renderer a snapshot of its charges, and
+ * the renderer draws the field lines into an off-screen image. Two images
+ * are used in turn: one holds the last finished frame, which the display
+ * draws, while the other is drawn into. A finished frame is published in
+ * one step and the display is asked to repaint. Requests made while a
+ * frame is being drawn replace each other, so only the latest scene is
+ * drawn next. Every frame drawn, and every request replaced, is recorded
+ * in the metrics of the renderer.
+ *
+ * @author Jeff Niu
+ */
+public class FieldRenderer {
+
+    /**
+     * The number of pixels between the points of the grid that the field
+     * is sampled onto for tracing.
+     */
+    private static final double GRID_CELL = 2;
+
+    /**
+     * The display that shows the frames.
+     */
+    private final JComponent display;
+
+    /**
+     * The field that the snapshots are traced in, which is only used by
+     * the render thread. Its grid is kept over the viewport of the last
+     * frame, so a scene that has not changed since is traced from the
+     * same samples.
+     */
+    private final ElectroMagneticField field;
+
+    /**
+     * The integrator that steps along the field lines.
+     */
+    private final Integrator integrator;
+
+    /**
+     * The metrics that the frames are recorded in.
+     */
+    private final EngineMetrics metrics;
+
+    /**
+     * The last finished frame, or null if none has been drawn.
+     */
+    private final AtomicReference<BufferedImage> frame;
+
+    /**
+     * The image that is not the finished frame, which the next frame is
+     * drawn into.
+     */
+    private BufferedImage back;
+
+    /**
+     * Whether the field lines are drawn antialiased, which is off unless
+     * asked for since it is several times slower.
+     */
+    private volatile boolean antialiased;
+
+    /**
+     * The difference in potential between adjacent equipotentials, or zero
+     * if they are not drawn.
+     */
+    private volatile double contourSpacing;
+
+    /**
+     * Whether the field is drawn as a texture by line integral convolution
+     * instead of as field lines.
+     */
+    private volatile boolean textured;
+
+    /**
+     * The number of pixels between field lines that are spread evenly
+     * over the frame, or zero if the lines are traced from the charges.
+     */
+    private volatile double separation;
+
+    /**
+     * The painters of the field lines and of the texture, which are only
+     * used by the render thread.
+     */
+    private final FieldPainter painter = new FieldPainter();
+    private final LicPainter lic = new LicPainter();
+
+    /**
+     * The pixels that the texture is drawn into before it is copied into
+     * the image, which are only used by the render thread.
+     */
+    private int[] pixels = new int[0];
+
+    /**
+     * The latest requested scene that has not been drawn yet, guarded by
+     * this renderer.
+     */
+    private Request pending;
+
+    /**
+     * Create a renderer and start its thread.
+     *
+     * @param display the display that shows the frames
+     * @param field the field to trace the snapshots in
+     * @param integrator the integrator that steps along the lines
+     * @param metrics the metrics to record the frames in
+     */
+    public FieldRenderer(JComponent display, ElectroMagneticField field,
+            Integrator integrator, EngineMetrics metrics) {
+        this.display = display;
+        this.field = field;
+        this.integrator = integrator;
+        this.metrics = metrics;
+        frame = new AtomicReference<>();
+        Thread worker = new Thread(this::run, "Field renderer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Request that a scene be drawn. Each charge is copied as it is now,
+     * so the caller may keep moving its charges and changing its lists
+     * while the scene is traced.
+     *
+     * @param charges the charges in the scene
+     * @param view the viewport, which gives the size of the frame
+     */
+    public void request(List<? extends Charge> charges, Viewport view) {
+        List<Charge> copies = new ArrayList<>(charges.size());
+        for (Charge charge : charges) {
+            copies.add(charge.copy());
+        }
+        synchronized (this) {
+            if (pending != null) {
+                metrics.recordSkipped();
+            }
+            pending = new Request(copies, view);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Set whether the field lines are drawn antialiased. The change shows
+     * from the next frame drawn.
+     *
+     * @param antialiased whether to antialias the field lines
+     */
+    public void setAntialiased(boolean antialiased) {
+        this.antialiased = antialiased;
+    }
+
+    /**
+     * @return whether the field lines are drawn antialiased
+     */
+    public boolean isAntialiased() {
+        return antialiased;
+    }
+
+    /**
+     * Set whether equipotentials are drawn under the field lines, and how
+     * far apart they are. The change shows from the next frame drawn.
+     *
+     * @param spacing the difference in potential between adjacent
+     * equipotentials, or zero to draw none
+     */
+    public void setContourSpacing(double spacing) {
+        contourSpacing = spacing;
+    }
+
+    /**
+     * @return the difference in potential between adjacent equipotentials,
+     * or zero if they are not drawn
+     */
+    public double getContourSpacing() {
+        return contourSpacing;
+    }
+
+    /**
+     * Set whether the field is drawn as a texture that follows the field
+     * everywhere, instead of as field lines. The change shows from the
+     * next frame drawn.
+     *
+     * @param textured whether to draw the field as a texture
+     */
+    public void setTextured(boolean textured) {
+        this.textured = textured;
+    }
+
+    /**
+     * @return whether the field is drawn as a texture
+     */
+    public boolean isTextured() {
+        return textured;
+    }
+
+    /**
+     * Set whether the field lines are spread evenly over the frame, and
+     * how far apart they are. The change shows from the next frame drawn.
+     *
+     * @param separation the number of pixels between the field lines, or
+     * zero to trace them from the charges
+     */
+    public void setSeparation(double separation) {
+        this.separation = separation;
+    }
+
+    /**
+     * @return the number of pixels between field lines that are spread
+     * evenly, or zero if they are traced from the charges
+     */
+    public double getSeparation() {
+        return separation;
+    }
+
+    /**
+     * @return the metrics that the frames are recorded in
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the last finished frame, or null if none has been drawn
+     */
+    public BufferedImage getFrame() {
+        return frame.get();
+    }
+
+    /**
+     * Wait for the next requested scene.
+     *
+     * @return the scene to draw
+     * @throws InterruptedException if the thread is interrupted
+     */
+    private synchronized Request take() throws InterruptedException {
+        while (pending == null) {
+            wait();
+        }
+        Request request = pending;
+        pending = null;
+        return request;
+    }
+
+    /**
+     * Draw requested scenes until the thread is interrupted.
+     */
+    private void run() {
+        try {
+            while (true) {
+                Request request = take();
+                BufferedImage image = back;
+                int width = request.view.getWidth();
+                int height = request.view.getHeight();
+                if (image == null || image.getWidth() != width
+                        || image.getHeight() != height) {
+                    image = new BufferedImage(width, height,
+                            BufferedImage.TYPE_INT_ARGB);
+                }
+                draw(request, image);
+                back = frame.getAndSet(image);
+                display.repaint();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Trace the field lines of a scene and draw them into an image, and
+     * record the frame. The event thread may still be drawing the image if
+     * it was the frame before last, so the lines, the equipotentials and
+     * the texture are all worked out first, and the image is only locked
+     * while they are drawn into it. The time spent tracing the field lines
+     * is kept apart from the time spent on everything else, which is
+     * drawing the lines and any texture or equipotentials.
+     *
+     * @param request the scene
+     * @param image the image to draw into
+     */
+    private void draw(Request request, BufferedImage image) {
+        long start = System.nanoTime();
+        long traceNanos = 0;
+        List<PathIterator> trace = Collections.emptyList();
+        boolean smooth = antialiased;
+        double spacing = contourSpacing;
+        boolean texture = textured;
+        double apart = separation;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (texture) {
+            if (pixels.length != width * height) {
+                pixels = new int[width * height];
+            }
+            lic.paint(pixels, width, height,
+                    new ChargeStore(request.charges), request.view);
+        }
+        float[] contours = null;
+        if (spacing > 0) {
+            PotentialGrid grid = new PotentialGrid(
+                    new ChargeStore(request.charges), request.view,
+                    FieldPainter.CONTOUR_CELL);
+            contours = grid.contours(spacing, FieldPainter.CONTOUR_LEVELS);
+        }
+        if (!texture) {
+            field.getCharges().clear();
+            field.getCharges().addAll(request.charges);
+            field.setGrid(request.view, GRID_CELL);
+            long traced = System.nanoTime();
+            if (apart > 0) {
+                trace = new ArrayList<>();
+                field.traceEvenly(PI / 6, integrator, request.view, apart,
+                        trace::add);
+            } else {
+                trace = field.trace(PI / 6, integrator, request.view);
+            }
+            traceNanos = System.nanoTime() - traced;
+        }
+        synchronized (image) {
+            Graphics2D g = image.createGraphics();
+            if (texture) {
+                // The texture covers every pixel, so nothing is cleared
+                System.arraycopy(pixels, 0,
+                        ((DataBufferInt) image.getRaster().getDataBuffer())
+                        .getData(), 0, width * height);
+            } else {
+                g.setComposite(AlphaComposite.Clear);
+                g.fillRect(0, 0, width, height);
+                g.setComposite(AlphaComposite.SrcOver);
+            }
+            if (contours != null) {
+                painter.paintContours(g, contours, request.view, smooth);
+            }
+            if (!texture) {
+                painter.paint(g, trace, request.view, smooth);
+            }
+            g.dispose();
+        }
+        metrics.recordFrame(trace, traceNanos,
+                System.nanoTime() - start - traceNanos);
+    }
+
+    /**
+     * A snapshot of a scene to be drawn.
+     */
+    private static class Request {
+
+        private final List<Charge> charges;
+        private final Viewport view;
+
+        Request(List<Charge> charges, Viewport view) {
+            this.charges = charges;
+            this.view = view;
+        }
+
+    }
+
+}
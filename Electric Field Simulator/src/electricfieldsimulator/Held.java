@@ -0,0 +1,183 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.BarMagnet;
+import fieldvisualizer.Vector;
+
+/**
+ * A held object is what the mouse holds in a display: a charge or wire
+ * taken from its button or picked up from the scene, or a bar magnet
+ * being placed. A magnet is placed by clicking both of its ends, so a
+ * magnet that has only its first end is held too, with the position of
+ * that end, and a magnet that has been picked up keeps its length and
+ * angle. Held objects do not change; turning a magnet gives a new one.
+ *
+ * @author Jeff Niu
+ */
+final class Held {
+
+    /**
+     * The kinds of held objects, with the names shown on the display.
+     */
+    enum Kind {
+
+        PROTON("proton"),
+        ELECTRON("electron"),
+        IN_WIRE("inWire"),
+        OUT_WIRE("outWire"),
+        MAGNET_START("placeMagnet"),
+        MAGNET_END("finishMagnet"),
+        MAGNET("magnet");
+
+        private final String name;
+
+        Kind(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    /**
+     * The objects that have nothing but their kind.
+     */
+    static final Held PROTON = new Held(Kind.PROTON, 0, 0, 0, 0);
+    static final Held ELECTRON = new Held(Kind.ELECTRON, 0, 0, 0, 0);
+    static final Held IN_WIRE = new Held(Kind.IN_WIRE, 0, 0, 0, 0);
+    static final Held OUT_WIRE = new Held(Kind.OUT_WIRE, 0, 0, 0, 0);
+    static final Held MAGNET_START = new Held(Kind.MAGNET_START, 0, 0, 0,
+            0);
+
+    /**
+     * The kind of the object.
+     */
+    final Kind kind;
+    /**
+     * The world position of the first end of a magnet waiting for its
+     * second end.
+     */
+    private final double startX;
+    private final double startY;
+    /**
+     * The world length from the centre of a magnet to each end, and the
+     * angle it points in.
+     */
+    private final double length;
+    private final double angle;
+    /**
+     * The text shown on the display, which is made once rather than on
+     * every paint.
+     */
+    private final String text;
+
+    private Held(Kind kind, double startX, double startY, double length,
+            double angle) {
+        this.kind = kind;
+        this.startX = startX;
+        this.startY = startY;
+        this.length = length;
+        this.angle = angle;
+        text = kind == Kind.MAGNET
+                ? String.format("%s %.2f %.2f", kind, length, angle)
+                : kind.toString();
+    }
+
+    /**
+     * @param x the world x coordinate of the first end of the magnet
+     * @param y the world y coordinate of the first end of the magnet
+     * @return a magnet waiting for its second end
+     */
+    static Held magnetEnd(double x, double y) {
+        return new Held(Kind.MAGNET_END, x, y, 0, 0);
+    }
+
+    /**
+     * @param length the world length from the centre to each end
+     * @param angle the angle the magnet points in
+     * @return a whole magnet
+     */
+    static Held magnet(double length, double angle) {
+        return new Held(Kind.MAGNET, 0, 0, length, angle);
+    }
+
+    /**
+     * @param charge a point charge picked up from the scene
+     * @return a proton or electron, by the sign of the charge
+     */
+    static Held of(fieldvisualizer.PointCharge charge) {
+        return charge.q > 0 ? PROTON : ELECTRON;
+    }
+
+    /**
+     * @param wire a wire picked up from the scene
+     * @return a wire with the same direction of current
+     */
+    static Held of(fieldvisualizer.Wire wire) {
+        return wire.q > 0 ? IN_WIRE : OUT_WIRE;
+    }
+
+    /**
+     * @param magnet a magnet picked up from the scene
+     * @return a magnet with the same length and angle
+     */
+    static Held of(BarMagnet magnet) {
+        double dx = magnet.north.x - magnet.south.x;
+        double dy = magnet.north.y - magnet.south.y;
+        return magnet(Math.hypot(dx / 2, dy / 2), Vector.arg(dx, dy));
+    }
+
+    /**
+     * @return the charge or current of a charge or wire, one either way
+     */
+    double charge() {
+        return kind == Kind.PROTON || kind == Kind.IN_WIRE ? 1 : -1;
+    }
+
+    /**
+     * @return the world x coordinate of the first end of a magnet
+     */
+    double getStartX() {
+        return startX;
+    }
+
+    /**
+     * @return the world y coordinate of the first end of a magnet
+     */
+    double getStartY() {
+        return startY;
+    }
+
+    /**
+     * @return the world length of a magnet from its centre to each end
+     */
+    double getLength() {
+        return length;
+    }
+
+    /**
+     * @return the angle a magnet points in
+     */
+    double getAngle() {
+        return angle;
+    }
+
+    /**
+     * @param by the angle to turn by
+     * @return the magnet turned by an angle
+     */
+    Held turned(double by) {
+        return magnet(length, angle + by);
+    }
+
+    /**
+     * @return the name of the kind, and the length and angle of a magnet
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+}
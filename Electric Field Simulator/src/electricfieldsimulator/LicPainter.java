@@ -0,0 +1,253 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.ChargeStore;
+import fieldvisualizer.FieldGrid;
+import fieldvisualizer.FieldSampler;
+import fieldvisualizer.Viewport;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * The LIC painter draws the field as a texture by line integral
+ * convolution. Every pixel follows the field forward and backward for a
+ * short distance and averages a fixed noise texture along the way, so the
+ * noise is smeared along the field lines and the whole frame shows the
+ * direction of the field, with no gaps between lines. The field is sampled
+ * once onto a grid, which each step then interpolates instead of summing
+ * every charge, each streamline gives the average of every pixel along it,
+ * and the frame is split into square tiles that are convolved in parallel,
+ * straight into an array of pixels.
+ *
+ * @author Jeff Niu
+ */
+class LicPainter {
+
+    /**
+     * The number of pixels between the points of the field grid, and the
+     * distance from a source, in pixels, within which the field is summed
+     * exactly.
+     */
+    private static final double CELL = 2;
+    private static final double EXACT = 4;
+    /**
+     * The number of one pixel steps averaged each way from a pixel.
+     */
+    private static final int LENGTH = 20;
+    /**
+     * The number of one pixel steps walked each way along a streamline,
+     * which is longer than the average so that one streamline gives the
+     * average of many pixels.
+     */
+    private static final int STREAM = 3 * LENGTH;
+    /**
+     * The number of pixels along each side of a tile.
+     */
+    private static final int TILE = 64;
+    /**
+     * The seed of the noise, which is fixed so that the texture only
+     * changes where the field does.
+     */
+    private static final long SEED = 7;
+
+    /**
+     * The noise, which is either black or white at each pixel, and the
+     * size of the frame it was made for.
+     */
+    private boolean[] noise;
+    private int noiseWidth;
+    private int noiseHeight;
+
+    /**
+     * Draw the field of a set of charges over the whole of a frame, as
+     * opaque ARGB pixels.
+     *
+     * @param pixels receives the pixels of the frame, row by row
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @param charges the snapshot of the charges
+     * @param view the viewport of the frame
+     */
+    void paint(int[] pixels, int width, int height, ChargeStore charges,
+            Viewport view) {
+        boolean[] white = noise(width, height);
+        double pixel = view.getPixelSize();
+        FieldSampler field = new FieldGrid(charges, view.getX(), view.getY(),
+                width * pixel, height * pixel, CELL * pixel, EXACT * pixel);
+        int across = (width + TILE - 1) / TILE;
+        int down = (height + TILE - 1) / TILE;
+        IntStream.range(0, across * down).parallel().forEach((tile) -> {
+            int x0 = tile % across * TILE;
+            int y0 = tile / across * TILE;
+            new Tile(pixels, white, field, view, width, height, x0, y0,
+                    Math.min(x0 + TILE, width), Math.min(y0 + TILE, height))
+                    .convolve();
+        });
+    }
+
+    /**
+     * Get the noise for a frame size, making it if the size has changed.
+     *
+     * @param width the width of the frame
+     * @param height the height of the frame
+     * @return the noise, row by row
+     */
+    private boolean[] noise(int width, int height) {
+        if (noise == null || noiseWidth != width || noiseHeight != height) {
+            Random random = new Random(SEED);
+            noise = new boolean[width * height];
+            for (int i = 0; i < noise.length; i++) {
+                noise[i] = random.nextBoolean();
+            }
+            noiseWidth = width;
+            noiseHeight = height;
+        }
+        return noise;
+    }
+
+    /**
+     * A tile of the frame being convolved, with its own buffers.
+     */
+    private static class Tile {
+
+        private final int[] pixels;
+        private final boolean[] white;
+        private final FieldSampler field;
+        private final Viewport view;
+        private final int width;
+        private final int x0;
+        private final int y0;
+        private final int x1;
+        private final int y1;
+        /**
+         * The region that a streamline may be walked in, which is the tile
+         * grown by the length of the average, since the noise beyond that
+         * is not averaged into any pixel of the tile.
+         */
+        private final int left;
+        private final int top;
+        private final int right;
+        private final int bottom;
+        /**
+         * The sum of the averages given to each pixel of the tile and the
+         * number of them.
+         */
+        private final double[] sums;
+        private final int[] hits;
+        /**
+         * The pixels of a streamline, with its start in the middle, and
+         * the running count of white pixels along it.
+         */
+        private final int[] line = new int[2 * STREAM + 1];
+        private final int[] prefix = new int[2 * STREAM + 2];
+        private final double[] out = new double[2];
+
+        Tile(int[] pixels, boolean[] white, FieldSampler field,
+                Viewport view, int width, int height, int x0, int y0, int x1,
+                int y1) {
+            this.pixels = pixels;
+            this.white = white;
+            this.field = field;
+            this.view = view;
+            this.width = width;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            left = Math.max(0, x0 - LENGTH);
+            top = Math.max(0, y0 - LENGTH);
+            right = Math.min(width, x1 + LENGTH);
+            bottom = Math.min(height, y1 + LENGTH);
+            sums = new double[(x1 - x0) * (y1 - y0)];
+            hits = new int[sums.length];
+        }
+
+        /**
+         * Convolve the pixels of the tile. Instead of walking the field
+         * from every pixel, a long streamline is walked from each pixel
+         * that no streamline has passed through yet, and the average of
+         * the noise is slid along it as a running sum, which gives the
+         * convolution of every pixel of the tile that it passes through at
+         * once. The contrast of each average is stretched by the square
+         * root of its number of samples, since the average of independent
+         * noise varies less the more samples there are, and the averages
+         * given to a pixel by different streamlines are averaged again.
+         */
+        void convolve() {
+            int tileWidth = x1 - x0;
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    if (hits[(y - y0) * tileWidth + x - x0] > 0) {
+                        continue;
+                    }
+                    int first = STREAM - walk(x, y, -1);
+                    int last = STREAM + walk(x, y, 1);
+                    for (int k = first; k <= last; k++) {
+                        prefix[k + 1] = prefix[k]
+                                + (white[line[k]] ? 1 : 0);
+                    }
+                    for (int k = first; k <= last; k++) {
+                        int px = line[k] % width;
+                        int py = line[k] / width;
+                        if (px < x0 || px >= x1 || py < y0 || py >= y1) {
+                            continue;
+                        }
+                        int from = Math.max(first, k - LENGTH);
+                        int to = Math.min(last, k + LENGTH);
+                        int count = to - from + 1;
+                        double mean = (double) (prefix[to + 1]
+                                - prefix[from]) / count - 0.5;
+                        int t = (py - y0) * tileWidth + px - x0;
+                        sums[t] += mean * Math.sqrt(count);
+                        hits[t]++;
+                    }
+                }
+            }
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    int t = (y - y0) * tileWidth + x - x0;
+                    int gray = (int) (128 + 128 * sums[t] / hits[t]);
+                    gray = Math.max(0, Math.min(255, gray));
+                    pixels[y * width + x] = 0xFF000000 | gray << 16
+                            | gray << 8 | gray;
+                }
+            }
+        }
+
+        /**
+         * Walk the field one pixel at a time from the middle of a pixel,
+         * recording the pixels passed on one side of the middle of the
+         * streamline. The walk stops where the noise would no longer be
+         * averaged into the tile, at a source or after the length of half
+         * a streamline.
+         *
+         * @param x the starting pixel column
+         * @param y the starting pixel row
+         * @param sign 1 to walk along the field, -1 to walk against it
+         * @return the number of steps taken
+         */
+        private int walk(int x, int y, int sign) {
+            line[STREAM] = y * width + x;
+            double sx = x + 0.5;
+            double sy = y + 0.5;
+            int steps = 0;
+            while (steps < STREAM) {
+                field.directionAt(view.toWorldX(sx), view.toWorldY(sy), out);
+                // The direction is not a number at a source
+                if (!(out[0] == out[0] && out[1] == out[1])) {
+                    break;
+                }
+                sx += sign * out[0];
+                sy += sign * out[1];
+                if (!(sx >= left && sy >= top && sx < right
+                        && sy < bottom)) {
+                    break;
+                }
+                steps++;
+                line[STREAM + sign * steps] = (int) sy * width + (int) sx;
+            }
+            return steps;
+        }
+
+    }
+
+}
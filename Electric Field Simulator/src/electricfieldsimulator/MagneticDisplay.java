@@ -1,30 +1,32 @@
 package electricfieldsimulator;
 
-import static electricfieldsimulator.FieldSimulator.size;
 import fieldvisualizer.BarMagnet;
-import fieldvisualizer.Line;
-import fieldvisualizer.PathIterator;
 import fieldvisualizer.Vector;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Polygon;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.image.BufferedImage;
 import static java.lang.Math.PI;
 import static java.lang.Math.cos;
 import static java.lang.Math.hypot;
+import static java.lang.Math.pow;
 import static java.lang.Math.sin;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Scanner;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JPanel;
+import javax.swing.JToggleButton;
+import javax.swing.SwingUtilities;
 
 /**
  *
@@ -35,29 +37,99 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
 
     private static final int P_RAD = 15;
 
+    /**
+     * Half the width of a drawn magnet, in pixels.
+     */
+    private static final int M_RAD = 20;
+
+    /**
+     * The factor that one notch of the mouse wheel zooms by.
+     */
+    private static final double ZOOM = 1.25;
+
+    /**
+     * The difference in potential between adjacent equipotentials, which
+     * puts the outermost one around a lone pole of a magnet 500 pixels
+     * from it.
+     */
+    private static final double CONTOUR_SPACING = 0.2;
+
+    /**
+     * The number of pixels between field lines when they are spread
+     * evenly over the screen.
+     */
+    private static final double SEPARATION = 24;
+
+    /**
+     * The world width of the cells of the indices of the wires and
+     * magnets, which is a few wires across.
+     */
+    private static final double CELL = 64;
+
+    /**
+     * The ratio of charge to mass and the speed of the test particles,
+     * which are electrons that circle 20 pixels across at 100 pixels from
+     * a wire.
+     */
+    private static final double PARTICLE_CHARGE = -5;
+    private static final double PARTICLE_SPEED = 1;
+
     private final FieldSimulator fieldSim;
 
-    private List<Wire> wires;
-    private List<BarMagnet> magnets;
+    /**
+     * The placed wires and magnets, indexed by where they are for picking.
+     */
+    private SpatialIndex<Wire> wires;
+    private SpatialIndex<BarMagnet> magnets;
 
     private ImageIcon inWire;
     private ImageIcon outWire;
     private ImageIcon horseMagnet;
 
+    /**
+     * The images of the wires and of a magnet to be placed, scaled to the
+     * size they are drawn at.
+     */
+    private BufferedImage inWireSprite;
+    private BufferedImage outWireSprite;
+    private BufferedImage magnetSprite;
+
+    /**
+     * The two halves of each placed magnet on the screen, which are found
+     * once when the magnet is first drawn or clicked on, and found again
+     * when the viewport moves.
+     */
+    private Map<BarMagnet, Polygon[]> magnetShapes;
+
     private JButton inWireButton;
     private JButton outWireButton;
     private JButton garbageButton;
     private JButton resetButton;
     private JButton menuButton;
+    private JToggleButton smoothButton;
+    private JToggleButton contourButton;
+    private JToggleButton textureButton;
+    private JToggleButton evenButton;
+    private JToggleButton hudButton;
+    private JToggleButton particleButton;
+    private JButton saveButton;
+    private JButton openButton;
 
     private Point mouse;
 
-    private String held;
+    private Held held;
     private double mouseX;
     private double mouseY;
 
-    private double magnetStartX;
-    private double magnetStartY;
+    /**
+     * The part of the plane shown on the display, which is zoomed with the
+     * mouse wheel unless a magnet is held and panned by dragging with the
+     * right button, and the last point of the drag, or null if the view is
+     * not being dragged.
+     */
+    private fieldvisualizer.Viewport viewport
+            = fieldvisualizer.Viewport.DEFAULT;
+    private Point panFrom;
 
     /**
      * The local field object for drawing and rendering magnetic field
@@ -67,6 +139,36 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
      */
     private fieldvisualizer.Field magneticField;
 
+    /**
+     * The renderer that draws the field lines off the event thread.
+     */
+    private FieldRenderer renderer;
+
+    /**
+     * The test particles flying through the field, which are only shown
+     * while they run.
+     */
+    private ParticleLayer particles;
+
+    /**
+     * The version of the scene, which is increased whenever a wire or
+     * magnet is added, removed or moved.
+     */
+    private int sceneVersion;
+    /**
+     * The version and viewport of the scene in the last snapshot handed to
+     * the renderer.
+     */
+    private int drawnVersion = -1;
+    private fieldvisualizer.Viewport drawnViewport;
+
+    /**
+     * The integrator that steps along the field lines, which adapts its
+     * step to how sharply the lines bend.
+     */
+    private final fieldvisualizer.Integrator integrator
+            = new fieldvisualizer.DormandPrinceIntegrator(3, 0.05);
+
     /**
      * Constructor for instantiating display screen
      *
@@ -92,61 +194,177 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
 
         this.addMouseWheelListener(this);
         
-        wires = new ArrayList<>();
-        magnets = new ArrayList<>();
+        wires = new SpatialIndex<>(CELL);
+        magnets = new SpatialIndex<>(CELL);
 
-        inWire = new ImageIcon("inWire.png");
-        outWire = new ImageIcon("outWire.png");
-        horseMagnet = new ImageIcon("magnetIcon.png");
+        magnetShapes = new IdentityHashMap<>();
+
+        inWire = Sprites.icon("inWire.png");
+        outWire = Sprites.icon("outWire.png");
+        horseMagnet = Sprites.icon("magnetIcon.png");
+        inWireSprite = Sprites.sprite("inWire.png", P_RAD * 2);
+        outWireSprite = Sprites.sprite("outWire.png", P_RAD * 2);
+        magnetSprite = Sprites.sprite("magnetIcon.png", P_RAD * 2);
 
         inWireButton = new JButton(inWire);
         inWireButton.setBounds(10, 30, 128, 128);
         add(inWireButton);
         inWireButton.addActionListener((inWireAdd) -> {
-            held = "inWire";
+            held = Held.IN_WIRE;
+            sceneChanged();
         });
 
         outWireButton = new JButton(outWire);
         outWireButton.setBounds(10, 168, 128, 128);
         add(outWireButton);
         outWireButton.addActionListener((outWireAdd) -> {
-            held = "outWire";
+            held = Held.OUT_WIRE;
+            sceneChanged();
         });
 
         JButton magnetButton = new JButton(horseMagnet);
         magnetButton.setBounds(10, 306, 128, 128);
         add(magnetButton);
         magnetButton.addActionListener((evt) -> {
-            held = "placeMagnet";
+            held = Held.MAGNET_START;
+            sceneChanged();
         });
 
-        garbageButton = new JButton(new ImageIcon("trash.png"));
+        garbageButton = new JButton(Sprites.icon("trash.png"));
         garbageButton.setBounds(10, 444, 128, 128);
         add(garbageButton);
         garbageButton.addActionListener((dropHeld) -> {
             if (held != null) {
                 held = null;
+                sceneChanged();
             }
         });
 
+        // The menu and the metrics share a row of the column, so that the
+        // column fits in the window
         menuButton = new JButton("Menu");
-        menuButton.setBounds(24, 740, 100, 30);
+        menuButton.setBounds(24, 790, 48, 30);
+        menuButton.setMargin(new Insets(2, 2, 2, 2));
         add(menuButton);
         menuButton.addActionListener((goMenu) -> {
+            particles.stop();
+            particleButton.setSelected(false);
             wires.clear();
             magnets.clear();
+            magnetShapes.clear();
             held = null;
+            sceneChanged();
             fieldSim.setContentPane(fieldSim.menuDisplay);
             fieldSim.pack();
         });
 
+        // Saving and opening share a row of the column
+        saveButton = new JButton("Save");
+        saveButton.setBounds(24, 685, 48, 30);
+        saveButton.setMargin(new Insets(2, 2, 2, 2));
+        add(saveButton);
+        saveButton.addActionListener((save) -> {
+            List<fieldvisualizer.Charge> scene = new ArrayList<>(
+                    wires.items());
+            scene.addAll(magnets.items());
+            SceneDialog.save(this, scene);
+        });
+
+        // An opened scene replaces the wires and magnets on the display.
+        // Point charges cannot be shown here, so they are left out.
+        openButton = new JButton("Open");
+        openButton.setBounds(76, 685, 48, 30);
+        openButton.setMargin(new Insets(2, 2, 2, 2));
+        add(openButton);
+        openButton.addActionListener((open) -> {
+            List<fieldvisualizer.Charge> opened = SceneDialog.open(this);
+            if (opened == null) {
+                return;
+            }
+            held = null;
+            wires.clear();
+            magnets.clear();
+            magnetShapes.clear();
+            for (fieldvisualizer.Charge charge : opened) {
+                if (charge instanceof fieldvisualizer.Wire) {
+                    fieldvisualizer.Wire wire = (fieldvisualizer.Wire) charge;
+                    wires.add(new Wire(wire.x, wire.y, wire.q), wire.x,
+                            wire.y);
+                } else if (charge instanceof BarMagnet) {
+                    addMagnet((BarMagnet) charge);
+                }
+            }
+            sceneChanged();
+        });
+
+        // The field can be drawn as a texture instead of as field lines
+        textureButton = new JToggleButton("Texture");
+        textureButton.setBounds(24, 580, 100, 30);
+        add(textureButton);
+        textureButton.addActionListener((texture) -> {
+            renderer.setTextured(textureButton.isSelected());
+            sceneChanged();
+        });
+
+        // Equipotentials are drawn under the field lines when asked for
+        contourButton = new JToggleButton("Potential");
+        contourButton.setBounds(24, 615, 100, 30);
+        add(contourButton);
+        contourButton.addActionListener((contours) -> {
+            renderer.setContourSpacing(contourButton.isSelected()
+                    ? CONTOUR_SPACING : 0);
+            sceneChanged();
+        });
+
+        // The field lines can be spread evenly instead of from the charges
+        evenButton = new JToggleButton("Even");
+        evenButton.setBounds(24, 650, 100, 30);
+        add(evenButton);
+        evenButton.addActionListener((even) -> {
+            renderer.setSeparation(evenButton.isSelected() ? SEPARATION : 0);
+            sceneChanged();
+        });
+
+        // Antialiasing the field lines is slower, so it is left to the user
+        smoothButton = new JToggleButton("Smooth");
+        smoothButton.setBounds(24, 720, 100, 30);
+        add(smoothButton);
+        smoothButton.addActionListener((smooth) -> {
+            renderer.setAntialiased(smoothButton.isSelected());
+            sceneChanged();
+        });
+
+        // The engine metrics can be shown over the field
+        hudButton = new JToggleButton("Stats");
+        hudButton.setBounds(76, 790, 48, 30);
+        hudButton.setMargin(new Insets(2, 2, 2, 2));
+        add(hudButton);
+        hudButton.addActionListener((hud) -> repaint());
+
+        // Electrons can be let loose in the field to show how it pushes
+        // charges about. The column is packed closer to make room for it
+        // under the garbage bin.
+        particleButton = new JToggleButton("Particles");
+        particleButton.setBounds(24, 825, 100, 30);
+        add(particleButton);
+        particleButton.addActionListener((fly) -> {
+            if (particleButton.isSelected()) {
+                particles.start();
+                sceneChanged();
+            } else {
+                particles.stop();
+                repaint();
+            }
+        });
+
         // Hitting this will clear all onscreen objects
         resetButton = new JButton("Reset");
-        resetButton.setBounds(24, 700, 100, 30);
+        resetButton.setBounds(24, 755, 100, 30);
         add(resetButton);
         resetButton.addActionListener((evt) -> {
             wires.clear();
             magnets.clear();
+            setViewport(fieldvisualizer.Viewport.DEFAULT);
         });
 
         mouse = getMousePosition();
@@ -167,94 +385,70 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
              */
             @Override
             public void mousePressed(MouseEvent e) {
+                mouse = e.getPoint();
+                mouseX = e.getX();
+                mouseY = e.getY();
+                if (SwingUtilities.isRightMouseButton(e)) {
+                    panFrom = mouse;
+                    return;
+                }
+                // A press places, picks up or starts drawing an object
+                sceneChanged();
+
+                // Objects are placed in the world under the mouse
+                double wx = viewport.toWorldX(mouseX);
+                double wy = viewport.toWorldY(mouseY);
 
                 // if something is held
                 if (held != null) {
-                    switch (held) {
-                        case "inWire": {
-                            mouse = getMousePosition();
-                            double x = mouse.getX();
-                            double y = mouse.getY();
-                            wires.add(new Wire(x, y, 1));
-                            held = null;
-                            break;
-                        }
-                        case "outWire": {
-                            mouse = getMousePosition();
-                            double x = mouse.getX();
-                            double y = mouse.getY();
-                            wires.add(new Wire(x, y, -1));
+                    switch (held.kind) {
+                        case IN_WIRE:
+                        case OUT_WIRE: {
+                            wires.add(new Wire(wx, wy, held.charge()), wx,
+                                    wy);
                             held = null;
                             break;
                         }
-                        case "placeMagnet": {
-                            mouse = getMousePosition();
-                            magnetStartX = mouse.getX();
-                            magnetStartY = mouse.getY();
-                            held = "finishMagnet";
+                        case MAGNET_START: {
+                            held = Held.magnetEnd(wx, wy);
                             break;
                         }
-                        case "finishMagnet": {
-                            double mx = (mouseX + magnetStartX) / 2;
-                            double my = (mouseY + magnetStartY) / 2;
-                            double dx = mouseX - mx;
-                            double dy = mouseY - my;
+                        case MAGNET_END: {
+                            double mx = (wx + held.getStartX()) / 2;
+                            double my = (wy + held.getStartY()) / 2;
+                            double dx = wx - mx;
+                            double dy = wy - my;
                             double l = hypot(dx, dy);
                             double a = fieldvisualizer.Vector.arg(dx, dy);
-                            BarMagnet barMagnet = new BarMagnet(mx, my,
-                                    100, l, a);
-                            magnets.add(barMagnet);
+                            addMagnet(new BarMagnet(mx, my, 100, l, a));
                             held = null;
                             break;
                         }
-                    }
-                    if (held != null) {
-                        Scanner s = new Scanner(held);
-                        if (s.next().equals("magnet")) {
-                            double l = s.nextDouble();
-                            double arg = s.nextDouble();
-                            magnets.add(new BarMagnet((int) mouseX, (int) mouseY,
-                                    100, l, arg));
+                        case MAGNET: {
+                            addMagnet(new BarMagnet(wx, wy, 100,
+                                    held.getLength(), held.getAngle()));
                             held = null;
+                            break;
                         }
-                        s.close();
                     }
                 } else {
-                    // check if clicked on wire
-                    double x = mouseX;
-                    double y = mouseY;
-
-                    int size = wires.size();
-                    for (int i = 0; i < size; i++) {
-                        if (Math.abs(x - wires.get(i).x) < P_RAD
-                                && Math.abs(y - wires.get(i).y) < P_RAD) {
-                            held = wires.get(i).toString(); // Jeff: fixed a bug where picking up anything will always give a proton
-                            wires.remove(i);
-                            return;
-                        }
+                    // Pick up the wire whose sprite is under the mouse, or
+                    // else the magnet
+                    Wire wire = wires.pick(wx, wy,
+                            P_RAD * viewport.getPixelSize(), (w) -> Math.max(
+                                    Math.abs(w.x - wx), Math.abs(w.y - wy)));
+                    if (wire != null) {
+                        held = Held.of(wire);
+                        wires.remove(wire);
+                        return;
                     }
-                    size = magnets.size();
-                    for (int i = 0; i < size; i++) {
-                        BarMagnet magnet = magnets.get(i);
-                        int sx = (int) magnet.south.x;
-                        int sy = (int) magnet.south.y;
-                        int ex = (int) magnet.north.x;
-                        int ey = (int) magnet.north.y;
-                        Polygon[] magnetHalves = magnetToPolygon(
-                                sx, sy, ex, ey);
-                        if (magnetHalves[0].contains(mouse)
-                                || magnetHalves[1].contains(mouse)) {
-                            // Since the held variable is a string, this
-                            // is going to have to be the workaround
-                            double dx = ex - sx;
-                            double dy = ey - sy;
-                            double l = hypot(dx / 2, dy / 2);
-                            double arg = Vector.arg(dx, dy);
-                            held = String.format("magnet %.2f %.2f",
-                                    l, arg);
-                            magnets.remove(i);
-                            return;
-                        }
+                    BarMagnet magnet = magnets.pick(wx, wy,
+                            M_RAD * viewport.getPixelSize(),
+                            (m) -> distanceTo(m, wx, wy));
+                    if (magnet != null) {
+                        held = Held.of(magnet);
+                        magnets.remove(magnet);
+                        magnetShapes.remove(magnet);
                     }
                 }
             }
@@ -266,6 +460,7 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
              */
             @Override
             public void mouseReleased(MouseEvent e) {
+                panFrom = null;
             }
 
             /**
@@ -288,20 +483,63 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
 
         });
 
-        // Initialize the magnetic field
-        magneticField = new fieldvisualizer.ElectroMagneticField();
-
-        // We will redraw everything on a set delay
-        Timer drawer = new Timer();
-        drawer.scheduleAtFixedRate(new TimerTask() {
+        // The held object follows the mouse, so moving the mouse while
+        // holding something changes the scene
+        addMouseMotionListener(new MouseMotionListener() {
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                mouse = e.getPoint();
+                mouseX = e.getX();
+                mouseY = e.getY();
+                if (held != null) {
+                    sceneChanged();
+                }
+            }
 
             @Override
-            public void run() {
-                repaint();
+            public void mouseDragged(MouseEvent e) {
+                if (panFrom != null) {
+                    setViewport(viewport.pan(e.getX() - panFrom.x,
+                            e.getY() - panFrom.y));
+                    panFrom = e.getPoint();
+                }
+                mouseMoved(e);
             }
+        });
 
-        }, 100, 100);
+        // Initialize the magnetic field, tracing its lines on every core
+        fieldvisualizer.ElectroMagneticField field
+                = new fieldvisualizer.ElectroMagneticField();
+        field.setTracer(new fieldvisualizer.ParallelTracer());
+        magneticField = field;
+        // The work of each frame is published for JConsole as well
+        fieldvisualizer.EngineMetrics metrics
+                = new fieldvisualizer.EngineMetrics("Magnetic");
+        metrics.register();
+        renderer = new FieldRenderer(this, field, integrator, metrics);
+        particles = new ParticleLayer(this, PARTICLE_CHARGE, PARTICLE_SPEED);
+    }
 
+    /**
+     * Record that the wires or magnets, or the object held by the mouse,
+     * have changed, so that the field lines are traced again on the next
+     * paint.
+     */
+    private void sceneChanged() {
+        sceneVersion++;
+        repaint();
+    }
+
+    /**
+     * Move the display to another part of the plane. The shapes of the
+     * magnets are on the screen, so they are found again.
+     *
+     * @param viewport the new viewport
+     */
+    private void setViewport(fieldvisualizer.Viewport viewport) {
+        this.viewport = viewport;
+        magnetShapes.clear();
+        sceneChanged();
     }
 
     /**
@@ -321,71 +559,95 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
             mouseY = mouse.getY();
         }
 
-        // Draw the electric field lines
-        drawField(g);
+        // Trace the field again only if the scene has changed
+        drawField();
+
+        // Draw the last frame of magnetic field lines
+        BufferedImage frame = renderer.getFrame();
+        if (frame != null) {
+            synchronized (frame) {
+                g.drawImage(frame, 0, 0, this);
+            }
+        }
+
+        // Draw the trails of the test particles over the field lines
+        BufferedImage trails = particles.getFrame();
+        if (trails != null) {
+            synchronized (trails) {
+                g.drawImage(trails, 0, 0, this);
+            }
+        }
 
         drawMagnets(g);
         drawWires(g);
         drawHeld(g);
 
         drawText(g);
+        if (hudButton.isSelected()) {
+            MetricsHud.paint(g, renderer.getMetrics(), getWidth() - 10, 10);
+        }
     }
 
     /**
-     * Transfer the charges into the electric field and draw the electric
-     * field lines.
+     * Take a snapshot of the wires and magnets and hand it to the renderer,
+     * which traces and draws the magnetic field lines in the background.
+     * Nothing is done if the scene and the viewport are the same as in the
+     * last snapshot, in which case the last frame is still current.
      *
-     * @param g
      * @author Jeff Niu
      */
-    private void drawField(Graphics g) {
-        // Transfer charges into the field
-        magneticField.getCharges().clear();
-        magneticField.getCharges().addAll(wires);
-        magneticField.getCharges().addAll(magnets);
+    private void drawField() {
+        if (viewport.getWidth() != getWidth()
+                || viewport.getHeight() != getHeight()) {
+            viewport = viewport.resize(getWidth(), getHeight());
+        }
+        if (sceneVersion == drawnVersion && viewport == drawnViewport) {
+            return;
+        }
+        drawnVersion = sceneVersion;
+        drawnViewport = viewport;
+        // The held object is placed in the world under the mouse
+        double wx = viewport.toWorldX(mouseX);
+        double wy = viewport.toWorldY(mouseY);
+        List<fieldvisualizer.Charge> scene = new ArrayList<>();
+        scene.addAll(wires.items());
+        scene.addAll(magnets.items());
         // Add the charge held by the mouse
         if (held != null) {
-            if (held.equals("inWire") || held.equals("outWire")) {
-                fieldvisualizer.Charge heldCharge = new Wire(mouseX, mouseY,
-                        held.equals("inWire") ? 1 : -1);
-                magneticField.add(heldCharge);
-            }
-            // If a magnet is in the process of being drawn, render lines
-            if (held.equals("finishMagnet")) {
-                double mx = (mouseX + magnetStartX) / 2;
-                double my = (mouseY + magnetStartY) / 2;
-                double dx = mouseX - mx;
-                double dy = mouseY - my;
-                if (dx != 0 && dy != 0) {
-                    double l = hypot(dx, dy);
-                    double arg = fieldvisualizer.Vector.arg(dx, dy);
-                    fieldvisualizer.Charge barMagnet = new BarMagnet(mx, my,
-                            100, l, arg);
-                    magneticField.add(barMagnet);
+            switch (held.kind) {
+                case IN_WIRE:
+                case OUT_WIRE: {
+                    scene.add(new Wire(wx, wy, held.charge()));
+                    break;
                 }
-            }
-            // If the mouse holds a magnet, draw it
-            Scanner s = new Scanner(held);
-            if (s.next().equals("magnet") && mouse != null) {
-                double l = s.nextDouble();
-                double arg = s.nextDouble();
-                magneticField.add(new BarMagnet(mouseX, mouseY, 100, l, arg));
-            }
-            s.close();
-        }
-        List<PathIterator> trace = magneticField.trace(PI / 6, 3);
-        for (PathIterator path : trace) {
-            while (path.hasNext()) {
-                Line l = path.next();
-                if (l.p.x > size.width || l.p.x < 0) {
-                    continue;
+                // If a magnet is in the process of being drawn, render
+                // lines
+                case MAGNET_END: {
+                    double mx = (wx + held.getStartX()) / 2;
+                    double my = (wy + held.getStartY()) / 2;
+                    double dx = wx - mx;
+                    double dy = wy - my;
+                    if (dx != 0 && dy != 0) {
+                        double l = hypot(dx, dy);
+                        double arg = fieldvisualizer.Vector.arg(dx, dy);
+                        scene.add(new BarMagnet(mx, my, 100, l, arg));
+                    }
+                    break;
                 }
-                if (l.p.y > size.height || l.p.y < 0) {
-                    continue;
+                // If the mouse holds a magnet, draw it
+                case MAGNET: {
+                    if (mouse != null) {
+                        scene.add(new BarMagnet(wx, wy, 100,
+                                held.getLength(), held.getAngle()));
+                    }
+                    break;
                 }
-                g.drawLine((int) l.p.x, (int) l.p.y, (int) l.q.x, (int) l.q.y);
             }
         }
+        renderer.request(scene, viewport);
+        if (particles.isRunning()) {
+            particles.setScene(scene, viewport);
+        }
     }
 
     private void drawText(Graphics g) {
@@ -393,82 +655,133 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
     }
 
     private void drawWires(Graphics g) {
-        int size = wires.size();
-        for (int i = 0; i < size; i++) {
-            Wire wire = wires.get(i);
-            int x = (int) wire.x;
-            int y = (int) wire.y;
+        for (Wire wire : wires.items()) {
+            int x = (int) viewport.toScreenX(wire.x);
+            int y = (int) viewport.toScreenY(wire.y);
             if (wire.q > 0) {
-                g.drawImage(new ImageIcon("inWire.png").getImage(), x - P_RAD,
-                        y - P_RAD, P_RAD * 2, P_RAD * 2, this);
+                g.drawImage(inWireSprite, x - P_RAD, y - P_RAD, this);
             } else if (wire.q < 0) {
-                g.drawImage(new ImageIcon("outWire.png").getImage(), x - P_RAD,
-                        y - P_RAD, P_RAD * 2, P_RAD * 2, this);
+                g.drawImage(outWireSprite, x - P_RAD, y - P_RAD, this);
             }
         }
     }
 
     private void drawMagnets(Graphics g) {
-        for (BarMagnet magnet : magnets) {
-            int ex = (int) magnet.north.x;
-            int ey = (int) magnet.north.y;
-            int sx = (int) magnet.south.x;
-            int sy = (int) magnet.south.y;
-            drawMagnet(sx, sy, ex, ey, g);
+        for (BarMagnet magnet : magnets.items()) {
+            drawMagnet(shapeOf(magnet), g);
         }
     }
 
+    /**
+     * Get the two halves of a placed magnet, finding them the first time.
+     *
+     * @param magnet the magnet
+     * @return the south and north halves
+     */
+    private Polygon[] shapeOf(BarMagnet magnet) {
+        return magnetShapes.computeIfAbsent(magnet, (m) -> magnetToPolygon(
+                (int) viewport.toScreenX(m.south.x),
+                (int) viewport.toScreenY(m.south.y),
+                (int) viewport.toScreenX(m.north.x),
+                (int) viewport.toScreenY(m.north.y)));
+    }
+
     private void drawHeld(Graphics g) {
         if (held != null) {
-            switch (held) {
-                case "inWire":
-                    g.drawImage(inWire.getImage(), (int) mouseX - P_RAD,
-                            (int) mouseY - P_RAD, P_RAD * 2, P_RAD * 2,
-                            this);
+            switch (held.kind) {
+                case IN_WIRE:
+                    g.drawImage(inWireSprite, (int) mouseX - P_RAD,
+                            (int) mouseY - P_RAD, this);
                     break;
-                case "outWire":
-                    g.drawImage(outWire.getImage(), (int) mouseX - P_RAD,
-                            (int) mouseY - P_RAD, P_RAD * 2, P_RAD * 2,
-                            this);
+                case OUT_WIRE:
+                    g.drawImage(outWireSprite, (int) mouseX - P_RAD,
+                            (int) mouseY - P_RAD, this);
                     break;
-                case "placeMagnet":
-                    g.drawImage(horseMagnet.getImage(), (int) mouseX - P_RAD,
-                            (int) mouseY - P_RAD, P_RAD * 2, P_RAD * 2,
-                            this);
+                case MAGNET_START:
+                    g.drawImage(magnetSprite, (int) mouseX - P_RAD,
+                            (int) mouseY - P_RAD, this);
                     break;
-                case "finishMagnet":
+                case MAGNET_END: {
                     // Define manually and draw the bar magnet
-                    int sx = (int) magnetStartX;
-                    int sy = (int) magnetStartY;
+                    int sx = (int) viewport.toScreenX(held.getStartX());
+                    int sy = (int) viewport.toScreenY(held.getStartY());
                     int ex = (int) mouseX;
                     int ey = (int) mouseY;
                     drawMagnet(sx, sy, ex, ey, g);
+                    break;
+                }
+                case MAGNET: {
+                    double l = held.getLength() * viewport.getScale();
+                    double arg = held.getAngle();
+                    double lsina = l * sin(arg);
+                    double lcosa = l * cos(arg);
+                    double ex = mouseX + lcosa;
+                    double ey = mouseY + lsina;
+                    double sx = mouseX - lcosa;
+                    double sy = mouseY - lsina;
+                    drawMagnet((int) sx, (int) sy, (int) ex, (int) ey, g);
+                    break;
+                }
             }
-            Scanner s = new Scanner(held);
-            if (s.next().equals("magnet")) {
-                double l = s.nextDouble();
-                double arg = s.nextDouble();
-                double lsina = l * sin(arg);
-                double lcosa = l * cos(arg);
-                double ex = mouseX + lcosa;
-                double ey = mouseY + lsina;
-                double sx = mouseX - lcosa;
-                double sy = mouseY - lsina;
-                drawMagnet((int) sx, (int) sy, (int) ex, (int) ey, g);
-            }
-            s.close();
         }
     }
 
     private void drawMagnet(int sx, int sy, int ex, int ey, Graphics g) {
-        Polygon[] magnetHalves = magnetToPolygon(sx, sy, ex, ey);
+        drawMagnet(magnetToPolygon(sx, sy, ex, ey), g);
+    }
+
+    private void drawMagnet(Polygon[] magnetHalves, Graphics g) {
         g.setColor(Color.blue);
         g.fillPolygon(magnetHalves[0]);
         g.setColor(Color.red);
         g.fillPolygon(magnetHalves[1]);
     }
 
-    private Polygon[] magnetToPolygon(int sx, int sy, int ex, int ey) {
+    /**
+     * Add a magnet, indexed by the box between its poles.
+     *
+     * @param magnet the magnet
+     */
+    private void addMagnet(BarMagnet magnet) {
+        magnets.add(magnet, magnet.south.x, magnet.south.y, magnet.north.x,
+                magnet.north.y);
+    }
+
+    /**
+     * Find how far a point is from the line between the poles of a magnet,
+     * which is how far it is from the middle of the drawn magnet across
+     * its width. A point beyond either end is not on the magnet at all.
+     *
+     * @param magnet the magnet
+     * @param x the world x coordinate
+     * @param y the world y coordinate
+     * @return the world distance across the magnet, or infinity if the
+     * point is beyond an end
+     */
+    private static double distanceTo(BarMagnet magnet, double x, double y) {
+        double dx = magnet.north.x - magnet.south.x;
+        double dy = magnet.north.y - magnet.south.y;
+        double px = x - magnet.south.x;
+        double py = y - magnet.south.y;
+        double lengthSq = dx * dx + dy * dy;
+        double t = (px * dx + py * dy) / lengthSq;
+        if (!(t >= 0 && t <= 1)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(px * dy - py * dx) / Math.sqrt(lengthSq);
+    }
+
+    /**
+     * Find the two halves of a magnet drawn from its south end to its north
+     * end.
+     *
+     * @param sx the south end x coordinate
+     * @param sy the south end y coordinate
+     * @param ex the north end x coordinate
+     * @param ey the north end y coordinate
+     * @return the south and north halves
+     */
+    static Polygon[] magnetToPolygon(int sx, int sy, int ex, int ey) {
         int mx = (ex + sx) / 2;
         int my = (ey + sy) / 2;
         int dx = ex - sx;
@@ -476,10 +789,10 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
         double arg = Vector.arg(dx, dy);
         int[] X = new int[4];
         int[] Y = new int[4];
-        int cosArgPlus = (int) (20 * cos(arg + PI / 2));
-        int sinArgPlus = (int) (20 * sin(arg + PI / 2));
-        int cosArgMinus = (int) (20 * cos(arg - PI / 2));
-        int sinArgMinus = (int) (20 * sin(arg - PI / 2));
+        int cosArgPlus = (int) (M_RAD * cos(arg + PI / 2));
+        int sinArgPlus = (int) (M_RAD * sin(arg + PI / 2));
+        int cosArgMinus = (int) (M_RAD * cos(arg - PI / 2));
+        int sinArgMinus = (int) (M_RAD * sin(arg - PI / 2));
         X[0] = sx + cosArgPlus;
         Y[0] = sy - sinArgPlus;
         X[1] = sx + cosArgMinus;
@@ -502,18 +815,21 @@ public class MagneticDisplay extends JPanel implements MouseWheelListener {
         return magnetHalves;
     }
 
+    /**
+     * The wheel turns a held magnet, and otherwise zooms about the point
+     * under the mouse.
+     *
+     * @param mwe mouse wheel event
+     */
     @Override
     public void mouseWheelMoved(MouseWheelEvent mwe) {
-        if (held != null) {
-            Scanner s = new Scanner(held);
-            if (s.next().equals("magnet")) {
-                double l = s.nextDouble();
-                double arg = s.nextDouble();
-                arg += mwe.getWheelRotation() * 0.3;
-                held = String.format("magnet %.2f %.2f", l, arg);
-            }
-            s.close();
+        if (held != null && held.kind == Held.Kind.MAGNET) {
+            held = held.turned(mwe.getWheelRotation() * 0.3);
+            sceneChanged();
+            return;
         }
+        setViewport(viewport.zoom(pow(ZOOM, -mwe.getPreciseWheelRotation()),
+                mwe.getX(), mwe.getY()));
     }
 
 }
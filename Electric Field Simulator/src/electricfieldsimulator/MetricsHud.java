@@ -0,0 +1,73 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.EngineMetrics;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+
+/**
+ * The metrics HUD shows the engine metrics of a display in a box over the
+ * top right corner of the field, so that the work done by each frame can
+ * be watched while the scene is changed. The display repaints whenever a
+ * frame is finished, so the box follows the frames as they are drawn.
+ *
+ * @author Jeff Niu
+ */
+final class MetricsHud {
+
+    /**
+     * The space around the text, in pixels.
+     */
+    private static final int PAD = 8;
+    /**
+     * The colour behind the text, which lets the field show through.
+     */
+    private static final Color BACKGROUND = new Color(255, 255, 255, 210);
+
+    private MetricsHud() {
+    }
+
+    /**
+     * Draw the metrics in a box whose top right corner is at a point.
+     *
+     * @param g the graphics of the display
+     * @param metrics the metrics
+     * @param right the screen x coordinate of the right side of the box
+     * @param top the screen y coordinate of the top of the box
+     */
+    static void paint(Graphics g, EngineMetrics metrics, int right,
+            int top) {
+        String[] text = {
+            "Kernel " + metrics.getKernel(),
+            String.format("Frames %d, %d skipped", metrics.getFrames(),
+            metrics.getFramesSkipped()),
+            String.format("Lines %.0f per frame, most %.0f",
+            metrics.getLinesPerFrameMean(), metrics.getLinesPerFrameMax()),
+            String.format("Steps %.0f per line, p95 %.0f",
+            metrics.getStepsPerLineMean(), metrics.getStepsPerLineP95()),
+            String.format("Evaluations %.0f per frame, p95 %.0f",
+            metrics.getEvaluationsPerFrameMean(),
+            metrics.getEvaluationsPerFrameP95()),
+            String.format("Trace %.1f ms, p95 %.1f ms",
+            metrics.getTraceMillisMean(), metrics.getTraceMillisP95()),
+            String.format("Draw %.1f ms, p95 %.1f ms",
+            metrics.getRasterMillisMean(), metrics.getRasterMillisP95())
+        };
+        FontMetrics font = g.getFontMetrics();
+        int width = 0;
+        for (String line : text) {
+            width = Math.max(width, font.stringWidth(line));
+        }
+        int height = font.getHeight() * text.length;
+        int left = right - width - 2 * PAD;
+        g.setColor(BACKGROUND);
+        g.fillRect(left, top, width + 2 * PAD, height + 2 * PAD);
+        g.setColor(Color.black);
+        int y = top + PAD + font.getAscent();
+        for (String line : text) {
+            g.drawString(line, left + PAD, y);
+            y += font.getHeight();
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.Charge;
+import fieldvisualizer.DensityBuffer;
+import fieldvisualizer.TestParticles;
+import fieldvisualizer.Viewport;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import javax.swing.JComponent;
+
+/**
+ * The particle layer shows test particles flying through the field of a
+ * display. A swarm of particles is pushed on a thread of its own, one step
+ * per tick of a fixed rate, and each step they are counted into a density
+ * buffer that fades a little, so the paths they take are drawn as fading
+ * trails over the field lines. Particles that fall into a source or leave
+ * the frame are replaced by new ones at random places in the frame, going
+ * in random directions at the same speed, so the swarm keeps its size.
+ * <p>
+ * Like the field renderer, the layer draws each frame into the image that
+ * is not being shown and then swaps the two. The scene is handed over by
+ * the display whenever it changes, and the particles carry on through the
+ * new field; the trails are cleared when the viewport changes, since they
+ * no longer line up with the frame.
+ *
+ * @author Jeff Niu
+ */
+class ParticleLayer {
+
+    /**
+     * The number of particles in the swarm, which is kept low enough that
+     * each trail can still be told apart from the rest, rather than all of
+     * them running together over the whole frame.
+     */
+    private static final int COUNT = 50000;
+    /**
+     * The number of steps per second, and the length of each step of
+     * simulated time.
+     */
+    private static final double RATE = 60;
+    private static final double STEP = 1;
+    /**
+     * The most ticks that the layer may fall behind before it gives up the
+     * lost time.
+     */
+    private static final int MAX_LAG = 4;
+    /**
+     * The longest world distance that a particle may move in one step.
+     */
+    private static final double MAX_STEP = 4;
+    /**
+     * The factor that the trails fade by each step, and the density at
+     * which a trail is drawn solid.
+     */
+    private static final float FADE = 0.95f;
+    private static final double SOLID = 32;
+    /**
+     * The colour of the trails.
+     */
+    private static final int COLOR = 0xFF8C00;
+    /**
+     * The seed of the places and directions of new particles.
+     */
+    private static final long SEED = 11;
+
+    /**
+     * The display that shows the frames.
+     */
+    private final JComponent display;
+    /**
+     * The ratio of charge to mass of every particle, and the speed of new
+     * particles.
+     */
+    private final double chargeToMass;
+    private final double speed;
+
+    /**
+     * The last finished frame, or null if none has been drawn.
+     */
+    private final AtomicReference<BufferedImage> frame
+            = new AtomicReference<>();
+    /**
+     * The image that is not the finished frame, which the next frame is
+     * drawn into.
+     */
+    private BufferedImage back;
+
+    /**
+     * The latest scene that has not been handed to the particles yet, and
+     * the thread pushing the particles, or null if it is not running, both
+     * guarded by this layer.
+     */
+    private Scene pending;
+    private Thread worker;
+
+    /**
+     * The particles, their trails and the viewport they are in, which are
+     * only used by the particle thread.
+     */
+    private TestParticles particles;
+    private DensityBuffer density;
+    private Viewport view;
+    private final Random random = new Random(SEED);
+
+    /**
+     * Create a layer that is not yet running.
+     *
+     * @param display the display that shows the frames
+     * @param chargeToMass the ratio of charge to mass of every particle
+     * @param speed the world speed of new particles
+     */
+    ParticleLayer(JComponent display, double chargeToMass, double speed) {
+        this.display = display;
+        this.chargeToMass = chargeToMass;
+        this.speed = speed;
+    }
+
+    /**
+     * Start the particle thread, if it is not already running. The swarm
+     * appears once the first scene is handed over.
+     */
+    synchronized void start() {
+        if (worker == null) {
+            worker = new Thread(this::run, "Particle pusher");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stop the particle thread and throw the swarm and its trails away.
+     * The lock is let go before waiting for the thread, which may need it
+     * to finish its tick.
+     */
+    void stop() {
+        Thread stopping;
+        synchronized (this) {
+            stopping = worker;
+            worker = null;
+            pending = null;
+        }
+        if (stopping == null) {
+            return;
+        }
+        stopping.interrupt();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                stopping.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        particles = null;
+        density = null;
+        view = null;
+        frame.set(null);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return whether the particle thread is running
+     */
+    synchronized boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * Hand a scene to the particles. Each charge is copied as it is now,
+     * so the caller may keep moving its charges and changing its lists
+     * while the particles are pushed.
+     *
+     * @param charges the charges in the scene
+     * @param view the viewport, which gives the size of the frame
+     */
+    void setScene(List<? extends Charge> charges, Viewport view) {
+        List<Charge> copies = new ArrayList<>(charges.size());
+        for (Charge charge : charges) {
+            copies.add(charge.copy());
+        }
+        synchronized (this) {
+            pending = new Scene(copies, view);
+        }
+    }
+
+    /**
+     * @return the last finished frame, or null if none has been drawn
+     */
+    BufferedImage getFrame() {
+        return frame.get();
+    }
+
+    /**
+     * @return the latest scene that has not been handed to the particles
+     * yet, or null if there is none
+     */
+    private synchronized Scene take() {
+        Scene scene = pending;
+        pending = null;
+        return scene;
+    }
+
+    /**
+     * Push the particles once per tick until the thread is interrupted.
+     */
+    private void run() {
+        long period = (long) (1e9 / RATE);
+        long next = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Scene scene = take();
+                if (scene != null) {
+                    receive(scene);
+                }
+                if (particles != null) {
+                    tick();
+                }
+                next += period;
+                long now = System.nanoTime();
+                if (now - next > MAX_LAG * period) {
+                    next = now;
+                }
+                long wait = next - now;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Move the particles into the field of a new scene, and bound them by
+     * its viewport if that has changed.
+     *
+     * @param scene the scene
+     */
+    private void receive(Scene scene) {
+        if (particles == null) {
+            particles = new TestParticles(scene.charges, chargeToMass,
+                    MAX_STEP);
+        } else {
+            particles.setSources(scene.charges);
+        }
+        if (scene.view != view) {
+            view = scene.view;
+            double pixel = view.getPixelSize();
+            particles.setBounds(view.getX(), view.getY(),
+                    view.getWidth() * pixel, view.getHeight() * pixel);
+            density = DensityBuffer.of(view);
+        }
+    }
+
+    /**
+     * Replace the particles that died, push the swarm one step, and draw
+     * its trails.
+     */
+    private void tick() {
+        double pixel = view.getPixelSize();
+        while (particles.size() < COUNT) {
+            // A direction picked evenly over the sphere
+            double vz = 2 * random.nextDouble() - 1;
+            double across = Math.sqrt(1 - vz * vz);
+            double angle = 2 * Math.PI * random.nextDouble();
+            particles.add(
+                    view.getX() + random.nextDouble() * view.getWidth()
+                    * pixel,
+                    view.getY() + random.nextDouble() * view.getHeight()
+                    * pixel,
+                    speed * across * Math.cos(angle),
+                    speed * across * Math.sin(angle), speed * vz);
+        }
+        particles.step(STEP);
+        density.fade(FADE);
+        particles.deposit(density);
+
+        int width = density.getColumns();
+        int height = density.getRows();
+        BufferedImage image = back;
+        if (image == null || image.getWidth() != width
+                || image.getHeight() != height) {
+            image = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+        }
+        // The event thread may still be drawing this image if it was the
+        // frame before last
+        synchronized (image) {
+            paint(image);
+        }
+        back = frame.getAndSet(image);
+        display.repaint();
+    }
+
+    /**
+     * Draw the trails into an image, row by row in parallel. The density
+     * is drawn on a log scale as the opacity of the trail colour, so that
+     * a faint trail still shows beside a bright one.
+     *
+     * @param image the image, the same size as the density buffer
+     */
+    private void paint(BufferedImage image) {
+        int width = image.getWidth();
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+                .getData();
+        double scale = 255 / Math.log1p(SOLID);
+        IntStream.range(0, image.getHeight()).parallel().forEach((y) -> {
+            for (int x = 0; x < width; x++) {
+                int alpha = (int) Math.min(255,
+                        scale * Math.log1p(density.get(x, y)));
+                pixels[y * width + x] = alpha << 24 | COLOR;
+            }
+        });
+    }
+
+    /**
+     * A snapshot of a scene to be handed to the particles.
+     */
+    private static class Scene {
+
+        private final List<Charge> charges;
+        private final Viewport view;
+
+        Scene(List<Charge> charges, Viewport view) {
+            this.charges = charges;
+            this.view = view;
+        }
+
+    }
+
+}
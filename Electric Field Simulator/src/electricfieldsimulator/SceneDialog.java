@@ -0,0 +1,84 @@
+package electricfieldsimulator;
+
+import fieldvisualizer.Charge;
+import fieldvisualizer.SceneFile;
+import fieldvisualizer.SceneWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+/**
+ * The scene dialog asks where to save the scene of a display and writes
+ * it as a binary scene file, or asks for a binary scene file and reads it
+ * back for a display to place.
+ *
+ * @author Jeff Niu
+ */
+final class SceneDialog {
+
+    /**
+     * The ending of binary scene files.
+     */
+    static final String EXTENSION = "fvs";
+
+    private SceneDialog() {
+    }
+
+    /**
+     * Ask for a file and save a scene to it.
+     *
+     * @param display the display whose scene is saved
+     * @param charges the charges in the scene
+     */
+    static void save(JComponent display, List<? extends Charge> charges) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Scenes",
+                EXTENSION));
+        if (chooser.showSaveDialog(display) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + "." + EXTENSION);
+        }
+        try (SceneWriter writer = new SceneWriter(file.toPath(),
+                display.getWidth(), display.getHeight())) {
+            for (Charge charge : charges) {
+                writer.write(charge);
+            }
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(display, "Could not save "
+                    + file + ": " + ex.getMessage(), "Save",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Ask for a scene file and read its charges.
+     *
+     * @param display the display that the scene is opened in
+     * @return the charges in the scene, or null if no scene was opened
+     */
+    static List<Charge> open(JComponent display) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Scenes",
+                EXTENSION));
+        if (chooser.showOpenDialog(display) != JFileChooser.APPROVE_OPTION) {
+            return null;
+        }
+        File file = chooser.getSelectedFile();
+        try {
+            return SceneFile.load(file.toPath()).toCharges();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(display, "Could not open "
+                    + file + ": " + ex.getMessage(), "Open",
+                    JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package electricfieldsimulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A spatial index holds the objects placed in a display, in a list for
+ * drawing and tracing and in a uniform grid of square world cells for
+ * picking. Each object is kept in every cell that its bounding box
+ * overlaps, so finding the object under the mouse only looks at the few
+ * cells around it, however many objects there are. Only the cells that
+ * hold objects are stored, so the plane has no edges. An object is
+ * removed by moving the last object of the list into its place, which
+ * changes the order of the list but takes the same time for any object.
+ *
+ * @author Jeff Niu
+ * @param <T> the type of the objects
+ */
+class SpatialIndex<T> {
+
+    /**
+     * The world width of a cell.
+     */
+    private final double cell;
+
+    /**
+     * The objects in the order they are drawn.
+     */
+    private final List<T> items = new ArrayList<>();
+    /**
+     * Where each object is kept.
+     */
+    private final Map<T, Entry> entries = new IdentityHashMap<>();
+    /**
+     * The objects in each cell that holds any, by the packed column and
+     * row of the cell.
+     */
+    private final Map<Long, List<T>> cells = new HashMap<>();
+
+    /**
+     * Create an empty index.
+     *
+     * @param cell the world width of a cell
+     */
+    SpatialIndex(double cell) {
+        this.cell = cell;
+    }
+
+    /**
+     * @return the objects in the order they are drawn, which must not be
+     * changed through the list
+     */
+    List<T> items() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * @return the number of objects
+     */
+    int size() {
+        return items.size();
+    }
+
+    /**
+     * Add an object at a point.
+     *
+     * @param item the object
+     * @param x the world x coordinate
+     * @param y the world y coordinate
+     */
+    void add(T item, double x, double y) {
+        add(item, x, y, x, y);
+    }
+
+    /**
+     * Add an object that covers a box.
+     *
+     * @param item the object
+     * @param x1 the world x coordinate of one corner of the box
+     * @param y1 the world y coordinate of one corner of the box
+     * @param x2 the world x coordinate of the opposite corner
+     * @param y2 the world y coordinate of the opposite corner
+     */
+    void add(T item, double x1, double y1, double x2, double y2) {
+        Entry entry = new Entry(items.size(), column(Math.min(x1, x2)),
+                column(Math.min(y1, y2)), column(Math.max(x1, x2)),
+                column(Math.max(y1, y2)));
+        items.add(item);
+        entries.put(item, entry);
+        for (int j = entry.top; j <= entry.bottom; j++) {
+            for (int i = entry.left; i <= entry.right; i++) {
+                cells.computeIfAbsent(key(i, j), (k) -> new ArrayList<>(2))
+                        .add(item);
+            }
+        }
+    }
+
+    /**
+     * Remove an object.
+     *
+     * @param item the object
+     * @return whether the object was in the index
+     */
+    boolean remove(T item) {
+        Entry entry = entries.remove(item);
+        if (entry == null) {
+            return false;
+        }
+        T last = items.remove(items.size() - 1);
+        if (last != item) {
+            items.set(entry.slot, last);
+            entries.get(last).slot = entry.slot;
+        }
+        for (int j = entry.top; j <= entry.bottom; j++) {
+            for (int i = entry.left; i <= entry.right; i++) {
+                Long key = key(i, j);
+                List<T> list = cells.get(key);
+                for (int k = 0; k < list.size(); k++) {
+                    if (list.get(k) == item) {
+                        list.remove(k);
+                        break;
+                    }
+                }
+                if (list.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove every object.
+     */
+    void clear() {
+        items.clear();
+        entries.clear();
+        cells.clear();
+    }
+
+    /**
+     * Find the object nearest to a point, among the objects whose boxes
+     * come within a distance of it. The distance to each object is
+     * measured by the caller, so an object may be hit over any shape
+     * inside its box grown by the distance.
+     *
+     * @param x the world x coordinate
+     * @param y the world y coordinate
+     * @param radius the greatest world distance of a hit
+     * @param distance the distance from the point to an object
+     * @return the nearest object closer than the radius, or null if there
+     * is none
+     */
+    T pick(double x, double y, double radius,
+            ToDoubleFunction<? super T> distance) {
+        T nearest = null;
+        double best = radius;
+        int right = column(x + radius);
+        int bottom = column(y + radius);
+        for (int j = column(y - radius); j <= bottom; j++) {
+            for (int i = column(x - radius); i <= right; i++) {
+                List<T> list = cells.get(key(i, j));
+                if (list == null) {
+                    continue;
+                }
+                for (T item : list) {
+                    double d = distance.applyAsDouble(item);
+                    if (d < best) {
+                        best = d;
+                        nearest = item;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @param coordinate a world coordinate
+     * @return the column or row of the cell holding it
+     */
+    private int column(double coordinate) {
+        return (int) Math.floor(coordinate / cell);
+    }
+
+    /**
+     * @param i the column of a cell
+     * @param j the row of a cell
+     * @return the key of the cell
+     */
+    private static Long key(int i, int j) {
+        return (long) i << 32 | j & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Where an object is kept: its place in the list and the range of
+     * cells it is in.
+     */
+    private static class Entry {
+
+        private int slot;
+        private final int left;
+        private final int top;
+        private final int right;
+        private final int bottom;
+
+        Entry(int slot, int left, int top, int right, int bottom) {
+            this.slot = slot;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+        }
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package electricfieldsimulator;
+
+import java.awt.AlphaComposite;
+import java.awt.GraphicsEnvironment;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.swing.ImageIcon;
+
+/**
+ * The sprites are the images of the buttons and of the objects placed on
+ * the displays. Each image is read once from the classpath, next to this
+ * class, and kept; a missing image is a fault in the build, so it throws
+ * rather than leaving a blank. Sprites drawn at a fixed size are scaled
+ * once into an image compatible with the screen, so that drawing one is a
+ * plain copy that Java2D can keep in video memory.
+ *
+ * @author Jeff Niu
+ */
+final class Sprites {
+
+    /**
+     * The folder of the images, relative to this class.
+     */
+    private static final String FOLDER = "sprites/";
+
+    /**
+     * The images read so far, by name.
+     */
+    private static final Map<String, ImageIcon> ICONS
+            = new ConcurrentHashMap<>();
+    /**
+     * The scaled images made so far, by name and size.
+     */
+    private static final Map<String, BufferedImage> SCALED
+            = new ConcurrentHashMap<>();
+
+    private Sprites() {
+    }
+
+    /**
+     * Get an image at its own size, such as for a button.
+     *
+     * @param name the file name of the image
+     * @return the image
+     */
+    static ImageIcon icon(String name) {
+        return ICONS.computeIfAbsent(name, Sprites::read);
+    }
+
+    /**
+     * Get an image scaled to a square.
+     *
+     * @param name the file name of the image
+     * @param size the width and height to scale to
+     * @return the scaled image
+     */
+    static BufferedImage sprite(String name, int size) {
+        return SCALED.computeIfAbsent(name + "@" + size,
+                (key) -> scale(icon(name).getImage(), size));
+    }
+
+    /**
+     * Read an image from the classpath.
+     *
+     * @param name the file name of the image
+     * @return the image
+     * @throws IllegalStateException if the image is not on the classpath
+     */
+    private static ImageIcon read(String name) {
+        URL url = Sprites.class.getResource(FOLDER + name);
+        if (url == null) {
+            throw new IllegalStateException("Missing sprite resource "
+                    + FOLDER + name);
+        }
+        return new ImageIcon(url);
+    }
+
+    /**
+     * Scale an image into a new translucent image compatible with the
+     * screen.
+     *
+     * @param image the image
+     * @param size the width and height to scale to
+     * @return the scaled image
+     */
+    private static BufferedImage scale(Image image, int size) {
+        BufferedImage scaled;
+        if (GraphicsEnvironment.isHeadless()) {
+            scaled = new BufferedImage(size, size,
+                    BufferedImage.TYPE_INT_ARGB);
+        } else {
+            scaled = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration()
+                    .createCompatibleImage(size, size,
+                            Transparency.TRANSLUCENT);
+        }
+        Graphics2D g = scaled.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, size, size, null);
+        g.dispose();
+        return scaled;
+    }
+
+}
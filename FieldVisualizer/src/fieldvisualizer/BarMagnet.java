@@ -44,6 +44,25 @@ public class BarMagnet implements Charge {
         south = new PointCharge(tx2, ty2, -q);
     }
 
+    /**
+     * Create a bar magnet from its poles.
+     *
+     * @param north the north pole
+     * @param south the south pole
+     */
+    private BarMagnet(PointCharge north, PointCharge south) {
+        this.north = north;
+        this.south = south;
+    }
+
+    /**
+     * @return a new bar magnet with copies of the poles of this one
+     */
+    @Override
+    public BarMagnet copy() {
+        return new BarMagnet(north.copy(), south.copy());
+    }
+
     /**
      * The magnetic field vector at a point around the bar magnet is the
      * sum of the vectors around the positive north and negative south
@@ -58,22 +77,50 @@ public class BarMagnet implements Charge {
         return north.fieldAt(x, y).add(south.fieldAt(x, y));
     }
 
+    /**
+     * The magnetic potential of a bar magnet is the sum of the potentials
+     * of its poles, just as its field is.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the potential at the point
+     */
+    @Override
+    public double potentialAt(double x, double y) {
+        return north.potentialAt(x, y) + south.potentialAt(x, y);
+    }
+
     /**
      * The field line trace around a bar magnet is equivalent to the trace
-     * around both the north and south charges.
+     * around both the north and south charges, so the origins are those of
+     * the north charge followed by those of the south charge.
      *
      * @param angle the trace projection angle
-     * @param step the trace resolution
-     * @param charges the array of charges
-     * @return a set of path iterators 
+     * @return a set of initial points
+     */
+    @Override
+    public List<Vector> getOrigins(double angle) {
+        List<Vector> origins = new ArrayList<>();
+        origins.addAll(north.getOrigins(angle));
+        origins.addAll(south.getOrigins(angle));
+        return origins;
+    }
+
+    /**
+     * Both ends of the magnet are point charges, so a line from either end
+     * is traced the way a point charge traces it.
+     *
+     * @param origin the initial point
+     * @param integrator the integrator that steps along the line
+     * @param field the sampler of the field
+     * @param view the viewport that the line is traced for
+     * @param sinks the sinks that capture the line
+     * @return the path iterator of the line
      */
     @Override
-    public List<PathIterator> trace(double angle, double step,
-            Charge[] charges) {
-        List<PathIterator> trace = new ArrayList<>();
-        trace.addAll(north.trace(angle, step, charges));
-        trace.addAll(south.trace(angle, step, charges));
-        return trace;
+    public PathIterator trace(Vector origin, Integrator integrator,
+            FieldSampler field, Viewport view, Sinks sinks) {
+        return north.trace(origin, integrator, field, view, sinks);
     }
 
 }
@@ -0,0 +1,166 @@
+package fieldvisualizer;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This implementation of the field approximates the field vectors with a
+ * quadtree of the charges instead of summing every charge at every point,
+ * which makes scenes with thousands of charges and wires practical to
+ * trace. The tree is updated as charges are added. Removing charges
+ * through the list of charges causes the tree to be rebuilt the next time
+ * the field is traced.
+ *
+ * @author Jeff Niu
+ */
+public class BarnesHutField implements Field {
+
+    /**
+     * The default opening angle.
+     */
+    public static final double THETA = 0.5;
+
+    /**
+     * The list of charges in this field.
+     */
+    private final List<Charge> charges;
+
+    /**
+     * The tree of the charges.
+     */
+    private final QuadTree tree;
+
+    /**
+     * Whether charges have been removed since the tree was built.
+     */
+    private boolean stale;
+
+    /**
+     * Create a new field with the default opening angle.
+     */
+    public BarnesHutField() {
+        this(THETA);
+    }
+
+    /**
+     * Create a new field.
+     *
+     * @param theta the opening angle of the tree
+     */
+    public BarnesHutField(double theta) {
+        charges = new ChargeList();
+        tree = new QuadTree(theta);
+    }
+
+    /**
+     * @return the opening angle of the tree
+     */
+    public double getTheta() {
+        return tree.getTheta();
+    }
+
+    /**
+     * Set the opening angle of the tree. A cell of the tree is summarized
+     * when its size over its distance is less than this angle.
+     *
+     * @param theta the opening angle
+     */
+    public void setTheta(double theta) {
+        tree.setTheta(theta);
+    }
+
+    /**
+     * Add a charge to this field and insert it into the tree.
+     *
+     * @param charge the charge to add
+     */
+    @Override
+    public void add(Charge charge) {
+        charges.add(charge);
+    }
+
+    /**
+     * @return the list of charges in this field
+     */
+    @Override
+    public List<Charge> getCharges() {
+        return charges;
+    }
+
+    /**
+     * The sampler of this field is its tree, which is rebuilt first if
+     * charges have been removed.
+     *
+     * @return the tree of the charges
+     */
+    @Override
+    public FieldSampler sampler() {
+        if (stale) {
+            tree.clear();
+            for (Charge charge : charges) {
+                tree.add(charge);
+            }
+            // Only once the whole tree is built, so that a failed rebuild
+            // is tried again rather than leaving half a tree
+            stale = false;
+        }
+        return tree;
+    }
+
+    /**
+     * The list of charges keeps the tree up to date as charges are added,
+     * and marks it stale when charges are removed or replaced.
+     */
+    private class ChargeList extends AbstractList<Charge> {
+
+        private final List<Charge> list = new ArrayList<>();
+
+        @Override
+        public Charge get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public void add(int index, Charge charge) {
+            // Checked even when the tree is stale, so that a charge the
+            // tree would refuse never gets into the list to break the
+            // rebuild
+            QuadTree.check(charge);
+            if (!stale) {
+                tree.add(charge);
+            }
+            list.add(index, charge);
+            modCount++;
+        }
+
+        @Override
+        public Charge set(int index, Charge charge) {
+            QuadTree.check(charge);
+            stale = true;
+            return list.set(index, charge);
+        }
+
+        @Override
+        public Charge remove(int index) {
+            stale = true;
+            modCount++;
+            return list.remove(index);
+        }
+
+        @Override
+        public void clear() {
+            list.clear();
+            modCount++;
+            tree.clear();
+            stale = false;
+        }
+
+    }
+
+}
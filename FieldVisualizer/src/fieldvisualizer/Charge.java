@@ -1,5 +1,6 @@
 package fieldvisualizer;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -21,19 +22,105 @@ public interface Charge {
      */
     public Vector fieldAt(double x, double y);
 
+    /**
+     * This method will return the potential of this charge at a particular
+     * point in space, whose downhill gradient is the field of the charge.
+     * Curves of equal potential cross the field lines at right angles.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the potential at this point
+     */
+    public double potentialAt(double x, double y);
+
+    /**
+     * The origins are the initial points from which the field lines
+     * around this object are traced. Not all charge objects will report
+     * origins.
+     *
+     * @param angle trace projection angle (if it is used)
+     * @return a set of initial points
+     */
+    public List<Vector> getOrigins(double angle);
+
+    /**
+     * Copy this charge as it is now, so that the copy keeps its position
+     * and strength however this charge is changed later, as when a scene
+     * is handed to another thread.
+     *
+     * @return the copy, which may be this charge if it cannot change
+     */
+    public Charge copy();
+
+    /**
+     * Trace a single field line from one of the origins of this charge on
+     * the original screen.
+     *
+     * @param origin the initial point
+     * @param integrator the integrator that steps along the line
+     * @param field the sampler of the field
+     * @return the path iterator of the line
+     */
+    public default PathIterator trace(Vector origin, Integrator integrator,
+            FieldSampler field) {
+        return trace(origin, integrator, field, Viewport.DEFAULT);
+    }
+
+    /**
+     * Trace a single field line from one of the origins of this charge.
+     * Every line depends only on its origin and the sampler of the field,
+     * so the lines of a field can be traced independently. The line may
+     * be ended once it has left the viewport, since it is not seen there.
+     *
+     * @param origin the initial point
+     * @param integrator the integrator that steps along the line
+     * @param field the sampler of the field
+     * @param view the viewport that the line is traced for
+     * @return the path iterator of the line
+     */
+    public default PathIterator trace(Vector origin, Integrator integrator,
+            FieldSampler field, Viewport view) {
+        return trace(origin, integrator, field, view, Sinks.NONE);
+    }
+
+    /**
+     * Trace a single field line from one of the origins of this charge,
+     * ending it as soon as it comes within the capture radius of a sink.
+     * The sinks are found once for all the lines of a field, and the line
+     * records why it ended.
+     *
+     * @param origin the initial point
+     * @param integrator the integrator that steps along the line
+     * @param field the sampler of the field
+     * @param view the viewport that the line is traced for
+     * @param sinks the sinks that capture the line
+     * @return the path iterator of the line
+     */
+    public PathIterator trace(Vector origin, Integrator integrator,
+            FieldSampler field, Viewport view, Sinks sinks);
+
     /**
      * Calling this method will request the charge to return a set of path
      * iterators that describe the magnetic field lines around this object.
-     * Not all charge objects will report a trace. An array of the charges
-     * is passed directly to the charge to avoid previous issues with
-     * concurrent modification in lists.
+     * Not all charge objects will report a trace. A sampler over a
+     * snapshot of the charges is passed directly to the charge to avoid
+     * previous issues with concurrent modification in lists.
      *
      * @param angle trace projection angle (if it is used)
-     * @param step trace projection step (resolution)
-     * @param charges the array of charges in the field
+     * @param integrator the integrator that steps along the lines
+     * @param field the sampler of the field
      * @return a set of path iterators
      */
-    public List<PathIterator> trace(double angle, double step,
-            Charge[] charges);
+    public default List<PathIterator> trace(double angle,
+            Integrator integrator, FieldSampler field) {
+        List<PathIterator> trace = new ArrayList<>();
+        for (Vector origin : getOrigins(angle)) {
+            PathIterator path = trace(origin, integrator, field);
+            if (path != null) {
+                trace.add(path);
+            }
+        }
+        return trace;
+    }
 
 }
@@ -0,0 +1,303 @@
+package fieldvisualizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Charge dynamics move free point charges under the Coulomb forces between
+ * them. The positions of the charges are the point charge objects
+ * themselves, which are moved in place, while their velocities and
+ * accelerations are kept in arrays beside them. Every charge has the same
+ * mass.
+ * <p>
+ * Time is stepped with velocity Verlet: half a step of velocity from the
+ * old forces, a whole step of position, and half a step of velocity from
+ * the new forces. Verlet keeps the energy of the charges from drifting
+ * over long runs, where a simple Euler step would slowly pump energy in.
+ * The forces are softened by a softening length, which lengthens each
+ * distance in quadrature, so that charges that pass through each other
+ * feel a large but finite force instead of flying apart.
+ * <p>
+ * The forces on a few charges are summed pair by pair, which is exact and
+ * costs N squared, split over the threads of the common pool. Beyond the
+ * direct limit, the charges are put in a quadtree each step and the force
+ * on each is approximated from it, which costs about N log N.
+ *
+ * @author Jeff Niu
+ */
+public class ChargeDynamics {
+
+    /**
+     * The most charges whose forces are summed pair by pair.
+     */
+    public static final int DIRECT_LIMIT = 1024;
+    /**
+     * The fewest charges whose forces are found by one task of the pool.
+     */
+    private static final int GRAIN = 64;
+    /**
+     * The opening angle of the tree, which keeps the forces within about
+     * a percent.
+     */
+    private static final double THETA = 0.5;
+
+    /**
+     * The charges, whose positions are the positions of the system.
+     */
+    private final PointCharge[] charges;
+    /**
+     * The mass of every charge and the softening length.
+     */
+    private final double mass;
+    private final double softening;
+    /**
+     * The velocities and accelerations of the charges.
+     */
+    private final double[] vx, vy, ax, ay;
+    /**
+     * The positions and strengths of the charges, copied out of the charge
+     * objects for the forces to be summed from.
+     */
+    private final double[] px, py, pq;
+    /**
+     * The tree that the forces are approximated from, or null if they are
+     * summed pair by pair.
+     */
+    private final QuadTree tree;
+    /**
+     * Whether the accelerations are those of the current positions.
+     */
+    private boolean accelerated;
+    /**
+     * The time simulated so far.
+     */
+    private double time;
+
+    /**
+     * Set up the dynamics of charges that start at rest.
+     *
+     * @param charges the charges, which are moved in place
+     * @param mass the mass of every charge
+     * @param softening the softening length
+     */
+    public ChargeDynamics(List<? extends PointCharge> charges, double mass,
+            double softening) {
+        if (!(mass > 0)) {
+            throw new IllegalArgumentException("Mass must be positive: "
+                    + mass);
+        }
+        if (!(softening > 0)) {
+            throw new IllegalArgumentException(
+                    "Softening length must be positive: " + softening);
+        }
+        this.charges = charges.toArray(new PointCharge[charges.size()]);
+        this.mass = mass;
+        this.softening = softening;
+        int n = this.charges.length;
+        vx = new double[n];
+        vy = new double[n];
+        ax = new double[n];
+        ay = new double[n];
+        px = new double[n];
+        py = new double[n];
+        pq = new double[n];
+        tree = n > DIRECT_LIMIT ? new QuadTree(THETA) : null;
+    }
+
+    /**
+     * @return the number of charges
+     */
+    public int size() {
+        return charges.length;
+    }
+
+    /**
+     * @return the time simulated so far
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return whether the forces are approximated from a tree
+     */
+    public boolean isTreeAccelerated() {
+        return tree != null;
+    }
+
+    /**
+     * Advance the charges by one step of time.
+     *
+     * @param dt the length of the step
+     */
+    public void step(double dt) {
+        int n = charges.length;
+        if (!accelerated) {
+            accelerate();
+        }
+        double half = dt / 2;
+        for (int i = 0; i < n; i++) {
+            vx[i] += half * ax[i];
+            vy[i] += half * ay[i];
+            charges[i].x += dt * vx[i];
+            charges[i].y += dt * vy[i];
+        }
+        accelerate();
+        for (int i = 0; i < n; i++) {
+            vx[i] += half * ax[i];
+            vy[i] += half * ay[i];
+        }
+        time += dt;
+    }
+
+    /**
+     * Find the accelerations of the charges at their current positions.
+     */
+    private void accelerate() {
+        int n = charges.length;
+        for (int i = 0; i < n; i++) {
+            px[i] = charges[i].x;
+            py[i] = charges[i].y;
+            pq[i] = charges[i].q;
+        }
+        if (tree != null) {
+            tree.clear();
+            for (PointCharge charge : charges) {
+                tree.add(charge);
+            }
+        }
+        if (n <= GRAIN) {
+            new ForceTask(0, n).compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(new ForceTask(0, n));
+        }
+        accelerated = true;
+    }
+
+    /**
+     * Find the accelerations of a range of the charges by summing the
+     * softened field of every charge at each of them. A charge adds
+     * nothing to its own field, since it is no distance from itself.
+     *
+     * @param from the first charge
+     * @param to the charge after the last
+     */
+    private void sumDirect(int from, int to) {
+        int n = charges.length;
+        double softeningSq = softening * softening;
+        for (int i = from; i < to; i++) {
+            double x = px[i];
+            double y = py[i];
+            double xField = 0;
+            double yField = 0;
+            for (int j = 0; j < n; j++) {
+                double dx = x - px[j];
+                double dy = y - py[j];
+                double rSq = dx * dx + dy * dy + softeningSq;
+                double mag = pq[j] / (rSq * Math.sqrt(rSq));
+                xField += mag * dx;
+                yField += mag * dy;
+            }
+            ax[i] = pq[i] * xField / mass;
+            ay[i] = pq[i] * yField / mass;
+        }
+    }
+
+    /**
+     * Find the accelerations of a range of the charges from the tree.
+     *
+     * @param from the first charge
+     * @param to the charge after the last
+     */
+    private void sumTree(int from, int to) {
+        double[] out = new double[2];
+        for (int i = from; i < to; i++) {
+            tree.fieldAt(px[i], py[i], softening, out);
+            ax[i] = pq[i] * out[0] / mass;
+            ay[i] = pq[i] * out[1] / mass;
+        }
+    }
+
+    /**
+     * Find the kinetic energy of the charges.
+     *
+     * @return the kinetic energy
+     */
+    public double getKineticEnergy() {
+        double sum = 0;
+        for (int i = 0; i < charges.length; i++) {
+            sum += vx[i] * vx[i] + vy[i] * vy[i];
+        }
+        return mass * sum / 2;
+    }
+
+    /**
+     * Find the softened potential energy of the charges, summed over every
+     * pair. With the kinetic energy, this is what Verlet keeps from
+     * drifting.
+     *
+     * @return the potential energy
+     */
+    public double getPotentialEnergy() {
+        double softeningSq = softening * softening;
+        double sum = 0;
+        for (int i = 0; i < charges.length; i++) {
+            for (int j = i + 1; j < charges.length; j++) {
+                double dx = charges[i].x - charges[j].x;
+                double dy = charges[i].y - charges[j].y;
+                sum += charges[i].q * charges[j].q
+                        / Math.sqrt(dx * dx + dy * dy + softeningSq);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Copy the charges at their current positions, so that they can be
+     * traced and drawn on another thread while the charges keep moving.
+     *
+     * @return copies of the charges
+     */
+    public List<PointCharge> snapshot() {
+        List<PointCharge> snapshot = new ArrayList<>(charges.length);
+        for (PointCharge charge : charges) {
+            snapshot.add(new PointCharge(charge.x, charge.y, charge.q));
+        }
+        return snapshot;
+    }
+
+    /**
+     * A task that finds the accelerations of a range of the charges,
+     * splitting the range in half until it is small enough to sum
+     * directly.
+     */
+    @SuppressWarnings("serial")
+    private class ForceTask extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+
+        ForceTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                if (tree != null) {
+                    sumTree(from, to);
+                } else {
+                    sumDirect(from, to);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ForceTask(from, mid), new ForceTask(mid, to));
+            }
+        }
+
+    }
+
+}
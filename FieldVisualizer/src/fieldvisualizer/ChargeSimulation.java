@@ -0,0 +1,147 @@
+package fieldvisualizer;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A charge simulation runs charge dynamics on a thread of its own, one
+ * step of fixed length per tick of a fixed rate, so the charges move at
+ * the same speed however fast the screen is drawn. After each step, a
+ * snapshot of the charges is handed to a consumer, such as a display that
+ * draws them and asks its renderer to trace their field. The charges are
+ * moved in place by the simulation thread, so they must be left alone
+ * until the simulation is stopped; the snapshots may be used anywhere.
+ * <p>
+ * A step that takes longer than a tick delays the next one. If the
+ * simulation falls several ticks behind, as with a great many charges, it
+ * gives up the lost time and carries on from the present, so the charges
+ * slow down instead of the thread trying to catch up forever.
+ *
+ * @author Jeff Niu
+ */
+public class ChargeSimulation {
+
+    /**
+     * The most ticks that the simulation may fall behind before it gives
+     * up the lost time.
+     */
+    private static final int MAX_LAG = 4;
+
+    /**
+     * The dynamics of the charges.
+     */
+    private final ChargeDynamics dynamics;
+    /**
+     * The length of a step of simulated time.
+     */
+    private final double dt;
+    /**
+     * The length of a tick, in nanoseconds.
+     */
+    private final long period;
+    /**
+     * The consumer of the snapshots.
+     */
+    private final Consumer<? super List<PointCharge>> publisher;
+
+    /**
+     * The thread running the simulation, or null if it is not running.
+     */
+    private Thread worker;
+
+    /**
+     * Create a simulation that is not yet running.
+     *
+     * @param dynamics the dynamics of the charges
+     * @param dt the length of a step of simulated time
+     * @param rate the number of steps per second
+     * @param publisher the consumer of the snapshots, which is called on
+     * the simulation thread
+     */
+    public ChargeSimulation(ChargeDynamics dynamics, double dt, double rate,
+            Consumer<? super List<PointCharge>> publisher) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Rate must be positive: "
+                    + rate);
+        }
+        this.dynamics = dynamics;
+        this.dt = dt;
+        this.publisher = publisher;
+        period = (long) (1e9 / rate);
+    }
+
+    /**
+     * @return the dynamics of the charges
+     */
+    public ChargeDynamics getDynamics() {
+        return dynamics;
+    }
+
+    /**
+     * Start the simulation thread, if it is not already running.
+     */
+    public synchronized void start() {
+        if (worker == null) {
+            worker = new Thread(this::run, "Charge simulation");
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stop the simulation thread and wait for it to finish its step. Once
+     * this returns, the charges are at their final positions and may be
+     * used again.
+     */
+    public synchronized void stop() {
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                worker.join();
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        worker = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return whether the simulation thread is running
+     */
+    public synchronized boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * Step the charges once per tick until the thread is interrupted.
+     */
+    private void run() {
+        long next = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                dynamics.step(dt);
+                publisher.accept(dynamics.snapshot());
+                next += period;
+                long now = System.nanoTime();
+                if (now - next > MAX_LAG * period) {
+                    next = now;
+                }
+                long wait = next - now;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
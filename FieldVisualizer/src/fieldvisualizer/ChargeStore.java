@@ -0,0 +1,489 @@
+package fieldvisualizer;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A charge store is a snapshot of the charges in a field laid out as
+ * primitive columns instead of objects. Sources are grouped by type so
+ * that the field can be summed in tight loops over plain arrays, without
+ * an interface call or a vector allocation for every charge. Bar magnets
+ * are stored as their two poles. Any charge type that the store does not
+ * know about is kept as an object and asked for its field directly.
+ *
+ * @author Jeff Niu
+ */
+public class ChargeStore implements FieldSampler {
+
+    /**
+     * The initial capacity of each column.
+     */
+    private static final int CAPACITY = 16;
+
+    /**
+     * The kernel that sums the point charge and wire columns, chosen once
+     * for the JVM.
+     */
+    private static final FieldKernel KERNEL = FieldKernel.select();
+
+    /**
+     * The point charge x positions.
+     */
+    private double[] pointX;
+    /**
+     * The point charge y positions.
+     */
+    private double[] pointY;
+    /**
+     * The point charge strengths.
+     */
+    private double[] pointQ;
+    /**
+     * The number of point charges.
+     */
+    private int points;
+
+    /**
+     * The wire x positions.
+     */
+    private double[] wireX;
+    /**
+     * The wire y positions.
+     */
+    private double[] wireY;
+    /**
+     * The wire current strengths.
+     */
+    private double[] wireQ;
+    /**
+     * The number of wires.
+     */
+    private int wires;
+
+    /**
+     * Charges of a type that cannot be stored in the columns.
+     */
+    private Charge[] others;
+    /**
+     * The number of other charges.
+     */
+    private int otherCount;
+
+    /**
+     * Create an empty charge store.
+     */
+    public ChargeStore() {
+        pointX = new double[CAPACITY];
+        pointY = new double[CAPACITY];
+        pointQ = new double[CAPACITY];
+        wireX = new double[CAPACITY];
+        wireY = new double[CAPACITY];
+        wireQ = new double[CAPACITY];
+        others = new Charge[0];
+    }
+
+    /**
+     * Create a charge store holding a snapshot of an array of charges.
+     *
+     * @param charges the charges to store
+     */
+    public ChargeStore(Charge[] charges) {
+        this();
+        for (Charge charge : charges) {
+            add(charge);
+        }
+    }
+
+    /**
+     * Create a charge store holding a snapshot of a list of charges.
+     *
+     * @param charges the charges to store
+     */
+    public ChargeStore(List<? extends Charge> charges) {
+        this();
+        for (Charge charge : charges) {
+            add(charge);
+        }
+    }
+
+    /**
+     * Get the name of the kernel that sums the fields of the columns, which
+     * is {@code vector} when the JDK vector API is in use and
+     * {@code scalar} otherwise.
+     *
+     * @return the name of the kernel
+     */
+    public static String getKernelName() {
+        return KERNEL.getName();
+    }
+
+    /**
+     * Add a charge to the store. Its position and strength are copied, so
+     * later changes to the charge object are not seen by the store.
+     *
+     * @param charge the charge to add
+     */
+    public final void add(Charge charge) {
+        if (charge instanceof PointCharge) {
+            PointCharge point = (PointCharge) charge;
+            addPoint(point.x, point.y, point.q);
+        } else if (charge instanceof Wire) {
+            Wire wire = (Wire) charge;
+            addWire(wire.x, wire.y, wire.q);
+        } else if (charge instanceof BarMagnet) {
+            BarMagnet magnet = (BarMagnet) charge;
+            add(magnet.north);
+            add(magnet.south);
+        } else if (charge != null) {
+            if (otherCount == others.length) {
+                others = Arrays.copyOf(others, otherCount * 2 + 1);
+            }
+            others[otherCount++] = charge;
+        }
+    }
+
+    /**
+     * Add a point charge.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param q the charge
+     */
+    public void addPoint(double x, double y, double q) {
+        if (points == pointX.length) {
+            int capacity = points * 2;
+            pointX = Arrays.copyOf(pointX, capacity);
+            pointY = Arrays.copyOf(pointY, capacity);
+            pointQ = Arrays.copyOf(pointQ, capacity);
+        }
+        pointX[points] = x;
+        pointY[points] = y;
+        pointQ[points] = q;
+        points++;
+    }
+
+    /**
+     * Add a wire.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param q the current strength and direction
+     */
+    public void addWire(double x, double y, double q) {
+        if (wires == wireX.length) {
+            int capacity = wires * 2;
+            wireX = Arrays.copyOf(wireX, capacity);
+            wireY = Arrays.copyOf(wireY, capacity);
+            wireQ = Arrays.copyOf(wireQ, capacity);
+        }
+        wireX[wires] = x;
+        wireY[wires] = y;
+        wireQ[wires] = q;
+        wires++;
+    }
+
+    /**
+     * Add point charges from a buffer holding their x positions, then their
+     * y positions, then their strengths. The columns are copied in bulk,
+     * and the buffer is left after the last strength.
+     *
+     * @param in the buffer
+     * @param count the number of point charges
+     */
+    void addPoints(DoubleBuffer in, int count) {
+        reservePoints(count);
+        in.get(pointX, points, count);
+        in.get(pointY, points, count);
+        in.get(pointQ, points, count);
+        points += count;
+    }
+
+    /**
+     * Add wires from a buffer holding their x positions, then their y
+     * positions, then their current strengths. The columns are copied in
+     * bulk, and the buffer is left after the last strength.
+     *
+     * @param in the buffer
+     * @param count the number of wires
+     */
+    void addWires(DoubleBuffer in, int count) {
+        if (wires + count > wireX.length) {
+            int capacity = Math.max(wires + count, wires * 2);
+            wireX = Arrays.copyOf(wireX, capacity);
+            wireY = Arrays.copyOf(wireY, capacity);
+            wireQ = Arrays.copyOf(wireQ, capacity);
+        }
+        in.get(wireX, wires, count);
+        in.get(wireY, wires, count);
+        in.get(wireQ, wires, count);
+        wires += count;
+    }
+
+    /**
+     * Make room for more point charges, so that adding them does not grow
+     * the columns one doubling at a time.
+     *
+     * @param count the number of point charges to make room for
+     */
+    void reservePoints(int count) {
+        if (points + count > pointX.length) {
+            int capacity = Math.max(points + count, points * 2);
+            pointX = Arrays.copyOf(pointX, capacity);
+            pointY = Arrays.copyOf(pointY, capacity);
+            pointQ = Arrays.copyOf(pointQ, capacity);
+        }
+    }
+
+    /**
+     * Remove every charge from the store, keeping the allocated columns.
+     */
+    public void clear() {
+        points = 0;
+        wires = 0;
+        Arrays.fill(others, 0, otherCount, null);
+        otherCount = 0;
+    }
+
+    /**
+     * @return the number of point charges, counting each magnet pole
+     */
+    public int pointCount() {
+        return points;
+    }
+
+    /**
+     * @return the number of wires
+     */
+    public int wireCount() {
+        return wires;
+    }
+
+    /**
+     * @return the number of charges of a type that cannot be stored in the
+     * columns
+     */
+    public int otherCount() {
+        return otherCount;
+    }
+
+    /**
+     * @param i the index of a charge of another type
+     * @return the charge
+     */
+    public Charge getOther(int i) {
+        return others[i];
+    }
+
+    /**
+     * @param i the index of a point charge
+     * @return the x position of the point charge
+     */
+    public double getPointX(int i) {
+        return pointX[i];
+    }
+
+    /**
+     * @param i the index of a point charge
+     * @return the y position of the point charge
+     */
+    public double getPointY(int i) {
+        return pointY[i];
+    }
+
+    /**
+     * @param i the index of a point charge
+     * @return the strength of the point charge
+     */
+    public double getPointQ(int i) {
+        return pointQ[i];
+    }
+
+    /**
+     * @param i the index of a wire
+     * @return the x position of the wire
+     */
+    public double getWireX(int i) {
+        return wireX[i];
+    }
+
+    /**
+     * @param i the index of a wire
+     * @return the y position of the wire
+     */
+    public double getWireY(int i) {
+        return wireY[i];
+    }
+
+    /**
+     * @param i the index of a wire
+     * @return the current strength of the wire
+     */
+    public double getWireQ(int i) {
+        return wireQ[i];
+    }
+
+    /**
+     * Check whether this store holds a list of charges as they are now,
+     * without copying them. Point charges and wires are compared by
+     * position and strength, and charges of other types by identity,
+     * since the store only keeps a reference to them.
+     *
+     * @param charges the charges
+     * @return whether adding the charges to an empty store would give this
+     * one
+     */
+    public boolean sameCharges(List<? extends Charge> charges) {
+        // The next point charge, wire and other charge to compare
+        int[] at = new int[3];
+        for (Charge charge : charges) {
+            if (!matches(charge, at)) {
+                return false;
+            }
+        }
+        return at[0] == points && at[1] == wires && at[2] == otherCount;
+    }
+
+    /**
+     * Check whether a charge is the next one of its type in this store.
+     *
+     * @param charge the charge
+     * @param at the next point charge, wire and other charge, which are
+     * moved past the charge
+     * @return whether the charge is stored there
+     */
+    private boolean matches(Charge charge, int[] at) {
+        if (charge instanceof PointCharge) {
+            PointCharge point = (PointCharge) charge;
+            int i = at[0]++;
+            return i < points && pointX[i] == point.x
+                    && pointY[i] == point.y && pointQ[i] == point.q;
+        } else if (charge instanceof Wire) {
+            Wire wire = (Wire) charge;
+            int i = at[1]++;
+            return i < wires && wireX[i] == wire.x && wireY[i] == wire.y
+                    && wireQ[i] == wire.q;
+        } else if (charge instanceof BarMagnet) {
+            BarMagnet magnet = (BarMagnet) charge;
+            return matches(magnet.north, at) && matches(magnet.south, at);
+        } else if (charge != null) {
+            int i = at[2]++;
+            return i < otherCount && others[i] == charge;
+        }
+        return true;
+    }
+
+    /**
+     * Calculate the field at a point and write its components into an
+     * output array, which avoids creating a vector.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array receiving the x and y components
+     */
+    @Override
+    public void fieldAt(double x, double y, double[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        KERNEL.pointField(pointX, pointY, pointQ, points, x, y, out);
+        KERNEL.wireField(wireX, wireY, wireQ, wires, x, y, out);
+        for (int i = 0; i < otherCount; i++) {
+            Vector field = others[i].fieldAt(x, y);
+            out[0] += field.x;
+            out[1] += field.y;
+        }
+    }
+
+    /**
+     * Calculate the field at a point.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the field vector
+     */
+    public Vector fieldAt(double x, double y) {
+        double[] out = new double[2];
+        fieldAt(x, y, out);
+        return new Vector(out[0], out[1]);
+    }
+
+    /**
+     * Calculate the field at many points in one call. The charges are
+     * walked once per type for the whole batch, so each column is read
+     * from cache while every point is summed against it.
+     *
+     * @param x the x coordinates
+     * @param y the y coordinates
+     * @param xField receives the x components
+     * @param yField receives the y components
+     * @param n the number of points
+     */
+    @Override
+    public void fieldAt(double[] x, double[] y, double[] xField,
+            double[] yField, int n) {
+        Arrays.fill(xField, 0, n, 0);
+        Arrays.fill(yField, 0, n, 0);
+        KERNEL.pointField(pointX, pointY, pointQ, points, x, y, xField,
+                yField, n);
+        KERNEL.wireField(wireX, wireY, wireQ, wires, x, y, xField, yField,
+                n);
+        for (int i = 0; i < otherCount; i++) {
+            for (int j = 0; j < n; j++) {
+                Vector field = others[i].fieldAt(x[j], y[j]);
+                xField[j] += field.x;
+                yField[j] += field.y;
+            }
+        }
+    }
+
+    /**
+     * Calculate the potential at a point. Wires have no potential, so only
+     * the point charges and the other charges are summed.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the potential
+     */
+    public double potentialAt(double x, double y) {
+        double potential = 0;
+        for (int i = 0; i < points; i++) {
+            double dx = x - pointX[i];
+            double dy = y - pointY[i];
+            potential += pointQ[i] / Math.sqrt(dx * dx + dy * dy);
+        }
+        for (int i = 0; i < otherCount; i++) {
+            potential += others[i].potentialAt(x, y);
+        }
+        return potential;
+    }
+
+    /**
+     * Calculate the potential at many points in one call, walking the
+     * charges once for the whole batch as the field does.
+     *
+     * @param x the x coordinates
+     * @param y the y coordinates
+     * @param potential receives the potentials
+     * @param n the number of points
+     */
+    public void potentialAt(double[] x, double[] y, double[] potential,
+            int n) {
+        Arrays.fill(potential, 0, n, 0);
+        for (int i = 0; i < points; i++) {
+            double cx = pointX[i];
+            double cy = pointY[i];
+            double q = pointQ[i];
+            for (int j = 0; j < n; j++) {
+                double dx = x[j] - cx;
+                double dy = y[j] - cy;
+                potential[j] += q / Math.sqrt(dx * dx + dy * dy);
+            }
+        }
+        for (int i = 0; i < otherCount; i++) {
+            for (int j = 0; j < n; j++) {
+                potential[j] += others[i].potentialAt(x[j], y[j]);
+            }
+        }
+    }
+
+}
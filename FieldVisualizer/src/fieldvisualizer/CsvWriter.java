@@ -0,0 +1,46 @@
+package fieldvisualizer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A CSV writer writes the points of field lines as a table with a row per
+ * point, giving the index of the line, the index of the point in the line
+ * and its coordinates. Arrowheads are left out, since they are drawn from
+ * the points.
+ *
+ * @author Jeff Niu
+ */
+public class CsvWriter extends PathWriter {
+
+    /**
+     * Create a CSV file and write its header row.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public CsvWriter(Path file) throws IOException {
+        super(file);
+        write("line,point,x,y\n");
+    }
+
+    @Override
+    protected void writePath(PathIterator path, int index)
+            throws IOException {
+        for (int i = 0; i < path.size(); i++) {
+            write((long) index);
+            write(',');
+            write((long) i);
+            write(',');
+            write(path.getX(i));
+            write(',');
+            write(path.getY(i));
+            write('\n');
+        }
+    }
+
+    @Override
+    protected void writeEnd() {
+    }
+
+}
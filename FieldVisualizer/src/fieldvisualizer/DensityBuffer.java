@@ -0,0 +1,150 @@
+package fieldvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * A density buffer counts how often points land in each cell of a regular
+ * grid over a rectangle of the world. Test particles are deposited into it
+ * once per step, so that the cells they pass through build up into trails,
+ * and fading the whole buffer a little each step lets old trails die away
+ * while the particles keep laying new ones. The counts are kept as floats
+ * so that fading does not round them down to nothing.
+ *
+ * @author Jeff Niu
+ */
+public class DensityBuffer {
+
+    /**
+     * The world coordinates of the top left corner of the grid, and the
+     * world width of each cell.
+     */
+    private final double x0;
+    private final double y0;
+    private final double cell;
+    /**
+     * The number of cells across and down.
+     */
+    private final int cols;
+    private final int rows;
+    /**
+     * The counts of the cells, row by row.
+     */
+    private final float[] counts;
+
+    /**
+     * Create an empty density buffer.
+     *
+     * @param x0 the world x coordinate of the left edge
+     * @param y0 the world y coordinate of the top edge
+     * @param cell the world width of each cell
+     * @param cols the number of cells across
+     * @param rows the number of cells down
+     */
+    public DensityBuffer(double x0, double y0, double cell, int cols,
+            int rows) {
+        if (!(cell > 0)) {
+            throw new IllegalArgumentException("Cell must be positive: "
+                    + cell);
+        }
+        if (cols < 0 || rows < 0) {
+            throw new IllegalArgumentException("Size must not be negative: "
+                    + cols + " by " + rows);
+        }
+        this.x0 = x0;
+        this.y0 = y0;
+        this.cell = cell;
+        this.cols = cols;
+        this.rows = rows;
+        counts = new float[cols * rows];
+    }
+
+    /**
+     * Create an empty density buffer with one cell for each pixel of a
+     * viewport.
+     *
+     * @param view the viewport
+     * @return the density buffer
+     */
+    public static DensityBuffer of(Viewport view) {
+        return new DensityBuffer(view.getX(), view.getY(),
+                view.getPixelSize(), view.getWidth(), view.getHeight());
+    }
+
+    /**
+     * @return the world x coordinate of the left edge
+     */
+    public double getX() {
+        return x0;
+    }
+
+    /**
+     * @return the world y coordinate of the top edge
+     */
+    public double getY() {
+        return y0;
+    }
+
+    /**
+     * @return the world width of each cell
+     */
+    public double getCell() {
+        return cell;
+    }
+
+    /**
+     * @return the number of cells across
+     */
+    public int getColumns() {
+        return cols;
+    }
+
+    /**
+     * @return the number of cells down
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Count a point in the cell that it lands in. A point outside of the
+     * grid, or one that is not a number, is not counted.
+     *
+     * @param x the world x coordinate
+     * @param y the world y coordinate
+     */
+    public void add(double x, double y) {
+        double col = (x - x0) / cell;
+        double row = (y - y0) / cell;
+        if (col >= 0 && row >= 0 && col < cols && row < rows) {
+            counts[(int) row * cols + (int) col]++;
+        }
+    }
+
+    /**
+     * @param col the column of a cell
+     * @param row the row of a cell
+     * @return the count of the cell
+     */
+    public float get(int col, int row) {
+        return counts[row * cols + col];
+    }
+
+    /**
+     * Fade every count by the same factor.
+     *
+     * @param factor the factor, between zero and one
+     */
+    public void fade(float factor) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] *= factor;
+        }
+    }
+
+    /**
+     * Set every count to zero.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+}
@@ -0,0 +1,198 @@
+package fieldvisualizer;
+
+/**
+ * The Dormand-Prince integrator is an embedded Runge-Kutta method of order
+ * five with a fourth order error estimate (RK45). Every step is taken
+ * with both orders, and their difference estimates the error of the step.
+ * A step whose error is within the tolerance is accepted and the next step
+ * is grown; otherwise, the step is retried with a smaller length. Lines
+ * are then traced with long steps where they are nearly straight, far from
+ * the charges, and short steps where they bend, near the charges. The last
+ * stage is evaluated at the end of the step, so it is reused as the first
+ * stage of the next step, and a step costs six field evaluations.
+ *
+ * @author Jeff Niu
+ */
+public class DormandPrinceIntegrator implements Integrator {
+
+    /**
+     * The Dormand-Prince coefficients.
+     */
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15,
+            A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561,
+            A52 = -25360.0 / 2187, A53 = 64448.0 / 6561,
+            A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33,
+            A63 = 46732.0 / 5247, A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+    private static final double B1 = 35.0 / 384, B3 = 500.0 / 1113,
+            B4 = 125.0 / 192, B5 = -2187.0 / 6784, B6 = 11.0 / 84;
+    /**
+     * The differences between the fifth and fourth order weights.
+     */
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695,
+            E4 = 71.0 / 1920, E5 = -17253.0 / 339200, E6 = 22.0 / 525,
+            E7 = -1.0 / 40;
+
+    /**
+     * The factor applied to the ideal step length for safety.
+     */
+    private static final double SAFETY = 0.9;
+    /**
+     * The most that a step may shrink by.
+     */
+    private static final double MIN_FACTOR = 0.2;
+    /**
+     * The most that a step may grow by.
+     */
+    private static final double MAX_FACTOR = 5;
+
+    /**
+     * The first step length tried.
+     */
+    private final double step;
+    /**
+     * The largest error allowed per step, in the units of the positions.
+     */
+    private final double tolerance;
+    /**
+     * The shortest step, which is always accepted.
+     */
+    private final double minStep;
+    /**
+     * The longest step.
+     */
+    private final double maxStep;
+
+    /**
+     * Create a new Dormand-Prince integrator that may shrink the step to
+     * a tenth of the first step and grow it to twenty times the first
+     * step.
+     *
+     * @param step the first step length tried
+     * @param tolerance the largest error allowed per step
+     */
+    public DormandPrinceIntegrator(double step, double tolerance) {
+        this(step, tolerance, step / 10, step * 20);
+    }
+
+    /**
+     * Create a new Dormand-Prince integrator.
+     *
+     * @param step the first step length tried
+     * @param tolerance the largest error allowed per step
+     * @param minStep the shortest step
+     * @param maxStep the longest step
+     */
+    public DormandPrinceIntegrator(double step, double tolerance,
+            double minStep, double maxStep) {
+        this.step = step;
+        this.tolerance = tolerance;
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+    }
+
+    /**
+     * @return the first step length tried
+     */
+    @Override
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * @return the largest error allowed per step
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * The tolerance is a length too, so it is scaled with the steps.
+     *
+     * @param factor the factor applied to the lengths
+     * @return a Dormand-Prince integrator with the scaled lengths
+     */
+    @Override
+    public Integrator scaled(double factor) {
+        return new DormandPrinceIntegrator(step * factor, tolerance * factor,
+                minStep * factor, maxStep * factor);
+    }
+
+    /**
+     * Advance the point by one accepted step. The step controller scales
+     * the step by the inverse fourth root of the error ratio, which is
+     * found with two square roots rather than a power function. This is
+     * slightly bolder than the fifth root of the classic controller, and
+     * the growth of each step is capped.
+     *
+     * @param field the sampler of the field
+     * @param point the trace point to advance
+     */
+    @Override
+    public void step(FieldSampler field, TracePoint point) {
+        double x = point.x;
+        double y = point.y;
+        double k1x = point.ux;
+        double k1y = point.uy;
+        double h = Math.min(Math.max(point.step, minStep), maxStep);
+        while (true) {
+            point.direction(field, x + h * A21 * k1x, y + h * A21 * k1y);
+            double k2x = point.dx();
+            double k2y = point.dy();
+            point.direction(field, x + h * (A31 * k1x + A32 * k2x),
+                    y + h * (A31 * k1y + A32 * k2y));
+            double k3x = point.dx();
+            double k3y = point.dy();
+            point.direction(field,
+                    x + h * (A41 * k1x + A42 * k2x + A43 * k3x),
+                    y + h * (A41 * k1y + A42 * k2y + A43 * k3y));
+            double k4x = point.dx();
+            double k4y = point.dy();
+            point.direction(field,
+                    x + h * (A51 * k1x + A52 * k2x + A53 * k3x + A54 * k4x),
+                    y + h * (A51 * k1y + A52 * k2y + A53 * k3y + A54 * k4y));
+            double k5x = point.dx();
+            double k5y = point.dy();
+            point.direction(field,
+                    x + h * (A61 * k1x + A62 * k2x + A63 * k3x + A64 * k4x
+                    + A65 * k5x),
+                    y + h * (A61 * k1y + A62 * k2y + A63 * k3y + A64 * k4y
+                    + A65 * k5y));
+            double k6x = point.dx();
+            double k6y = point.dy();
+            double nx = x + h * (B1 * k1x + B3 * k3x + B4 * k4x + B5 * k5x
+                    + B6 * k6x);
+            double ny = y + h * (B1 * k1y + B3 * k3y + B4 * k4y + B5 * k5y
+                    + B6 * k6y);
+            point.direction(field, nx, ny);
+            double k7x = point.dx();
+            double k7y = point.dy();
+            double ex = h * (E1 * k1x + E3 * k3x + E4 * k4x + E5 * k5x
+                    + E6 * k6x + E7 * k7x);
+            double ey = h * (E1 * k1y + E3 * k3y + E4 * k4y + E5 * k5y
+                    + E6 * k6y + E7 * k7y);
+            double ratio = Math.sqrt(ex * ex + ey * ey) / tolerance;
+            if (ratio <= 1 || h <= minStep) {
+                point.x = nx;
+                point.y = ny;
+                point.ux = k7x;
+                point.uy = k7y;
+                point.taken = h;
+                double factor = ratio <= 1
+                        ? SAFETY / Math.sqrt(Math.sqrt(ratio)) : 1;
+                point.step = Math.min(h * Math.min(factor, MAX_FACTOR),
+                        maxStep);
+                return;
+            }
+            // An error that is not a number, from a stage landing on a
+            // charge, shrinks the step as much as possible
+            double factor = SAFETY / Math.sqrt(Math.sqrt(ratio));
+            h = Math.max(h * (factor > MIN_FACTOR ? factor : MIN_FACTOR),
+                    minStep);
+        }
+    }
+
+}
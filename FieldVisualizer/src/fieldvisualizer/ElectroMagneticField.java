@@ -2,6 +2,7 @@ package fieldvisualizer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * This class is an implementation of the field class and is able to handle
@@ -17,6 +18,43 @@ public class ElectroMagneticField implements Field {
      */
     private final List<Charge> charges;
 
+    /**
+     * The tracer used to trace the field lines in parallel, or null if the
+     * lines are traced on the calling thread.
+     */
+    private ParallelTracer tracer;
+
+    /**
+     * The left edge of the field grid.
+     */
+    private double gridX;
+    /**
+     * The top edge of the field grid.
+     */
+    private double gridY;
+    /**
+     * The width of the field grid.
+     */
+    private double gridWidth;
+    /**
+     * The height of the field grid.
+     */
+    private double gridHeight;
+    /**
+     * The distance between the lattice points of the field grid, which is
+     * zero if no grid is used.
+     */
+    private double gridSpacing;
+
+    /**
+     * The last field grid that was sampled, or null if there is none.
+     */
+    private FieldGrid grid;
+    /**
+     * The snapshot of the charges that the grid was sampled from.
+     */
+    private ChargeStore gridCharges;
+
     /**
      * Create a new field.
      */
@@ -24,6 +62,66 @@ public class ElectroMagneticField implements Field {
         charges = new ArrayList<>();
     }
 
+    /**
+     * Set the tracer that spreads the field lines across a pool of
+     * threads. Without a tracer, the lines are traced sequentially.
+     *
+     * @param tracer the parallel tracer, or null to trace sequentially
+     */
+    public void setTracer(ParallelTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    /**
+     * Sample the field onto a grid, which is then used to trace the field
+     * lines by interpolation. The grid is sampled again whenever a charge
+     * is added, removed, moved or changed in strength, and setting the
+     * same grid again keeps the samples.
+     *
+     * @param x the left edge of the grid
+     * @param y the top edge of the grid
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param spacing the distance between lattice points
+     */
+    public void setGrid(double x, double y, double width, double height,
+            double spacing) {
+        if (x == gridX && y == gridY && width == gridWidth
+                && height == gridHeight && spacing == gridSpacing) {
+            return;
+        }
+        gridX = x;
+        gridY = y;
+        gridWidth = width;
+        gridHeight = height;
+        gridSpacing = spacing;
+        grid = null;
+        gridCharges = null;
+    }
+
+    /**
+     * Sample the field onto a grid over the part of the world seen through
+     * a viewport.
+     *
+     * @param view the viewport
+     * @param cell the number of pixels between lattice points
+     */
+    public void setGrid(Viewport view, double cell) {
+        double pixel = view.getPixelSize();
+        setGrid(view.getX(), view.getY(), view.getWidth() * pixel,
+                view.getHeight() * pixel, cell * pixel);
+    }
+
+    /**
+     * Stop using a grid, so that the field is summed exactly at every
+     * point.
+     */
+    public void removeGrid() {
+        gridSpacing = 0;
+        grid = null;
+        gridCharges = null;
+    }
+
     /**
      * Add a charge to this field.
      * 
@@ -42,4 +140,47 @@ public class ElectroMagneticField implements Field {
         return charges;
     }
 
+    /**
+     * The sampler of this field sums the charges exactly, or interpolates
+     * on the field grid if one is set. The charges are public and may be
+     * moved in place, so they are compared with the snapshot the grid was
+     * sampled from every time, and the grid is kept only while they match.
+     * Comparing the charges costs far less than sampling the grid, which
+     * sums every charge at every lattice point.
+     *
+     * @return the sampler of the field
+     */
+    @Override
+    public FieldSampler sampler() {
+        if (gridSpacing <= 0) {
+            return Field.super.sampler();
+        }
+        if (grid == null || !gridCharges.sameCharges(charges)) {
+            gridCharges = new ChargeStore(charges);
+            grid = new FieldGrid(gridCharges, gridX, gridY, gridWidth,
+                    gridHeight, gridSpacing);
+        }
+        return grid;
+    }
+
+    /**
+     * Trace the field lines seen through a viewport and hand each one to a
+     * consumer, in parallel if a tracer has been set. The lines come in
+     * the same order either way, and the other ways of tracing come here.
+     *
+     * @param angle the projection angle
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @param sink the consumer of the field lines
+     */
+    @Override
+    public void trace(double angle, Integrator integrator, Viewport view,
+            Consumer<? super PathIterator> sink) {
+        if (tracer != null) {
+            tracer.trace(this, angle, integrator, view, sink);
+        } else {
+            Field.super.trace(angle, integrator, view, sink);
+        }
+    }
+
 }
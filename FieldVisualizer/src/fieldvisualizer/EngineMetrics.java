@@ -0,0 +1,245 @@
+package fieldvisualizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Engine metrics count the work done to draw the frames of a display: the
+ * field lines traced, the steps taken along them and the field evaluations
+ * they needed, the time spent tracing and drawing, and the frames that
+ * were replaced before they were drawn. Each frame is recorded once it has
+ * been drawn, from the lines it traced, so tracing itself is not slowed
+ * down by counting. Rolling histograms of the latest frames and lines
+ * show how the work per frame follows the scene.
+ * <p>
+ * The metrics may be published as an MBean on the platform MBean server,
+ * where JConsole can watch them, under the name
+ * {@code fieldvisualizer:type=EngineMetrics,name=<name>}. The metrics are
+ * recorded on one thread and read on others, so every method holds the
+ * lock of the metrics.
+ *
+ * @author Jeff Niu
+ */
+public class EngineMetrics implements EngineMetricsMBean {
+
+    /**
+     * The number of latest frames and latest lines kept in the histograms.
+     */
+    private static final int FRAME_WINDOW = 256;
+    private static final int LINE_WINDOW = 4096;
+
+    /**
+     * The name that the metrics are published under.
+     */
+    private final String name;
+
+    /**
+     * The counts since the metrics were created or reset.
+     */
+    private long frames;
+    private long skipped;
+    private long lines;
+    private long steps;
+    private long evaluations;
+
+    /**
+     * The histograms of the latest frames and lines.
+     */
+    private final RollingHistogram evaluationsPerFrame
+            = new RollingHistogram(FRAME_WINDOW);
+    private final RollingHistogram linesPerFrame
+            = new RollingHistogram(FRAME_WINDOW);
+    private final RollingHistogram stepsPerLine
+            = new RollingHistogram(LINE_WINDOW);
+    private final RollingHistogram traceMillis
+            = new RollingHistogram(FRAME_WINDOW);
+    private final RollingHistogram rasterMillis
+            = new RollingHistogram(FRAME_WINDOW);
+
+    /**
+     * Create empty metrics.
+     *
+     * @param name the name to publish the metrics under, such as the name
+     * of the display
+     */
+    public EngineMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the name that the metrics are published under
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Publish the metrics on the platform MBean server, replacing any
+     * metrics already published under the same name. The metrics are only
+     * there to be watched, so a failure to publish them is reported rather
+     * than thrown.
+     *
+     * @return whether the metrics were published
+     */
+    public boolean register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(
+                    "fieldvisualizer:type=EngineMetrics,name=" + name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            return true;
+        } catch (JMException | SecurityException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Record a drawn frame. Each line counts its steps, which are the
+     * segments between its points, and its field evaluations. A frame
+     * drawn without field lines, such as a texture, passes no lines.
+     *
+     * @param trace the field lines traced for the frame
+     * @param traceNanos the time spent tracing, in nanoseconds
+     * @param rasterNanos the time spent drawing, in nanoseconds
+     */
+    public synchronized void recordFrame(List<PathIterator> trace,
+            long traceNanos, long rasterNanos) {
+        long frameEvaluations = 0;
+        for (PathIterator path : trace) {
+            int taken = Math.max(0, path.size() - 1);
+            steps += taken;
+            stepsPerLine.record(taken);
+            frameEvaluations += path.getEvaluations();
+        }
+        frames++;
+        lines += trace.size();
+        evaluations += frameEvaluations;
+        linesPerFrame.record(trace.size());
+        evaluationsPerFrame.record(frameEvaluations);
+        traceMillis.record(traceNanos / 1e6);
+        rasterMillis.record(rasterNanos / 1e6);
+    }
+
+    /**
+     * Record that a requested frame was replaced before it was drawn.
+     */
+    public synchronized void recordSkipped() {
+        skipped++;
+    }
+
+    @Override
+    public String getKernel() {
+        return ChargeStore.getKernelName();
+    }
+
+    @Override
+    public synchronized long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public synchronized long getFramesSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    @Override
+    public synchronized long getSteps() {
+        return steps;
+    }
+
+    @Override
+    public synchronized long getEvaluations() {
+        return evaluations;
+    }
+
+    @Override
+    public synchronized double getEvaluationsPerFrameMean() {
+        return evaluationsPerFrame.getMean();
+    }
+
+    @Override
+    public synchronized double getEvaluationsPerFrameP95() {
+        return evaluationsPerFrame.getPercentile(0.95);
+    }
+
+    @Override
+    public synchronized double getLinesPerFrameMean() {
+        return linesPerFrame.getMean();
+    }
+
+    @Override
+    public synchronized double getLinesPerFrameMax() {
+        return linesPerFrame.getMax();
+    }
+
+    @Override
+    public synchronized double getStepsPerLineMean() {
+        return stepsPerLine.getMean();
+    }
+
+    @Override
+    public synchronized double getStepsPerLineP95() {
+        return stepsPerLine.getPercentile(0.95);
+    }
+
+    @Override
+    public synchronized double getStepsPerLineMax() {
+        return stepsPerLine.getMax();
+    }
+
+    @Override
+    public synchronized double getTraceMillisMean() {
+        return traceMillis.getMean();
+    }
+
+    @Override
+    public synchronized double getTraceMillisP95() {
+        return traceMillis.getPercentile(0.95);
+    }
+
+    @Override
+    public synchronized double getTraceMillisMax() {
+        return traceMillis.getMax();
+    }
+
+    @Override
+    public synchronized double getRasterMillisMean() {
+        return rasterMillis.getMean();
+    }
+
+    @Override
+    public synchronized double getRasterMillisP95() {
+        return rasterMillis.getPercentile(0.95);
+    }
+
+    @Override
+    public synchronized double getRasterMillisMax() {
+        return rasterMillis.getMax();
+    }
+
+    @Override
+    public synchronized void reset() {
+        frames = 0;
+        skipped = 0;
+        lines = 0;
+        steps = 0;
+        evaluations = 0;
+        evaluationsPerFrame.clear();
+        linesPerFrame.clear();
+        stepsPerLine.clear();
+        traceMillis.clear();
+        rasterMillis.clear();
+    }
+
+}
@@ -0,0 +1,116 @@
+package fieldvisualizer;
+
+/**
+ * The management interface of the engine metrics, which JMX clients such
+ * as JConsole read. The counts run from when the metrics were created or
+ * last reset, while the means, percentiles and largest values are over the
+ * latest frames and lines only.
+ *
+ * @author Jeff Niu
+ */
+public interface EngineMetricsMBean {
+
+    /**
+     * @return the name of the field kernel that sums the charges
+     */
+    public String getKernel();
+
+    /**
+     * @return the number of frames drawn
+     */
+    public long getFrames();
+
+    /**
+     * @return the number of frames requested and then replaced by a newer
+     * request before they were drawn
+     */
+    public long getFramesSkipped();
+
+    /**
+     * @return the number of field lines traced
+     */
+    public long getLines();
+
+    /**
+     * @return the number of steps taken along the field lines
+     */
+    public long getSteps();
+
+    /**
+     * @return the number of times the field was evaluated while tracing
+     */
+    public long getEvaluations();
+
+    /**
+     * @return the mean number of field evaluations per frame
+     */
+    public double getEvaluationsPerFrameMean();
+
+    /**
+     * @return the 95th percentile of field evaluations per frame
+     */
+    public double getEvaluationsPerFrameP95();
+
+    /**
+     * @return the mean number of field lines per frame
+     */
+    public double getLinesPerFrameMean();
+
+    /**
+     * @return the largest number of field lines in a frame
+     */
+    public double getLinesPerFrameMax();
+
+    /**
+     * @return the mean number of steps per field line
+     */
+    public double getStepsPerLineMean();
+
+    /**
+     * @return the 95th percentile of steps per field line
+     */
+    public double getStepsPerLineP95();
+
+    /**
+     * @return the largest number of steps in a field line
+     */
+    public double getStepsPerLineMax();
+
+    /**
+     * @return the mean time spent tracing a frame, in milliseconds
+     */
+    public double getTraceMillisMean();
+
+    /**
+     * @return the 95th percentile of the time spent tracing a frame, in
+     * milliseconds
+     */
+    public double getTraceMillisP95();
+
+    /**
+     * @return the longest time spent tracing a frame, in milliseconds
+     */
+    public double getTraceMillisMax();
+
+    /**
+     * @return the mean time spent drawing a frame, in milliseconds
+     */
+    public double getRasterMillisMean();
+
+    /**
+     * @return the 95th percentile of the time spent drawing a frame, in
+     * milliseconds
+     */
+    public double getRasterMillisP95();
+
+    /**
+     * @return the longest time spent drawing a frame, in milliseconds
+     */
+    public double getRasterMillisMax();
+
+    /**
+     * Set the counts to zero and empty the histograms.
+     */
+    public void reset();
+
+}
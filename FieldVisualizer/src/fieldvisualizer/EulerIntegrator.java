@@ -0,0 +1,60 @@
+package fieldvisualizer;
+
+/**
+ * The forward Euler integrator moves a fixed distance along the field
+ * direction at the start of each step. It is the original tracing method
+ * and needs a single field evaluation per step, but its error grows with
+ * the curvature of the line.
+ *
+ * @author Jeff Niu
+ */
+public class EulerIntegrator implements Integrator {
+
+    /**
+     * The step length.
+     */
+    private final double step;
+
+    /**
+     * Create a new Euler integrator.
+     *
+     * @param step the step length
+     */
+    public EulerIntegrator(double step) {
+        this.step = step;
+    }
+
+    /**
+     * @return the step length
+     */
+    @Override
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * @param factor the factor applied to the step
+     * @return an Euler integrator with the scaled step
+     */
+    @Override
+    public Integrator scaled(double factor) {
+        return new EulerIntegrator(step * factor);
+    }
+
+    /**
+     * Move the point by one step along its direction.
+     *
+     * @param field the sampler of the field
+     * @param point the trace point to advance
+     */
+    @Override
+    public void step(FieldSampler field, TracePoint point) {
+        point.x += step * point.ux;
+        point.y += step * point.uy;
+        point.direction(field, point.x, point.y);
+        point.ux = point.dx();
+        point.uy = point.dy();
+        point.taken = step;
+    }
+
+}
@@ -1,9 +1,9 @@
 package fieldvisualizer;
 
-import static java.lang.Math.PI;
-import static java.lang.Math.abs;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A field can be either a magnetic or electric field. A field describes a
@@ -41,6 +41,24 @@ public interface Field {
         return new Vector(xField, yField);
     }
 
+    /**
+     * Calculate the field at many points in one call. The field is
+     * evaluated through its sampler, which by default copies the charges
+     * once into a charge store whose primitive columns are then summed
+     * against every point, and the components are written into the output
+     * arrays supplied by the caller.
+     *
+     * @param x the x coordinates
+     * @param y the y coordinates
+     * @param xField receives the x components
+     * @param yField receives the y components
+     * @param n the number of points
+     */
+    public default void fieldAt(double[] x, double[] y, double[] xField,
+            double[] yField, int n) {
+        sampler().fieldAt(x, y, xField, yField, n);
+    }
+
     /**
      * This method will add another charge object to the field.
      *
@@ -55,42 +73,159 @@ public interface Field {
      */
     public List<Charge> getCharges();
 
+    /**
+     * Get the sampler that evaluates the field of the current charges
+     * while tracing. By default, the charges are copied into a charge
+     * store and summed exactly. The sampler must not be used after the
+     * charges in the field have changed.
+     *
+     * @return the sampler of the field
+     */
+    public default FieldSampler sampler() {
+        return new ChargeStore(getCharges());
+    }
+
     /**
      * This method will return a list of path iterators that describe
      * geometrically the field lines, which can be used to draw the field
-     * lines for visualization.
+     * lines for visualization. The lines are traced with forward Euler
+     * steps of a fixed length.
      *
      * @param angle the projection angle
      * @param step the resolution step
      * @return the list of field lines
      */
     public default List<PathIterator> trace(double angle, double step) {
+        return trace(angle, new EulerIntegrator(step));
+    }
+
+    /**
+     * This method will return a list of path iterators that describe the
+     * field lines on the original screen, stepping along each line with an
+     * integrator.
+     *
+     * @param angle the projection angle
+     * @param integrator the integrator that steps along the lines
+     * @return the list of field lines
+     */
+    public default List<PathIterator> trace(double angle,
+            Integrator integrator) {
+        return trace(angle, integrator, Viewport.DEFAULT);
+    }
+
+    /**
+     * This method will return a list of path iterators that describe the
+     * field lines seen through a viewport.
+     *
+     * @param angle the projection angle
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @return the list of field lines
+     */
+    public default List<PathIterator> trace(double angle,
+            Integrator integrator, Viewport view) {
         List<PathIterator> trace = new ArrayList<>();
+        trace(angle, integrator, view, trace::add);
+        return trace;
+    }
+
+    /**
+     * Trace the field lines on the original screen and hand each one to a
+     * consumer.
+     *
+     * @param angle the projection angle
+     * @param integrator the integrator that steps along the lines
+     * @param sink the consumer of the field lines
+     */
+    public default void trace(double angle, Integrator integrator,
+            Consumer<? super PathIterator> sink) {
+        trace(angle, integrator, Viewport.DEFAULT, sink);
+    }
+
+    /**
+     * Trace the field lines seen through a viewport and hand each one to a
+     * consumer as soon as it has been traced, in the same order as in the
+     * list of field lines. The field does not keep the lines, so a
+     * consumer that writes them out and lets them go can take any number
+     * of lines without holding them all in memory. Origins far from the
+     * viewport are skipped, and the integrator is fitted to the viewport.
+     * The sinks of the charges are found once, and a line that comes
+     * within a few pixels of one ends there.
+     *
+     * @param angle the projection angle
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @param sink the consumer of the field lines
+     */
+    public default void trace(double angle, Integrator integrator,
+            Viewport view, Consumer<? super PathIterator> sink) {
         List<Charge> list = getCharges();
         Charge[] charges = list.toArray(new Charge[list.size()]);
+        FieldSampler sampler = sampler();
+        Integrator fitted = view.fit(integrator);
+        Sinks sinks = Sinks.of(Arrays.asList(charges), view, false);
         for (Charge charge : charges) {
-            List<PathIterator> chargeTrace
-                    = charge.trace(angle, step, charges);
-            if (chargeTrace != null) {
-                trace.addAll(chargeTrace);
+            for (Vector origin : charge.getOrigins(angle)) {
+                if (!view.isNear(origin.x, origin.y)) {
+                    continue;
+                }
+                PathIterator path = charge.trace(origin, fitted, sampler,
+                        view, sinks);
+                if (path != null) {
+                    sink.accept(path);
+                }
             }
         }
-        return trace;
+    }
+
+    /**
+     * Trace field lines spread evenly over a viewport, a separation apart,
+     * and hand each one to a consumer as soon as it has been placed. The
+     * origins of the charges on the screen are tried first, so lines still
+     * start from the sources, and the rest of the screen is then filled
+     * with lines wherever there is room for one. The number of lines
+     * follows the size of the screen rather than the number of charges.
+     *
+     * @param angle the projection angle
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @param separation the separation between the lines, in pixels
+     * @param sink the consumer of the field lines
+     */
+    public default void traceEvenly(double angle, Integrator integrator,
+            Viewport view, double separation,
+            Consumer<? super PathIterator> sink) {
+        List<Charge> charges = new ArrayList<>(getCharges());
+        List<Vector> origins = new ArrayList<>();
+        for (Charge charge : charges) {
+            for (Vector origin : charge.getOrigins(angle)) {
+                if (view.contains(origin.x, origin.y)) {
+                    origins.add(origin);
+                }
+            }
+        }
+        new StreamlinePlacer(sampler(), integrator, view, separation,
+                Sinks.of(charges, view, false), Sinks.of(charges, view, true))
+                .place(origins, sink);
     }
 
     /**
      * This helper method will determine whether a field line has crossed a
      * charge, in which point the trace stops for that path. Crossing a
-     * charge causes a drastic change in direction. This method is
-     * available for use by other classes.
+     * charge causes a drastic change in direction. The two directions are
+     * unit vectors, and the path has not reversed as long as they are
+     * less than a quarter turn apart, which is when their dot product is
+     * positive. This method is available for use by other classes.
      *
-     * @param theta1 the new angle
-     * @param theta2 the old angle
-     * @return true if a charge has been crossed
+     * @param ux1 the old direction x component
+     * @param uy1 the old direction y component
+     * @param ux2 the new direction x component
+     * @param uy2 the new direction y component
+     * @return false if a charge has been crossed
      */
-    static boolean nonReversed(double theta1, double theta2) {
-        double delta = abs(theta1 - theta2);
-        return PI / 2 > delta || delta > 3 * PI / 2;
+    static boolean nonReversed(double ux1, double uy1, double ux2,
+            double uy2) {
+        return ux1 * ux2 + uy1 * uy2 > 0;
     }
 
 }
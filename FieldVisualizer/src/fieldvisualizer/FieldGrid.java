@@ -0,0 +1,188 @@
+package fieldvisualizer;
+
+import java.util.stream.IntStream;
+
+/**
+ * A field grid is a precomputed sampling of a field on a regular lattice.
+ * The lattice is sampled once, row by row in parallel, and after that the
+ * field at any point inside it is found by bilinear interpolation between
+ * the four surrounding samples, which costs the same no matter how many
+ * charges there are. Interpolation is wrong near a source, where the
+ * field changes faster than the lattice can follow, so every cell within
+ * a radius of a point charge or wire is marked and evaluated exactly, as
+ * is every point outside of the lattice.
+ *
+ * @author Jeff Niu
+ */
+public class FieldGrid implements FieldSampler {
+
+    /**
+     * The default radius around each source, in cells, inside of which
+     * the field is evaluated exactly.
+     */
+    public static final double EXACT_CELLS = 4;
+
+    /**
+     * The sampler used for exact evaluation.
+     */
+    private final FieldSampler exact;
+
+    /**
+     * The x coordinate of the first lattice column.
+     */
+    private final double x0;
+    /**
+     * The y coordinate of the first lattice row.
+     */
+    private final double y0;
+    /**
+     * The distance between lattice points.
+     */
+    private final double spacing;
+    /**
+     * The number of cells across.
+     */
+    private final int cols;
+    /**
+     * The number of cells down.
+     */
+    private final int rows;
+
+    /**
+     * The sampled x components, with cols + 1 points in each row.
+     */
+    private final double[] xField;
+    /**
+     * The sampled y components.
+     */
+    private final double[] yField;
+    /**
+     * Whether each cell is close enough to a source to be evaluated
+     * exactly.
+     */
+    private final boolean[] near;
+
+    /**
+     * Sample the field of a set of charges onto a grid, evaluating the
+     * field exactly within the default radius of each source.
+     *
+     * @param charges the snapshot of the charges
+     * @param x0 the left edge of the grid
+     * @param y0 the top edge of the grid
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param spacing the distance between lattice points
+     */
+    public FieldGrid(ChargeStore charges, double x0, double y0,
+            double width, double height, double spacing) {
+        this(charges, x0, y0, width, height, spacing,
+                EXACT_CELLS * spacing);
+    }
+
+    /**
+     * Sample the field of a set of charges onto a grid.
+     *
+     * @param charges the snapshot of the charges
+     * @param x0 the left edge of the grid
+     * @param y0 the top edge of the grid
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param spacing the distance between lattice points
+     * @param radius the distance from a source within which the field is
+     * evaluated exactly
+     */
+    public FieldGrid(ChargeStore charges, double x0, double y0,
+            double width, double height, double spacing, double radius) {
+        this.exact = charges;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.spacing = spacing;
+        cols = Math.max(1, (int) Math.ceil(width / spacing));
+        rows = Math.max(1, (int) Math.ceil(height / spacing));
+        int stride = cols + 1;
+        xField = new double[stride * (rows + 1)];
+        yField = new double[stride * (rows + 1)];
+        near = new boolean[cols * rows];
+        // Each row of lattice points is one batch of the field kernel
+        IntStream.rangeClosed(0, rows).parallel().forEach((j) -> {
+            double[] xs = new double[stride];
+            double[] ys = new double[stride];
+            double[] fx = new double[stride];
+            double[] fy = new double[stride];
+            for (int i = 0; i < stride; i++) {
+                xs[i] = x0 + i * spacing;
+                ys[i] = y0 + j * spacing;
+            }
+            charges.fieldAt(xs, ys, fx, fy, stride);
+            System.arraycopy(fx, 0, xField, j * stride, stride);
+            System.arraycopy(fy, 0, yField, j * stride, stride);
+        });
+        for (int i = 0; i < charges.pointCount(); i++) {
+            mark(charges.getPointX(i), charges.getPointY(i), radius);
+        }
+        for (int i = 0; i < charges.wireCount(); i++) {
+            mark(charges.getWireX(i), charges.getWireY(i), radius);
+        }
+    }
+
+    /**
+     * Mark every cell that overlaps the square around a source as one to
+     * be evaluated exactly.
+     *
+     * @param x the source x position
+     * @param y the source y position
+     * @param radius the exact radius
+     */
+    private void mark(double x, double y, double radius) {
+        int i0 = Math.max(0, (int) Math.floor((x - radius - x0) / spacing));
+        int i1 = Math.min(cols - 1,
+                (int) Math.floor((x + radius - x0) / spacing));
+        int j0 = Math.max(0, (int) Math.floor((y - radius - y0) / spacing));
+        int j1 = Math.min(rows - 1,
+                (int) Math.floor((y + radius - y0) / spacing));
+        for (int j = j0; j <= j1; j++) {
+            for (int i = i0; i <= i1; i++) {
+                near[j * cols + i] = true;
+            }
+        }
+    }
+
+    /**
+     * Calculate the field at a point, interpolating between the lattice
+     * points unless the point is near a source or outside of the grid.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array receiving the x and y components
+     */
+    @Override
+    public void fieldAt(double x, double y, double[] out) {
+        double gx = (x - x0) / spacing;
+        double gy = (y - y0) / spacing;
+        // This also sends coordinates that are not numbers to the exact
+        // sampler
+        if (!(gx >= 0 && gy >= 0 && gx < cols && gy < rows)) {
+            exact.fieldAt(x, y, out);
+            return;
+        }
+        int i = (int) gx;
+        int j = (int) gy;
+        if (near[j * cols + i]) {
+            exact.fieldAt(x, y, out);
+            return;
+        }
+        double tx = gx - i;
+        double ty = gy - j;
+        int k = j * (cols + 1) + i;
+        int below = k + cols + 1;
+        double w00 = (1 - tx) * (1 - ty);
+        double w10 = tx * (1 - ty);
+        double w01 = (1 - tx) * ty;
+        double w11 = tx * ty;
+        out[0] = w00 * xField[k] + w10 * xField[k + 1]
+                + w01 * xField[below] + w11 * xField[below + 1];
+        out[1] = w00 * yField[k] + w10 * yField[k + 1]
+                + w01 * yField[below] + w11 * yField[below + 1];
+    }
+
+}
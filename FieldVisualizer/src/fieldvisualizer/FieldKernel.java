@@ -0,0 +1,200 @@
+package fieldvisualizer;
+
+import java.util.Random;
+
+/**
+ * A field kernel sums the fields of columns of point charges and wires,
+ * which is the inner loop of a charge store. The scalar kernel sums one
+ * charge at a time and runs everywhere. The vector kernel sums several
+ * charges at once in the lanes of the JDK vector API; it is compiled only
+ * when the build JDK has the {@code jdk.incubator.vector} module, and used
+ * only when the running JVM was started with
+ * {@code --add-modules jdk.incubator.vector}. A vector kernel is checked
+ * against the scalar kernel before it is used, since it adds the charges
+ * in a different order and so rounds differently. The two must agree to
+ * within {@link #TOLERANCE} of the sum of the magnitudes of the terms at
+ * every point checked, or the scalar kernel is used instead.
+ *
+ * @author Jeff Niu
+ */
+interface FieldKernel {
+
+    /**
+     * The largest difference allowed between two kernels, relative to the
+     * sum of the magnitudes of the terms. Reordering a sum of n terms
+     * changes it by at most about n times the double precision epsilon of
+     * that sum, which is far below this for any scene.
+     */
+    public static final double TOLERANCE = 1e-12;
+
+    /**
+     * The name of the vector kernel class, which is only on the class path
+     * when the build JDK has the vector API.
+     */
+    public static final String VECTOR = "fieldvisualizer.VectorKernel";
+
+    /**
+     * The system property that forces the scalar kernel when set to
+     * {@code scalar}.
+     */
+    public static final String PROPERTY = "fieldvisualizer.kernel";
+
+    /**
+     * @return a short name of the kernel
+     */
+    public String getName();
+
+    /**
+     * Add the field of a column of point charges at a point to an output
+     * array.
+     *
+     * @param cx the x positions of the charges
+     * @param cy the y positions of the charges
+     * @param q the strengths of the charges
+     * @param n the number of charges
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array that the x and y components are added to
+     */
+    public void pointField(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, double[] out);
+
+    /**
+     * Add the field of a column of wires at a point to an output array.
+     *
+     * @param cx the x positions of the wires
+     * @param cy the y positions of the wires
+     * @param q the current strengths of the wires
+     * @param n the number of wires
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array that the x and y components are added to
+     */
+    public void wireField(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, double[] out);
+
+    /**
+     * Add the field of a column of point charges at many points.
+     *
+     * @param cx the x positions of the charges
+     * @param cy the y positions of the charges
+     * @param q the strengths of the charges
+     * @param n the number of charges
+     * @param x the x coordinates
+     * @param y the y coordinates
+     * @param xField the x components to add to
+     * @param yField the y components to add to
+     * @param m the number of points
+     */
+    public void pointField(double[] cx, double[] cy, double[] q, int n,
+            double[] x, double[] y, double[] xField, double[] yField,
+            int m);
+
+    /**
+     * Add the field of a column of wires at many points.
+     *
+     * @param cx the x positions of the wires
+     * @param cy the y positions of the wires
+     * @param q the current strengths of the wires
+     * @param n the number of wires
+     * @param x the x coordinates
+     * @param y the y coordinates
+     * @param xField the x components to add to
+     * @param yField the y components to add to
+     * @param m the number of points
+     */
+    public void wireField(double[] cx, double[] cy, double[] q, int n,
+            double[] x, double[] y, double[] xField, double[] yField,
+            int m);
+
+    /**
+     * Choose the kernel for this JVM: the vector kernel if it can be
+     * loaded and agrees with the scalar kernel, and the scalar kernel
+     * otherwise. Loading fails with a linkage error on a JVM older than
+     * the vector kernel or without the vector module, which is expected.
+     *
+     * @return the kernel to use
+     */
+    public static FieldKernel select() {
+        FieldKernel scalar = new ScalarKernel();
+        if ("scalar".equals(System.getProperty(PROPERTY))) {
+            return scalar;
+        }
+        try {
+            FieldKernel vector = (FieldKernel) Class.forName(VECTOR)
+                    .getDeclaredConstructor().newInstance();
+            if (agrees(vector, scalar)) {
+                return vector;
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The vector kernel is not available in this JVM
+        }
+        return scalar;
+    }
+
+    /**
+     * Check that a kernel agrees with a reference kernel on a fixed random
+     * set of charges, whose count is not a multiple of any lane width, at
+     * single points and in a batch.
+     *
+     * @param kernel the kernel to check
+     * @param reference the kernel taken to be right
+     * @return whether the kernels agree to within the tolerance
+     */
+    public static boolean agrees(FieldKernel kernel, FieldKernel reference) {
+        Random random = new Random(19);
+        int n = 37;
+        int m = 29;
+        double[] cx = new double[n];
+        double[] cy = new double[n];
+        double[] q = new double[n];
+        for (int i = 0; i < n; i++) {
+            cx[i] = random.nextDouble() * 1600;
+            cy[i] = random.nextDouble() * 900;
+            q[i] = random.nextDouble() * 2 - 1;
+        }
+        double[] x = new double[m];
+        double[] y = new double[m];
+        for (int j = 0; j < m; j++) {
+            x[j] = random.nextDouble() * 1600;
+            y[j] = random.nextDouble() * 900;
+        }
+        double[][] got = new double[4][m];
+        double[][] want = new double[4][m];
+        kernel.pointField(cx, cy, q, n, x, y, got[0], got[1], m);
+        kernel.wireField(cx, cy, q, n, x, y, got[0], got[1], m);
+        reference.pointField(cx, cy, q, n, x, y, want[0], want[1], m);
+        reference.wireField(cx, cy, q, n, x, y, want[0], want[1], m);
+        double[] out = new double[2];
+        for (int j = 0; j < m; j++) {
+            out[0] = 0;
+            out[1] = 0;
+            kernel.pointField(cx, cy, q, n, x[j], y[j], out);
+            kernel.wireField(cx, cy, q, n, x[j], y[j], out);
+            got[2][j] = out[0];
+            got[3][j] = out[1];
+            want[2][j] = want[0][j];
+            want[3][j] = want[1][j];
+        }
+        for (int j = 0; j < m; j++) {
+            // The sum of the magnitudes of the terms, which bounds the
+            // rounding error of any order of summing them
+            double scale = 0;
+            for (int i = 0; i < n; i++) {
+                double dx = x[j] - cx[i];
+                double dy = y[j] - cy[i];
+                double rSq = dx * dx + dy * dy;
+                scale += Math.abs(q[i]) / rSq + Math.abs(q[i])
+                        / Math.sqrt(rSq);
+            }
+            for (int k = 0; k < 4; k++) {
+                if (!(Math.abs(got[k][j] - want[k][j])
+                        <= TOLERANCE * scale)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
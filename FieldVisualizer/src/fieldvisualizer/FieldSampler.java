@@ -0,0 +1,62 @@
+package fieldvisualizer;
+
+/**
+ * A field sampler evaluates the field of a fixed set of charges at points
+ * in space. Field lines are traced against a sampler, so a field can
+ * choose how its vectors are calculated: summed exactly over every charge,
+ * approximated from a tree of charge groups, and so on. Samplers write
+ * into arrays supplied by the caller so that tracing does not allocate.
+ *
+ * @author Jeff Niu
+ */
+public interface FieldSampler {
+
+    /**
+     * Calculate the field at a point and write its components into an
+     * output array.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array receiving the x and y components
+     */
+    public void fieldAt(double x, double y, double[] out);
+
+    /**
+     * Calculate the direction of the field at a point as a unit vector,
+     * which is what field lines are stepped along. The direction is not
+     * defined where the field vanishes, in which case the components are
+     * not numbers.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array receiving the x and y unit components
+     * @return the field magnitude
+     */
+    public default double directionAt(double x, double y, double[] out) {
+        fieldAt(x, y, out);
+        double mag = Math.sqrt(out[0] * out[0] + out[1] * out[1]);
+        out[0] /= mag;
+        out[1] /= mag;
+        return mag;
+    }
+
+    /**
+     * Calculate the field at many points in one call.
+     *
+     * @param x the x coordinates
+     * @param y the y coordinates
+     * @param xField receives the x components
+     * @param yField receives the y components
+     * @param n the number of points
+     */
+    public default void fieldAt(double[] x, double[] y, double[] xField,
+            double[] yField, int n) {
+        double[] out = new double[2];
+        for (int i = 0; i < n; i++) {
+            fieldAt(x[i], y[i], out);
+            xField[i] = out[0];
+            yField[i] = out[1];
+        }
+    }
+
+}
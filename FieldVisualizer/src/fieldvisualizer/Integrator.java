@@ -0,0 +1,41 @@
+package fieldvisualizer;
+
+/**
+ * An integrator advances a field line by one step. A field line is the
+ * solution of dp/ds = u(p), where u is the unit direction of the field and
+ * s is the length along the line, so an integrator is a method for solving
+ * that equation. Integrators may use a fixed step or adapt the step to the
+ * shape of the line.
+ *
+ * @author Jeff Niu
+ */
+public interface Integrator {
+
+    /**
+     * The nominal step of the integrator, which is the first step tried on
+     * a line. Limits on the length of a line are measured in this step.
+     *
+     * @return the nominal step length
+     */
+    public double getStep();
+
+    /**
+     * Get an integrator like this one whose lengths are all multiplied by
+     * a factor, which is used to trace at another scale.
+     *
+     * @param factor the factor applied to the lengths
+     * @return the scaled integrator
+     */
+    public Integrator scaled(double factor);
+
+    /**
+     * Advance a trace point by one step. The position and direction of the
+     * point are replaced by those at the end of the step, the length of the
+     * step is stored as the step taken, and the next step to try is set.
+     *
+     * @param field the sampler of the field
+     * @param point the trace point to advance
+     */
+    public void step(FieldSampler field, TracePoint point);
+
+}
@@ -0,0 +1,221 @@
+package fieldvisualizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * A parallel tracer spreads the field lines of a field across the threads
+ * of a fork/join pool. Every line depends only on its origin and the
+ * sampler of the field, so the lines are traced independently and then
+ * placed back in the order in which the charges and their origins are
+ * listed. The result is the same list that the sequential trace returns.
+ *
+ * @author Jeff Niu
+ */
+public class ParallelTracer {
+
+    /**
+     * The largest number of lines that a single task will trace without
+     * splitting the work further.
+     */
+    private static final int THRESHOLD = 2;
+
+    /**
+     * The number of lines per thread traced at once when the lines are
+     * handed to a consumer.
+     */
+    private static final int WINDOW = 16;
+
+    /**
+     * The pool that runs the tracing tasks.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a parallel tracer with one thread per processor.
+     */
+    public ParallelTracer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a parallel tracer.
+     *
+     * @param parallelism the number of threads in the pool
+     */
+    public ParallelTracer(int parallelism) {
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return the number of threads in the pool
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Trace the field lines of every charge in a field with forward Euler
+     * steps.
+     *
+     * @param field the field to trace
+     * @param angle the projection angle
+     * @param step the resolution step
+     * @return the list of field lines
+     */
+    public List<PathIterator> trace(Field field, double angle,
+            double step) {
+        return trace(field, angle, new EulerIntegrator(step));
+    }
+
+    /**
+     * Trace the field lines of every charge in a field.
+     *
+     * @param field the field to trace
+     * @param angle the projection angle
+     * @param integrator the integrator that steps along the lines
+     * @return the list of field lines
+     */
+    public List<PathIterator> trace(Field field, double angle,
+            Integrator integrator) {
+        return trace(field, angle, integrator, Viewport.DEFAULT);
+    }
+
+    /**
+     * Trace the field lines of a field seen through a viewport.
+     *
+     * @param field the field to trace
+     * @param angle the projection angle
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @return the list of field lines
+     */
+    public List<PathIterator> trace(Field field, double angle,
+            Integrator integrator, Viewport view) {
+        List<PathIterator> result = new ArrayList<>();
+        trace(field, angle, integrator, view, result::add);
+        return result;
+    }
+
+    /**
+     * Trace the field lines of every charge in a field and hand them to a
+     * consumer, in the same order as in the list of field lines.
+     *
+     * @param field the field to trace
+     * @param angle the projection angle
+     * @param integrator the integrator that steps along the lines
+     * @param sink the consumer of the field lines
+     */
+    public void trace(Field field, double angle, Integrator integrator,
+            Consumer<? super PathIterator> sink) {
+        trace(field, angle, integrator, Viewport.DEFAULT, sink);
+    }
+
+    /**
+     * Trace the field lines of a field seen through a viewport and hand
+     * them to a consumer, in the same order as in the list of field lines.
+     * The lines are traced a window at a time, and the lines of a window
+     * are handed over on the calling thread before the next window is
+     * traced, so only a window of lines is held at once. Origins far from
+     * the viewport are skipped, and lines end at the sinks, as in the
+     * sequential trace.
+     *
+     * @param field the field to trace
+     * @param angle the projection angle
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @param sink the consumer of the field lines
+     */
+    public void trace(Field field, double angle, Integrator integrator,
+            Viewport view, Consumer<? super PathIterator> sink) {
+        List<Charge> list = field.getCharges();
+        Charge[] charges = list.toArray(new Charge[list.size()]);
+        FieldSampler sampler = field.sampler();
+        Integrator fitted = view.fit(integrator);
+        Sinks sinks = Sinks.of(Arrays.asList(charges), view, false);
+        List<Charge> sources = new ArrayList<>();
+        List<Vector> origins = new ArrayList<>();
+        for (Charge charge : charges) {
+            for (Vector origin : charge.getOrigins(angle)) {
+                if (view.isNear(origin.x, origin.y)) {
+                    sources.add(charge);
+                    origins.add(origin);
+                }
+            }
+        }
+        PathIterator[] trace = new PathIterator[origins.size()];
+        int window = WINDOW * getParallelism();
+        for (int from = 0; from < trace.length; from += window) {
+            int to = Math.min(from + window, trace.length);
+            pool.invoke(new TraceTask(sources, origins, fitted, sampler,
+                    view, sinks, trace, from, to));
+            for (int i = from; i < to; i++) {
+                if (trace[i] != null) {
+                    sink.accept(trace[i]);
+                    trace[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the threads of the pool once the running traces are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * A task that traces a range of the lines, splitting the range in half
+     * until it is small enough to trace directly.
+     */
+    @SuppressWarnings("serial")
+    private static class TraceTask extends RecursiveAction {
+
+        private final List<Charge> sources;
+        private final List<Vector> origins;
+        private final Integrator integrator;
+        private final FieldSampler sampler;
+        private final Viewport view;
+        private final Sinks sinks;
+        private final PathIterator[] trace;
+        private final int from;
+        private final int to;
+
+        TraceTask(List<Charge> sources, List<Vector> origins,
+                Integrator integrator, FieldSampler sampler, Viewport view,
+                Sinks sinks, PathIterator[] trace, int from, int to) {
+            this.sources = sources;
+            this.origins = origins;
+            this.integrator = integrator;
+            this.sampler = sampler;
+            this.view = view;
+            this.sinks = sinks;
+            this.trace = trace;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    trace[i] = sources.get(i).trace(origins.get(i),
+                            integrator, sampler, view, sinks);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TraceTask(sources, origins, integrator, sampler,
+                        view, sinks, trace, from, mid),
+                        new TraceTask(sources, origins, integrator, sampler,
+                                view, sinks, trace, mid, to));
+            }
+        }
+
+    }
+
+}
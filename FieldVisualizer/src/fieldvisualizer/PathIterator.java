@@ -1,23 +1,138 @@
 package fieldvisualizer;
 
-import static java.lang.Math.PI;
-import static java.lang.Math.cos;
-import static java.lang.Math.sin;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
 /**
- * A path iterator describes the traced line of the field lines.
+ * A path iterator describes the traced line of the field lines. The points
+ * of the line are packed into a single array of alternating x and y
+ * coordinates, and the arrows along the line are kept as the indices of
+ * the points they are drawn at, so a line is stored in two arrays rather
+ * than in an object per point or per segment.
+ * <p>
+ * The segments of the line, followed by the two strokes of each arrowhead,
+ * are visited with a cursor: {@link #next()} moves to the next segment,
+ * whose ends are then read with {@link #getX1()}, {@link #getY1()},
+ * {@link #getX2()} and {@link #getY2()}. The points may also be read
+ * directly to draw the line as a polyline.
+ * <p>
+ * A traced line also records why it ended, which tells whether it ran into
+ * a sink, left the screen or was cut off, and how many times the field was
+ * evaluated to trace it, for diagnostics.
  *
  * @author Jeff Niu
  */
 public class PathIterator {
 
     /**
-     * The set of lines that describe the entire equipotential line.
+     * The reasons a traced line ends.
      */
-    private final Iterator<Line> path;
+    public enum Termination {
+
+        /**
+         * The line came within the capture radius of a sink.
+         */
+        CAPTURED,
+        /**
+         * The line left the viewport and would not be seen again.
+         */
+        ESCAPED,
+        /**
+         * The line turned back, having crossed a charge between steps.
+         */
+        REVERSED,
+        /**
+         * The line turned all the way round and closed a loop.
+         */
+        CLOSED,
+        /**
+         * The line came near another line.
+         */
+        BLOCKED,
+        /**
+         * The field vanished, so the line had no direction to go in.
+         */
+        UNDEFINED,
+        /**
+         * The line took the most steps, or reached the greatest length.
+         */
+        LIMIT,
+        /**
+         * The line was made from points, without a reason.
+         */
+        UNKNOWN
+
+    }
+
+    /**
+     * The distance along a line between arrows.
+     */
+    private static final double ARROW_SPACING = 150;
+    /**
+     * The length of the strokes of an arrowhead.
+     */
+    private static final double ARROW_LENGTH = 10;
+    /**
+     * The cosine and sine of the angle between a stroke of an arrowhead
+     * and the line.
+     */
+    private static final double ARROW_COS = Math.cos(Math.PI / 6);
+    private static final double ARROW_SIN = Math.sin(Math.PI / 6);
+
+    /**
+     * The packed coordinates of the points of the line.
+     */
+    private final float[] points;
+    /**
+     * The number of points in the line.
+     */
+    private final int size;
+    /**
+     * The indices of the points that arrows are drawn at.
+     */
+    private final int[] arrows;
+    /**
+     * Why the line ended.
+     */
+    private final Termination termination;
+    /**
+     * The number of times the field was evaluated to trace the line.
+     */
+    private final int evaluations;
+
+    /**
+     * The index of the current segment, where the segments of the line
+     * come first and the strokes of the arrowheads follow.
+     */
+    private int cursor = -1;
+    /**
+     * The ends of the current segment.
+     */
+    private double x1, y1, x2, y2;
+    /**
+     * The ends of the strokes of the current arrowhead.
+     */
+    private final double[] head = new double[4];
+
+    /**
+     * Pack a set of points into an array of alternating x and y
+     * coordinates.
+     *
+     * @param points the iterator over the points
+     * @return the packed coordinates
+     */
+    private static double[] pack(Iterator<Vector> points) {
+        List<Vector> list = new ArrayList<>();
+        points.forEachRemaining(list::add);
+        double[] packed = new double[list.size() * 2];
+        for (int i = 0; i < list.size(); i++) {
+            packed[2 * i] = list.get(i).x;
+            packed[2 * i + 1] = list.get(i).y;
+        }
+        return packed;
+    }
 
     /**
      * Create a new path iterator from a set of points that were traced
@@ -26,46 +141,214 @@ public class PathIterator {
      * @param points the iterator over the points
      */
     public PathIterator(Iterator<Vector> points) {
-        double step = 10;
-        List<Line> paths = new ArrayList<>();
-        int i = 0;
-        Vector p = points.next();
-        // Convert the points into lines so that they can 
-        // be easily accessed later
-        while (points.hasNext()) {
-            Vector q = points.next();
-            paths.add(new Line(p, q));
-            i++;
-            if (i % 50 == 0) {
-                double dx = p.x - q.x;
-                double dy = p.y - q.y;
-                double arg = Vector.arg(dx, dy);
-                double a1 = arg - PI / 6;
-                double a2 = arg + PI / 6;
-                double tx1 = q.x + step * cos(a1);
-                double ty1 = q.y + step * sin(a1);
-                double tx2 = q.x + step * cos(a2);
-                double ty2 = q.y + step * sin(a2);
-                paths.add(new Line(q, new Vector(tx1, ty1)));
-                paths.add(new Line(q, new Vector(tx2, ty2)));
+        this(pack(points));
+    }
+
+    /**
+     * Create a new path iterator from packed coordinates.
+     *
+     * @param points the packed coordinates
+     */
+    private PathIterator(double[] points) {
+        this(points, points.length);
+    }
+
+    /**
+     * Create a new path iterator from the points that were traced along
+     * the field, packed as alternating x and y coordinates.
+     *
+     * @param points the packed coordinates
+     * @param length the number of coordinates used in the array
+     */
+    public PathIterator(double[] points, int length) {
+        this(points, length, Termination.UNKNOWN, 0);
+    }
+
+    /**
+     * Create a new path iterator from the points that were traced along
+     * the field, the reason that tracing stopped and the work it took.
+     *
+     * @param points the packed coordinates
+     * @param length the number of coordinates used in the array
+     * @param termination why the line ended
+     * @param evaluations the number of times the field was evaluated
+     */
+    public PathIterator(double[] points, int length,
+            Termination termination, int evaluations) {
+        this.termination = termination;
+        this.evaluations = evaluations;
+        size = length / 2;
+        this.points = new float[size * 2];
+        int[] anchors = new int[8];
+        int count = 0;
+        double travelled = 0;
+        for (int k = 0; k < size * 2; k += 2) {
+            this.points[k] = (float) points[k];
+            this.points[k + 1] = (float) points[k + 1];
+            if (k == 0) {
+                continue;
+            }
+            double dx = points[k - 2] - points[k];
+            double dy = points[k - 1] - points[k + 1];
+            // Arrows are spaced by distance along the line, since the
+            // points of a line are not always evenly spaced
+            travelled += Math.sqrt(dx * dx + dy * dy);
+            if (travelled >= ARROW_SPACING) {
+                travelled = 0;
+                if (count == anchors.length) {
+                    anchors = Arrays.copyOf(anchors, count * 2);
+                }
+                anchors[count++] = k / 2;
             }
-            p = q;
         }
-        path = paths.iterator();
+        arrows = Arrays.copyOf(anchors, count);
+    }
+
+    /**
+     * @return the number of points in the line
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the index of a point
+     * @return the x coordinate of the point
+     */
+    public float getX(int i) {
+        return points[2 * i];
+    }
+
+    /**
+     * @param i the index of a point
+     * @return the y coordinate of the point
+     */
+    public float getY(int i) {
+        return points[2 * i + 1];
+    }
+
+    /**
+     * @return why the line ended, or for a line grown both ways from a
+     * seed, why its forward end ended
+     */
+    public Termination getTermination() {
+        return termination;
+    }
+
+    /**
+     * @return the number of times the field was evaluated to trace the
+     * line, or zero if it was made from points
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return the number of arrows along the line
+     */
+    public int getArrowCount() {
+        return arrows.length;
+    }
+
+    /**
+     * @param i the index of an arrow
+     * @return the index of the point that the arrow is drawn at
+     */
+    public int getArrow(int i) {
+        return arrows[i];
+    }
+
+    /**
+     * Find the ends of the two strokes of an arrowhead. The strokes start
+     * at the point of the arrow and point back along the line, each turned
+     * by a sixth of pi to a side. The ends are written to the array as the
+     * x and y coordinates of the first stroke, then of the second.
+     *
+     * @param i the index of an arrow
+     * @param out the array receiving the four coordinates
+     */
+    public void getArrowHead(int i, double[] out) {
+        int k = 2 * arrows[i];
+        double qx = points[k];
+        double qy = points[k + 1];
+        double dx = points[k - 2] - qx;
+        double dy = points[k - 1] - qy;
+        double scale = ARROW_LENGTH / Math.sqrt(dx * dx + dy * dy);
+        dx *= scale;
+        dy *= scale;
+        out[0] = qx + dx * ARROW_COS + dy * ARROW_SIN;
+        out[1] = qy - dx * ARROW_SIN + dy * ARROW_COS;
+        out[2] = qx + dx * ARROW_COS - dy * ARROW_SIN;
+        out[3] = qy + dx * ARROW_SIN + dy * ARROW_COS;
+    }
+
+    /**
+     * Move the cursor back to before the first segment, so that the line
+     * can be visited again.
+     */
+    public void reset() {
+        cursor = -1;
     }
 
     /**
      * @return whether the line continues
      */
     public boolean hasNext() {
-        return path.hasNext();
+        int segments = size > 1 ? size - 1 : 0;
+        return cursor + 1 < segments + 2 * arrows.length;
+    }
+
+    /**
+     * Move the cursor to the next segment in the line.
+     */
+    public void next() {
+        cursor++;
+        int segments = size > 1 ? size - 1 : 0;
+        if (cursor < segments) {
+            int k = 2 * cursor;
+            x1 = points[k];
+            y1 = points[k + 1];
+            x2 = points[k + 2];
+            y2 = points[k + 3];
+            return;
+        }
+        int stroke = cursor - segments;
+        int k = 2 * arrows[stroke / 2];
+        if ((stroke & 1) == 0) {
+            getArrowHead(stroke / 2, head);
+        }
+        x1 = points[k];
+        y1 = points[k + 1];
+        x2 = head[(stroke & 1) * 2];
+        y2 = head[(stroke & 1) * 2 + 1];
+    }
+
+    /**
+     * @return the x coordinate of the start of the current segment
+     */
+    public double getX1() {
+        return x1;
+    }
+
+    /**
+     * @return the y coordinate of the start of the current segment
+     */
+    public double getY1() {
+        return y1;
+    }
+
+    /**
+     * @return the x coordinate of the end of the current segment
+     */
+    public double getX2() {
+        return x2;
     }
 
     /**
-     * @return the next segment in the line
+     * @return the y coordinate of the end of the current segment
      */
-    public Line next() {
-        return path.next();
+    public double getY2() {
+        return y2;
     }
 
 }
@@ -0,0 +1,204 @@
+package fieldvisualizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * A path writer writes field lines to a text file as they are handed to
+ * it, so it can be given to {@link Field#trace(double, Integrator,
+ * Consumer)} to export a trace of any size. The text is put straight into
+ * a buffer as ASCII, with numbers written to two decimal places without
+ * making strings, and the buffer is written through a file channel when it
+ * fills. The writer must be closed to finish the file.
+ *
+ * @author Jeff Niu
+ */
+public abstract class PathWriter implements Consumer<PathIterator>,
+        Closeable {
+
+    /**
+     * The size of the buffer.
+     */
+    private static final int BUFFER = 1 << 16;
+    /**
+     * The longest text a number can take.
+     */
+    private static final int NUMBER = 24;
+
+    /**
+     * The file being written.
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer of text not written yet.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of lines written so far.
+     */
+    private int lines;
+
+    /**
+     * Create a file to write field lines to. An existing file is replaced.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be created
+     */
+    protected PathWriter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer = ByteBuffer.allocateDirect(BUFFER);
+    }
+
+    /**
+     * Write a field line.
+     *
+     * @param path the field line
+     * @throws UncheckedIOException if the file cannot be written, since a
+     * consumer cannot throw an IOException
+     */
+    @Override
+    public void accept(PathIterator path) {
+        try {
+            writePath(path, lines++);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * @return the number of lines written so far
+     */
+    public int getLines() {
+        return lines;
+    }
+
+    /**
+     * Write the end of the file and close it.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeEnd();
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write a field line in the format of the file.
+     *
+     * @param path the field line
+     * @param index the number of lines written before this one
+     * @throws IOException if the file cannot be written
+     */
+    protected abstract void writePath(PathIterator path, int index)
+            throws IOException;
+
+    /**
+     * Write the end of the file, after the last line.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    protected abstract void writeEnd() throws IOException;
+
+    /**
+     * Write ASCII text.
+     *
+     * @param text the text
+     * @throws IOException if the file cannot be written
+     */
+    protected void write(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            write(text.charAt(i));
+        }
+    }
+
+    /**
+     * Write an ASCII character.
+     *
+     * @param c the character
+     * @throws IOException if the file cannot be written
+     */
+    protected void write(char c) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put((byte) c);
+    }
+
+    /**
+     * Write an integer.
+     *
+     * @param n the integer
+     * @throws IOException if the file cannot be written
+     */
+    protected void write(long n) throws IOException {
+        if (buffer.remaining() < NUMBER) {
+            drain();
+        }
+        if (n < 0) {
+            buffer.put((byte) '-');
+            n = -n;
+        }
+        digits(n);
+    }
+
+    /**
+     * Write a number rounded to two decimal places.
+     *
+     * @param x the number
+     * @throws IOException if the file cannot be written
+     */
+    protected void write(double x) throws IOException {
+        if (buffer.remaining() < NUMBER) {
+            drain();
+        }
+        long hundredths = Math.round(x * 100);
+        if (hundredths < 0) {
+            buffer.put((byte) '-');
+            hundredths = -hundredths;
+        }
+        digits(hundredths / 100);
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + hundredths / 10 % 10));
+        buffer.put((byte) ('0' + hundredths % 10));
+    }
+
+    /**
+     * Put the digits of a number that is not negative.
+     *
+     * @param n the number
+     */
+    private void digits(long n) {
+        if (n >= 10) {
+            digits(n / 10);
+        }
+        buffer.put((byte) ('0' + n % 10));
+    }
+
+    /**
+     * Write out the buffered text.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -1,12 +1,15 @@
 package fieldvisualizer;
 
 import static fieldvisualizer.Field.nonReversed;
+import fieldvisualizer.PathIterator.Termination;
 import static java.lang.Math.PI;
 import static java.lang.Math.abs;
 import static java.lang.Math.cos;
 import static java.lang.Math.signum;
 import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -44,6 +47,15 @@ public class PointCharge implements Charge {
         this.q = q;
     }
 
+    /**
+     * @return a new point charge at the position and with the strength of
+     * this one
+     */
+    @Override
+    public PointCharge copy() {
+        return new PointCharge(x, y, q);
+    }
+
     /**
      * The origins is the list of initial points from which field lines
      * will be traced. A decision was made to have a negative charge have
@@ -54,6 +66,7 @@ public class PointCharge implements Charge {
      * @param angle the projection angle
      * @return a set of initial points
      */
+    @Override
     public List<Vector> getOrigins(double angle) {
         if (signum(q) < 0) {
             return new ArrayList<>();
@@ -69,10 +82,27 @@ public class PointCharge implements Charge {
         return origins;
     }
 
+    /**
+     * The potential around a point charge is the charge divided by the
+     * distance from it, in the same units as Coulomb's law in
+     * {@link #fieldAt(double, double)}.
+     *
+     * @param x the x point coordinate
+     * @param y the y point coordinate
+     * @return the potential at that point
+     */
+    @Override
+    public double potentialAt(double x, double y) {
+        double dx = x - this.x;
+        double dy = y - this.y;
+        return q / sqrt(dx * dx + dy * dy);
+    }
+
     /**
      * The field strength at a particular point around the point charge can
      * be calculated using Coulomb's law and the direction is directly away
-     * or towards the charge, depending on its sign.
+     * or towards the charge, depending on its sign. The radial direction
+     * is the displacement divided by the distance, so no angle is needed.
      *
      * @param x the x point coordinate
      * @param y the y point coordinate
@@ -85,56 +115,79 @@ public class PointCharge implements Charge {
         double xSq = dx * dx;
         double ySq = dy * dy;
         double rSq = xSq + ySq;
-        double arg = Vector.arg(dx, dy);
-        double mag = q / rSq; //k * q / r / r;
-        return new Vector(mag * cos(arg), mag * sin(arg));
+        double mag = q / (rSq * sqrt(rSq)); //k * q / r / r / r;
+        return new Vector(mag * dx, mag * dy);
     }
 
     /**
-     * Trace the field lines around this charge. The field lines are
-     * traced, for a positive charge, from angles originating just around
-     * the charge center.
+     * Trace a field line from one of the origins around this charge. The
+     * line is stepped along the field direction until it runs into a sink,
+     * where it is ended on the sink itself, until it reverses, which
+     * happens when it crosses a charge between steps, or until it escapes
+     * the viewport, by heading away from it in a straight line or by
+     * wandering far from it.
      *
-     * @param angle the projection angle
-     * @param step the resolution
-     * @param charges the list of charges
-     * @return a set of paths
+     * @param origin the initial point
+     * @param integrator the integrator that steps along the line
+     * @param field the sampler of the field
+     * @param view the viewport that the line is traced for
+     * @param sinks the sinks that capture the line
+     * @return the path of the line
      */
     @Override
-    public List<PathIterator> trace(double angle, double step,
-            Charge[] charges) {
-        List<PathIterator> trace = new ArrayList<>();
-        List<Vector> origins = getOrigins(angle);
-        for (Vector origin : origins) {
-            List<Vector> points = new ArrayList<>();
-            double px = origin.x;
-            double py = origin.y;
-            double theta1;
-            double theta2
-                    = Field.fieldAt(origin.x, origin.y, charges).arg();
-            int i = 0;
-            do {
-                theta1 = theta2;
-                points.add(new Vector(px, py));
-                px += step * cos(theta1);
-                py += step * sin(theta1);
-                theta2 = Field.fieldAt(px, py, charges).arg();
-                double change = Vector.angleDiff(theta1, theta2);
-                // This ensures that lines that go really far
-                // off the screen are not rendered
-                if (px > 1600 || px < 0 || py > 900 || py < -200) {
-                    if (abs(change) < 0.002) {
-                        break;
-                    }
-                }
-                i++;
-                // We cap the number of steps that can be taken
-                // and we check to see if the path has
-                // reversed direction
-            } while (nonReversed(theta2, theta1) && i < 1500);
-            trace.add(new PathIterator(points.iterator()));
-        }
-        return trace;
+    public PathIterator trace(Vector origin, Integrator integrator,
+            FieldSampler field, Viewport view, Sinks sinks) {
+        double step = integrator.getStep();
+        TracePoint point = new TracePoint(origin.x, origin.y, step, field);
+        double[] points = new double[256];
+        int n = 0;
+        double length = 0;
+        double ux;
+        double uy;
+        Termination end = Termination.LIMIT;
+        int i = 0;
+        do {
+            ux = point.ux;
+            uy = point.uy;
+            if (n + 4 > points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[n++] = point.x;
+            points[n++] = point.y;
+            integrator.step(field, point);
+            length += point.taken;
+            int sink = sinks.captures(point.x, point.y);
+            if (sink >= 0) {
+                points[n++] = sinks.getX(sink);
+                points[n++] = sinks.getY(sink);
+                end = Termination.CAPTURED;
+                break;
+            }
+            if (!(point.ux == point.ux && point.uy == point.uy)) {
+                end = Termination.UNDEFINED;
+                break;
+            }
+            // The sine of the turn between the two directions, which
+            // is scaled to the nominal step for longer steps
+            double change = (ux * point.uy - uy * point.ux)
+                    * step / point.taken;
+            // This ensures that lines that go really far
+            // off the screen are not rendered
+            if (view.hasEscaped(point.x, point.y, point.ux, point.uy,
+                    change)) {
+                end = Termination.ESCAPED;
+                break;
+            }
+            // A line that reverses direction has crossed a charge
+            if (!nonReversed(ux, uy, point.ux, point.uy)) {
+                end = Termination.REVERSED;
+                break;
+            }
+            i++;
+            // We cap the number of steps that can be taken and the
+            // length of the line
+        } while (i < 1500 && length < 1500 * step);
+        return new PathIterator(points, n, end, point.evaluations);
     }
-    
+
 }
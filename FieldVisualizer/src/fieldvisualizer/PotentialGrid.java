@@ -0,0 +1,281 @@
+package fieldvisualizer;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A potential grid samples the potential of a set of charges on a lattice
+ * over a viewport, from which curves of equal potential are found with
+ * marching squares. The lattice is split into square tiles that are
+ * sampled in parallel, each tile summing the charges once as a batch over
+ * the lattice points it owns. A tile owns the points on its top and left
+ * edges, and the points on its bottom and right edges belong to the tiles
+ * next to it, so every point is sampled once. The contours are then found
+ * tile by tile in parallel, reading the shared edges from the finished
+ * lattice.
+ *
+ * @author Jeff Niu
+ */
+public class PotentialGrid {
+
+    /**
+     * The number of cells along each side of a tile.
+     */
+    public static final int TILE = 32;
+
+    /**
+     * The edges of a cell crossed by the contour in each case of marching
+     * squares, in pairs. The case has a bit for each corner above the
+     * level, from the top left corner going clockwise, and the edges are
+     * numbered top, right, bottom and left. The saddles, cases 5 and 10,
+     * are split around the corners above the level, as if the middle of
+     * the cell were below it.
+     */
+    private static final int[][] EDGES = {
+        {}, {3, 0}, {0, 1}, {3, 1}, {1, 2}, {3, 0, 1, 2}, {0, 2}, {3, 2},
+        {3, 2}, {0, 2}, {0, 1, 3, 2}, {1, 2}, {3, 1}, {0, 1}, {3, 0}, {}
+    };
+
+    /**
+     * The world position of the first lattice point.
+     */
+    private final double x0;
+    private final double y0;
+    /**
+     * The world distance between lattice points.
+     */
+    private final double step;
+    /**
+     * The number of cells across and down.
+     */
+    private final int cols;
+    private final int rows;
+    /**
+     * The number of tiles across and down.
+     */
+    private final int tilesAcross;
+    private final int tilesDown;
+    /**
+     * The sampled potentials, with cols + 1 points in each row.
+     */
+    private final double[] potential;
+
+    /**
+     * Sample the potential of a set of charges over a viewport.
+     *
+     * @param charges the snapshot of the charges
+     * @param view the viewport
+     * @param cell the number of pixels between lattice points
+     */
+    public PotentialGrid(ChargeStore charges, Viewport view, double cell) {
+        x0 = view.getX();
+        y0 = view.getY();
+        step = cell * view.getPixelSize();
+        cols = Math.max(1, (int) Math.ceil(view.getWidth() / cell));
+        rows = Math.max(1, (int) Math.ceil(view.getHeight() / cell));
+        tilesAcross = (cols + TILE - 1) / TILE;
+        tilesDown = (rows + TILE - 1) / TILE;
+        potential = new double[(cols + 1) * (rows + 1)];
+        IntStream.range(0, tilesAcross * tilesDown).parallel()
+                .forEach((tile) -> sample(charges, tile));
+    }
+
+    /**
+     * @return the number of cells across
+     */
+    public int getColumns() {
+        return cols;
+    }
+
+    /**
+     * @return the number of cells down
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get a sampled potential.
+     *
+     * @param i the lattice column, from 0 to the number of cells across
+     * @param j the lattice row, from 0 to the number of cells down
+     * @return the potential at the lattice point
+     */
+    public double getPotential(int i, int j) {
+        return potential[j * (cols + 1) + i];
+    }
+
+    /**
+     * Sample the lattice points owned by a tile in one batch.
+     *
+     * @param charges the charges
+     * @param tile the index of the tile, row by row
+     */
+    private void sample(ChargeStore charges, int tile) {
+        int i0 = tile % tilesAcross * TILE;
+        int j0 = tile / tilesAcross * TILE;
+        // The last tile of a row or column also owns the far edge
+        int i1 = i0 + TILE < cols ? i0 + TILE : cols + 1;
+        int j1 = j0 + TILE < rows ? j0 + TILE : rows + 1;
+        int n = (i1 - i0) * (j1 - j0);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        double[] out = new double[n];
+        int k = 0;
+        for (int j = j0; j < j1; j++) {
+            for (int i = i0; i < i1; i++) {
+                xs[k] = x0 + i * step;
+                ys[k] = y0 + j * step;
+                k++;
+            }
+        }
+        charges.potentialAt(xs, ys, out, n);
+        k = 0;
+        for (int j = j0; j < j1; j++) {
+            System.arraycopy(out, k, potential, j * (cols + 1) + i0,
+                    i1 - i0);
+            k += i1 - i0;
+        }
+    }
+
+    /**
+     * Find the curves of equal potential at every multiple of a spacing up
+     * to a number of levels either side of zero. Levels past the last one
+     * crowd around the charges, where the potential has no bound, so they
+     * are left out. Each curve is found as separate segments, one for each
+     * cell it crosses, in world coordinates.
+     *
+     * @param spacing the difference in potential between adjacent levels
+     * @param levels the number of levels on each side of zero
+     * @return the ends of the segments, four numbers per segment
+     */
+    public float[] contours(double spacing, int levels) {
+        float[][] tiles = IntStream.range(0, tilesAcross * tilesDown)
+                .parallel()
+                .mapToObj((tile) -> contours(tile, spacing, levels))
+                .toArray(float[][]::new);
+        int length = 0;
+        for (float[] tile : tiles) {
+            length += tile.length;
+        }
+        float[] segments = new float[length];
+        int k = 0;
+        for (float[] tile : tiles) {
+            System.arraycopy(tile, 0, segments, k, tile.length);
+            k += tile.length;
+        }
+        return segments;
+    }
+
+    /**
+     * Find the segments of the curves of equal potential in one tile.
+     *
+     * @param tile the index of the tile, row by row
+     * @param spacing the difference in potential between adjacent levels
+     * @param levels the number of levels on each side of zero
+     * @return the ends of the segments, four numbers per segment
+     */
+    private float[] contours(int tile, double spacing, int levels) {
+        int i0 = tile % tilesAcross * TILE;
+        int j0 = tile / tilesAcross * TILE;
+        int i1 = Math.min(i0 + TILE, cols);
+        int j1 = Math.min(j0 + TILE, rows);
+        int stride = cols + 1;
+        double[] v = new double[4];
+        double[] ex = new double[4];
+        double[] ey = new double[4];
+        float[] out = new float[256];
+        int n = 0;
+        for (int j = j0; j < j1; j++) {
+            for (int i = i0; i < i1; i++) {
+                int k = j * stride + i;
+                v[0] = potential[k];
+                v[1] = potential[k + 1];
+                v[2] = potential[k + stride + 1];
+                v[3] = potential[k + stride];
+                double lo = Math.min(Math.min(v[0], v[1]),
+                        Math.min(v[2], v[3]));
+                double hi = Math.max(Math.max(v[0], v[1]),
+                        Math.max(v[2], v[3]));
+                // A cell touching a charge has no finite potential
+                if (!(hi - lo < Double.POSITIVE_INFINITY)) {
+                    continue;
+                }
+                long first = Math.max(-levels, (long) Math.ceil(lo / spacing));
+                long last = Math.min(levels, (long) Math.floor(hi / spacing));
+                for (long level = first; level <= last; level++) {
+                    double value = level * spacing;
+                    int index = 0;
+                    for (int c = 0; c < 4; c++) {
+                        if (v[c] > value) {
+                            index |= 1 << c;
+                        }
+                    }
+                    // A saddle whose middle is above the level joins the
+                    // corners above it, which is how the other saddle is
+                    // split
+                    if ((index == 5 || index == 10)
+                            && (v[0] + v[1] + v[2] + v[3]) / 4 > value) {
+                        index = 15 - index;
+                    }
+                    int[] edges = EDGES[index];
+                    if (edges.length == 0) {
+                        continue;
+                    }
+                    cross(i, j, v, value, ex, ey);
+                    if (n + edges.length * 2 > out.length) {
+                        out = Arrays.copyOf(out, out.length * 2);
+                    }
+                    for (int e = 0; e < edges.length; e += 2) {
+                        int a = edges[e];
+                        int b = edges[e + 1];
+                        out[n++] = (float) ex[a];
+                        out[n++] = (float) ey[a];
+                        out[n++] = (float) ex[b];
+                        out[n++] = (float) ey[b];
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Find where a level crosses each edge of a cell, by linear
+     * interpolation between the corners. Edges that the level does not
+     * cross get a point too, which is not used.
+     *
+     * @param i the cell column
+     * @param j the cell row
+     * @param v the corner potentials, clockwise from the top left
+     * @param value the level
+     * @param ex receives the x coordinates, top, right, bottom and left
+     * @param ey receives the y coordinates
+     */
+    private void cross(int i, int j, double[] v, double value, double[] ex,
+            double[] ey) {
+        double left = x0 + i * step;
+        double top = y0 + j * step;
+        ex[0] = left + step * fraction(v[0], v[1], value);
+        ey[0] = top;
+        ex[1] = left + step;
+        ey[1] = top + step * fraction(v[1], v[2], value);
+        ex[2] = left + step * fraction(v[3], v[2], value);
+        ey[2] = top + step;
+        ex[3] = left;
+        ey[3] = top + step * fraction(v[0], v[3], value);
+    }
+
+    /**
+     * Find how far along an edge a level is crossed.
+     *
+     * @param a the potential at the start of the edge
+     * @param b the potential at the end of the edge
+     * @param value the level
+     * @return the fraction of the edge before the crossing
+     */
+    private static double fraction(double a, double b, double value) {
+        return a == b ? 0.5 : (value - a) / (b - a);
+    }
+
+}
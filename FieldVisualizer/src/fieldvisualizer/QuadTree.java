@@ -0,0 +1,500 @@
+package fieldvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * A quadtree groups the sources of a field by region so that the field of
+ * a distant group can be approximated by a multipole summary instead of
+ * being summed charge by charge. Each cell keeps the monopole (the total
+ * strength) and the dipole (the strength weighted by the offset from the
+ * center of the cell's sources) of its point charges and of its wires. A
+ * cell is summarized when its size divided by its distance from the
+ * sample point is below the opening angle; otherwise, its children are
+ * visited, and the sources in a leaf are summed exactly. This is the
+ * Barnes-Hut method, which makes each sample cost about log N instead of
+ * N.
+ *
+ * Point charges use the Coulomb kernel q d / r^3, and wires use the
+ * kernel q d / r^2 rotated by a quarter turn. The dipole term of each
+ * kernel is its gradient along the dipole moment:
+ *
+ * <pre>
+ * Coulomb: Q d / r^3 - p / r^3 + 3 d (p . d) / r^5
+ * Wire:    rotate(Q d / r^2 - p / r^2 + 2 d (p . d) / r^4)
+ * </pre>
+ *
+ * Sources are inserted one at a time, and the root grows to cover sources
+ * that fall outside of it, so adding to the tree never rebuilds it. A
+ * source must be within {@link #LIMIT} of the origin, so that the root
+ * never overflows.
+ *
+ * The field may also be softened, as when charges in the tree push each
+ * other about: the distances to the sources summed exactly are lengthened
+ * by the softening length in quadrature, so the field stays finite near a
+ * source and a charge feels nothing from itself.
+ *
+ * @author Jeff Niu
+ */
+public class QuadTree implements FieldSampler {
+
+    /**
+     * The largest distance of a source from the origin along either axis.
+     * The root grows by doubling until it covers every source, so keeping
+     * the sources within this bound keeps the root from overflowing.
+     */
+    public static final double LIMIT = 0x1p1020;
+    /**
+     * The largest number of sources kept in a leaf before it is split.
+     */
+    private static final int BUCKET = 8;
+    /**
+     * The deepest a cell may be, which stops sources at the same position
+     * from splitting a cell forever.
+     */
+    private static final int MAX_DEPTH = 40;
+    /**
+     * The side length of the first root cell.
+     */
+    private static final double ROOT_SIZE = 2048;
+
+    /**
+     * The source x positions.
+     */
+    private double[] sourceX;
+    /**
+     * The source y positions.
+     */
+    private double[] sourceY;
+    /**
+     * The source strengths.
+     */
+    private double[] sourceQ;
+    /**
+     * Whether each source is a wire instead of a point charge.
+     */
+    private boolean[] sourceWire;
+    /**
+     * The number of sources.
+     */
+    private int sources;
+
+    /**
+     * Charges of a type that cannot be placed in the tree, which are
+     * summed directly.
+     */
+    private Charge[] others;
+    /**
+     * The number of other charges.
+     */
+    private int otherCount;
+
+    /**
+     * The root cell, or null if the tree is empty.
+     */
+    private Cell root;
+
+    /**
+     * The opening angle.
+     */
+    private double theta;
+
+    /**
+     * Create an empty tree.
+     *
+     * @param theta the opening angle
+     */
+    public QuadTree(double theta) {
+        this.theta = theta;
+        sourceX = new double[BUCKET];
+        sourceY = new double[BUCKET];
+        sourceQ = new double[BUCKET];
+        sourceWire = new boolean[BUCKET];
+        others = new Charge[0];
+    }
+
+    /**
+     * @return the opening angle
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Set the opening angle. A smaller angle opens more cells and is more
+     * accurate; an angle of zero sums every source exactly.
+     *
+     * @param theta the opening angle
+     */
+    public void setTheta(double theta) {
+        this.theta = theta;
+    }
+
+    /**
+     * @return the number of point charges and wires in the tree
+     */
+    public int size() {
+        return sources;
+    }
+
+    /**
+     * Add a charge to the tree. Its position and strength are copied, and
+     * bar magnets are added as their two poles.
+     *
+     * @param charge the charge to add
+     * @throws IllegalArgumentException if the charge is not within
+     * {@link #LIMIT} of the origin
+     */
+    public void add(Charge charge) {
+        if (charge instanceof PointCharge) {
+            PointCharge point = (PointCharge) charge;
+            insert(point.x, point.y, point.q, false);
+        } else if (charge instanceof Wire) {
+            Wire wire = (Wire) charge;
+            insert(wire.x, wire.y, wire.q, true);
+        } else if (charge instanceof BarMagnet) {
+            BarMagnet magnet = (BarMagnet) charge;
+            check(magnet);
+            add(magnet.north);
+            add(magnet.south);
+        } else if (charge != null) {
+            if (otherCount == others.length) {
+                others = Arrays.copyOf(others, otherCount * 2 + 1);
+            }
+            others[otherCount++] = charge;
+        }
+    }
+
+    /**
+     * Remove every source from the tree.
+     */
+    public void clear() {
+        sources = 0;
+        root = null;
+        Arrays.fill(others, 0, otherCount, null);
+        otherCount = 0;
+    }
+
+    /**
+     * Check that a charge can be added to a tree, which is whether every
+     * source it is added as lies within {@link #LIMIT} of the origin.
+     * Charges that are summed directly are not placed and always pass.
+     *
+     * @param charge the charge
+     * @throws IllegalArgumentException if the charge cannot be added
+     */
+    static void check(Charge charge) {
+        if (charge instanceof PointCharge) {
+            PointCharge point = (PointCharge) charge;
+            check(point.x, point.y);
+        } else if (charge instanceof Wire) {
+            Wire wire = (Wire) charge;
+            check(wire.x, wire.y);
+        } else if (charge instanceof BarMagnet) {
+            BarMagnet magnet = (BarMagnet) charge;
+            check(magnet.north);
+            check(magnet.south);
+        }
+    }
+
+    /**
+     * Check that a source position is within {@link #LIMIT} of the
+     * origin. The comparisons are false for a position that is not a
+     * number, so it fails too.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @throws IllegalArgumentException if the position is out of range
+     */
+    private static void check(double x, double y) {
+        if (!(Math.abs(x) <= LIMIT && Math.abs(y) <= LIMIT)) {
+            throw new IllegalArgumentException(
+                    "Source position out of range: " + x + ", " + y);
+        }
+    }
+
+    /**
+     * Insert a source into the tree. The source is checked before anything
+     * is stored, since the root could never grow to cover a position that
+     * is not finite, and would overflow growing to cover one too far out.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param q the strength
+     * @param wire whether the source is a wire
+     * @throws IllegalArgumentException if the position is out of range
+     */
+    private void insert(double x, double y, double q, boolean wire) {
+        check(x, y);
+        if (root == null) {
+            root = new Cell(x - ROOT_SIZE / 2, y - ROOT_SIZE / 2, ROOT_SIZE);
+        }
+        // Grow the root towards the source until it is covered, keeping
+        // the old root as one quadrant of the new one
+        while (!root.contains(x, y)) {
+            double size = root.size;
+            double x0 = x < root.x0 ? root.x0 - size : root.x0;
+            double y0 = y < root.y0 ? root.y0 - size : root.y0;
+            Cell grown = new Cell(x0, y0, size * 2);
+            grown.children = new Cell[4];
+            grown.children[grown.quadrant(root.x0 + size / 2,
+                    root.y0 + size / 2)] = root;
+            grown.absorb(root);
+            root = grown;
+        }
+        if (sources == sourceX.length) {
+            int capacity = sources * 2;
+            sourceX = Arrays.copyOf(sourceX, capacity);
+            sourceY = Arrays.copyOf(sourceY, capacity);
+            sourceQ = Arrays.copyOf(sourceQ, capacity);
+            sourceWire = Arrays.copyOf(sourceWire, capacity);
+        }
+        int i = sources++;
+        sourceX[i] = x;
+        sourceY[i] = y;
+        sourceQ[i] = q;
+        sourceWire[i] = wire;
+        insert(root, i, 0);
+    }
+
+    /**
+     * Insert a source into a cell, splitting the cell if it is full.
+     *
+     * @param cell the cell
+     * @param i the source index
+     * @param depth the depth of the cell
+     */
+    private void insert(Cell cell, int i, int depth) {
+        cell.add(sourceX[i], sourceY[i], sourceQ[i], sourceWire[i]);
+        if (cell.children == null) {
+            if (cell.count < BUCKET || depth >= MAX_DEPTH) {
+                if (cell.count == cell.items.length) {
+                    cell.items = Arrays.copyOf(cell.items, cell.count * 2);
+                }
+                cell.items[cell.count++] = i;
+                return;
+            }
+            // Split the leaf and push its sources down a level
+            int[] items = cell.items;
+            int count = cell.count;
+            cell.items = null;
+            cell.count = 0;
+            cell.children = new Cell[4];
+            for (int k = 0; k < count; k++) {
+                insert(cell.child(sourceX[items[k]], sourceY[items[k]]),
+                        items[k], depth + 1);
+            }
+        }
+        insert(cell.child(sourceX[i], sourceY[i]), i, depth + 1);
+    }
+
+    /**
+     * Approximate the field at a point.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param out the array receiving the x and y components
+     */
+    @Override
+    public void fieldAt(double x, double y, double[] out) {
+        fieldAt(x, y, 0, out);
+    }
+
+    /**
+     * Approximate the softened field at a point. The summaries of distant
+     * cells are not softened, since the softening length is small beside
+     * their distance.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param softening the softening length
+     * @param out the array receiving the x and y components
+     */
+    public void fieldAt(double x, double y, double softening,
+            double[] out) {
+        out[0] = 0;
+        out[1] = 0;
+        if (root != null) {
+            accumulate(root, x, y, theta * theta, softening * softening,
+                    out);
+        }
+        for (int i = 0; i < otherCount; i++) {
+            Vector field = others[i].fieldAt(x, y);
+            out[0] += field.x;
+            out[1] += field.y;
+        }
+    }
+
+    /**
+     * Add the field of a cell at a point to the output.
+     *
+     * @param cell the cell
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param thetaSq the square of the opening angle
+     * @param softeningSq the square of the softening length
+     * @param out the array accumulating the x and y components
+     */
+    private void accumulate(Cell cell, double x, double y, double thetaSq,
+            double softeningSq, double[] out) {
+        if (cell.total == 0) {
+            return;
+        }
+        double cx = cell.centerX();
+        double cy = cell.centerY();
+        double dx = x - cx;
+        double dy = y - cy;
+        double rSq = dx * dx + dy * dy;
+        if (cell.size * cell.size < thetaSq * rSq) {
+            double r = Math.sqrt(rSq);
+            // Point charge monopole and dipole
+            double px = cell.pointQx - cell.pointQ * cx;
+            double py = cell.pointQy - cell.pointQ * cy;
+            double pd = px * dx + py * dy;
+            double inv3 = 1 / (rSq * r);
+            out[0] += inv3 * (cell.pointQ * dx - px + 3 * dx * pd / rSq);
+            out[1] += inv3 * (cell.pointQ * dy - py + 3 * dy * pd / rSq);
+            // Wire monopole and dipole, rotated a quarter turn
+            px = cell.wireQx - cell.wireQ * cx;
+            py = cell.wireQy - cell.wireQ * cy;
+            pd = px * dx + py * dy;
+            double inv2 = 1 / rSq;
+            double vx = inv2 * (cell.wireQ * dx - px + 2 * dx * pd / rSq);
+            double vy = inv2 * (cell.wireQ * dy - py + 2 * dy * pd / rSq);
+            out[0] -= vy;
+            out[1] += vx;
+        } else if (cell.children == null) {
+            for (int k = 0; k < cell.count; k++) {
+                int i = cell.items[k];
+                double sx = x - sourceX[i];
+                double sy = y - sourceY[i];
+                double sSq = sx * sx + sy * sy + softeningSq;
+                if (sourceWire[i]) {
+                    double mag = sourceQ[i] / sSq;
+                    out[0] -= mag * sy;
+                    out[1] += mag * sx;
+                } else {
+                    double mag = sourceQ[i] / (sSq * Math.sqrt(sSq));
+                    out[0] += mag * sx;
+                    out[1] += mag * sy;
+                }
+            }
+        } else {
+            for (Cell child : cell.children) {
+                if (child != null) {
+                    accumulate(child, x, y, thetaSq, softeningSq, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * A square cell of the tree and the summary of the sources in it.
+     */
+    private static class Cell {
+
+        /**
+         * The corner with the smallest coordinates and the side length.
+         */
+        final double x0, y0, size;
+
+        /**
+         * The children, or null if this cell is a leaf.
+         */
+        Cell[] children;
+        /**
+         * The sources in this leaf.
+         */
+        int[] items = new int[BUCKET];
+        /**
+         * The number of sources in this leaf.
+         */
+        int count;
+
+        /**
+         * The number of sources in this cell and its children.
+         */
+        int total;
+        /**
+         * The sums of the absolute strengths and of the absolute
+         * strengths times the positions, which give the center.
+         */
+        double weight, weightX, weightY;
+        /**
+         * The sums of the point charge strengths and of the strengths
+         * times the positions, which give the monopole and dipole.
+         */
+        double pointQ, pointQx, pointQy;
+        /**
+         * The same sums for the wires.
+         */
+        double wireQ, wireQx, wireQy;
+
+        Cell(double x0, double y0, double size) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.size = size;
+        }
+
+        boolean contains(double x, double y) {
+            return x >= x0 && x < x0 + size && y >= y0 && y < y0 + size;
+        }
+
+        int quadrant(double x, double y) {
+            double half = size / 2;
+            return (x < x0 + half ? 0 : 1) + (y < y0 + half ? 0 : 2);
+        }
+
+        Cell child(double x, double y) {
+            int quadrant = quadrant(x, y);
+            Cell child = children[quadrant];
+            if (child == null) {
+                double half = size / 2;
+                child = new Cell(x0 + (quadrant & 1) * half,
+                        y0 + (quadrant >> 1) * half, half);
+                children[quadrant] = child;
+            }
+            return child;
+        }
+
+        void add(double x, double y, double q, boolean wire) {
+            total++;
+            double w = Math.abs(q);
+            weight += w;
+            weightX += w * x;
+            weightY += w * y;
+            if (wire) {
+                wireQ += q;
+                wireQx += q * x;
+                wireQy += q * y;
+            } else {
+                pointQ += q;
+                pointQx += q * x;
+                pointQy += q * y;
+            }
+        }
+
+        void absorb(Cell cell) {
+            total += cell.total;
+            weight += cell.weight;
+            weightX += cell.weightX;
+            weightY += cell.weightY;
+            pointQ += cell.pointQ;
+            pointQx += cell.pointQx;
+            pointQy += cell.pointQy;
+            wireQ += cell.wireQ;
+            wireQx += cell.wireQx;
+            wireQy += cell.wireQy;
+            items = null;
+        }
+
+        double centerX() {
+            return weight > 0 ? weightX / weight : x0 + size / 2;
+        }
+
+        double centerY() {
+            return weight > 0 ? weightY / weight : y0 + size / 2;
+        }
+
+    }
+
+}
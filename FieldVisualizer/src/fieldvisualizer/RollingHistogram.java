@@ -0,0 +1,125 @@
+package fieldvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * A rolling histogram keeps the distribution of the latest values of a
+ * measurement, such as the time taken by each frame. The values are kept
+ * in a ring of a fixed size, so an old value is dropped for each new one
+ * once the ring is full, and the histogram follows what is happening now
+ * rather than averaging over the whole run. The mean, the largest value
+ * and any percentile of the values in the ring can be read. The values are
+ * sorted when a percentile is first read after a change, and the sorted
+ * copy is kept until the next value comes in.
+ * <p>
+ * A rolling histogram is not safe to use from several threads at once, so
+ * its owner must guard it.
+ *
+ * @author Jeff Niu
+ */
+public class RollingHistogram {
+
+    /**
+     * The ring of the latest values.
+     */
+    private final double[] values;
+    /**
+     * The number of values in the ring.
+     */
+    private int size;
+    /**
+     * The slot that the next value goes into.
+     */
+    private int next;
+    /**
+     * The sum of the values in the ring.
+     */
+    private double sum;
+    /**
+     * The values in the ring in ascending order, or null if they have
+     * changed since they were sorted.
+     */
+    private double[] sorted;
+
+    /**
+     * Create an empty histogram.
+     *
+     * @param window the number of latest values kept
+     */
+    public RollingHistogram(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException(
+                    "Window must be positive: " + window);
+        }
+        values = new double[window];
+    }
+
+    /**
+     * Add a value, dropping the oldest value if the ring is full.
+     *
+     * @param value the value
+     */
+    public void record(double value) {
+        if (size == values.length) {
+            sum -= values[next];
+        } else {
+            size++;
+        }
+        values[next] = value;
+        sum += value;
+        next = (next + 1) % values.length;
+        sorted = null;
+    }
+
+    /**
+     * @return the number of values in the ring
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the mean of the values in the ring, or zero if there are
+     * none
+     */
+    public double getMean() {
+        return size == 0 ? 0 : sum / size;
+    }
+
+    /**
+     * Find the value below which a fraction of the values in the ring lie,
+     * by the nearest rank.
+     *
+     * @param fraction the fraction, from zero to one
+     * @return the percentile, or zero if there are no values
+     */
+    public double getPercentile(double fraction) {
+        if (size == 0) {
+            return 0;
+        }
+        if (sorted == null) {
+            sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+        }
+        int rank = (int) Math.ceil(fraction * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, rank))];
+    }
+
+    /**
+     * @return the largest value in the ring, or zero if there are none
+     */
+    public double getMax() {
+        return getPercentile(1);
+    }
+
+    /**
+     * Drop every value.
+     */
+    public void clear() {
+        size = 0;
+        next = 0;
+        sum = 0;
+        sorted = null;
+    }
+
+}
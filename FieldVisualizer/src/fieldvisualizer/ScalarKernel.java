@@ -0,0 +1,89 @@
+package fieldvisualizer;
+
+/**
+ * The scalar kernel sums the field one charge at a time in plain loops,
+ * which the JIT compiler may still unroll. It runs on every JVM and is
+ * the reference that the vector kernel is checked against.
+ *
+ * @author Jeff Niu
+ */
+class ScalarKernel implements FieldKernel {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void pointField(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, double[] out) {
+        double xField = 0;
+        double yField = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = x - cx[i];
+            double dy = y - cy[i];
+            double rSq = dx * dx + dy * dy;
+            // q / r^2 directed along (dx, dy) / r
+            double mag = q[i] / (rSq * Math.sqrt(rSq));
+            xField += mag * dx;
+            yField += mag * dy;
+        }
+        out[0] += xField;
+        out[1] += yField;
+    }
+
+    @Override
+    public void wireField(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, double[] out) {
+        double xField = 0;
+        double yField = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = x - cx[i];
+            double dy = y - cy[i];
+            // q / r directed along (-dy, dx) / r
+            double mag = q[i] / (dx * dx + dy * dy);
+            xField -= mag * dy;
+            yField += mag * dx;
+        }
+        out[0] += xField;
+        out[1] += yField;
+    }
+
+    @Override
+    public void pointField(double[] cx, double[] cy, double[] q, int n,
+            double[] x, double[] y, double[] xField, double[] yField,
+            int m) {
+        for (int i = 0; i < n; i++) {
+            double px = cx[i];
+            double py = cy[i];
+            double pq = q[i];
+            for (int j = 0; j < m; j++) {
+                double dx = x[j] - px;
+                double dy = y[j] - py;
+                double rSq = dx * dx + dy * dy;
+                double mag = pq / (rSq * Math.sqrt(rSq));
+                xField[j] += mag * dx;
+                yField[j] += mag * dy;
+            }
+        }
+    }
+
+    @Override
+    public void wireField(double[] cx, double[] cy, double[] q, int n,
+            double[] x, double[] y, double[] xField, double[] yField,
+            int m) {
+        for (int i = 0; i < n; i++) {
+            double wx = cx[i];
+            double wy = cy[i];
+            double wq = q[i];
+            for (int j = 0; j < m; j++) {
+                double dx = x[j] - wx;
+                double dy = y[j] - wy;
+                double mag = wq / (dx * dx + dy * dy);
+                xField[j] -= mag * dy;
+                yField[j] += mag * dx;
+            }
+        }
+    }
+
+}
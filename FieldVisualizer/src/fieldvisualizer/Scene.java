@@ -0,0 +1,190 @@
+package fieldvisualizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A scene is a set of charges together with the size of the picture they
+ * are drawn in. Scenes can be read from text files, where each line holds
+ * one item, given by a keyword and its numbers separated by spaces:
+ * <pre>
+ * size width height
+ * point x y q
+ * wire x y q
+ * magnet x y q l arg
+ * </pre>
+ * The numbers of a charge are the arguments of its constructor, so a
+ * magnet is given by its center, strength, half length and angle in
+ * radians. Blank lines and lines starting with # are ignored. A scene
+ * without a size line is the size of the simulator screen.
+ *
+ * @author Jeff Niu
+ */
+public class Scene {
+
+    /**
+     * The size of a scene that does not give one, which is the size of
+     * the simulator screen.
+     */
+    public static final int DEFAULT_WIDTH = 1600;
+    public static final int DEFAULT_HEIGHT = 900;
+
+    /**
+     * The charges in the scene.
+     */
+    private final List<Charge> charges;
+
+    /**
+     * The size of the picture.
+     */
+    private int width;
+    private int height;
+
+    /**
+     * Create a new empty scene of the default size.
+     */
+    public Scene() {
+        this(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+    }
+
+    /**
+     * Create a new empty scene.
+     *
+     * @param width the width of the picture
+     * @param height the height of the picture
+     */
+    public Scene(int width, int height) {
+        charges = new ArrayList<>();
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return the charges in the scene
+     */
+    public List<Charge> getCharges() {
+        return charges;
+    }
+
+    /**
+     * @return the width of the picture
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the picture
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the viewport that shows the picture one to one from the
+     * origin
+     */
+    public Viewport getViewport() {
+        return new Viewport(0, 0, 1, width, height);
+    }
+
+    /**
+     * Set the size of the picture.
+     *
+     * @param width the width
+     * @param height the height
+     */
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Read a scene from a text file.
+     *
+     * @param file the file
+     * @return the scene
+     * @throws IOException if the file cannot be read or a line is not valid,
+     * in which case the message gives the file and line
+     */
+    public static Scene read(Path file) throws IOException {
+        Scene scene = new Scene();
+        try (BufferedReader reader = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    scene.parse(line.split("\\s+"));
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException(file + ":" + number + ": "
+                            + ex.getMessage(), ex);
+                }
+            }
+        }
+        return scene;
+    }
+
+    /**
+     * Add the item described by a line of a scene file.
+     *
+     * @param words the words of the line
+     * @throws IllegalArgumentException if the line is not valid
+     */
+    private void parse(String[] words) {
+        switch (words[0]) {
+            case "size":
+                double[] size = numbers(words, 2);
+                setSize((int) size[0], (int) size[1]);
+                break;
+            case "point":
+                double[] point = numbers(words, 3);
+                charges.add(new PointCharge(point[0], point[1], point[2]));
+                break;
+            case "wire":
+                double[] wire = numbers(words, 3);
+                charges.add(new Wire(wire[0], wire[1], wire[2]));
+                break;
+            case "magnet":
+                double[] magnet = numbers(words, 5);
+                charges.add(new BarMagnet(magnet[0], magnet[1], magnet[2],
+                        magnet[3], magnet[4]));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown item "
+                        + words[0]);
+        }
+    }
+
+    /**
+     * Read the numbers that follow the keyword of a line.
+     *
+     * @param words the words of the line
+     * @param count the number of numbers expected
+     * @return the numbers
+     * @throws IllegalArgumentException if there are not as many numbers as
+     * expected
+     */
+    private static double[] numbers(String[] words, int count) {
+        if (words.length != count + 1) {
+            throw new IllegalArgumentException(words[0] + " takes " + count
+                    + " numbers");
+        }
+        double[] numbers = new double[count];
+        for (int i = 0; i < count; i++) {
+            numbers[i] = Double.parseDouble(words[i + 1]);
+        }
+        return numbers;
+    }
+
+}
@@ -0,0 +1,289 @@
+package fieldvisualizer;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+
+/**
+ * A scene file is a scene stored in binary, for scenes too large to read
+ * from text. The file is mapped into memory and its columns of numbers are
+ * copied in bulk into a charge store, so no object is made per charge.
+ * <p>
+ * All numbers are little endian. The file starts with a header of four
+ * ints: the magic number {@link #MAGIC}, the version {@link #VERSION}, and
+ * the width and height of the picture. Blocks of charges of one type
+ * follow until the end of the file. A block starts with two ints, its type
+ * and the number of charges n in it, followed by a column of n doubles for
+ * each number of the charges, in order:
+ * <ul>
+ * <li>{@link #POINT}: x, y and strength;</li>
+ * <li>{@link #WIRE}: x, y and current strength;</li>
+ * <li>{@link #MAGNET}: center x, center y, strength, half length and angle
+ * in radians.</li>
+ * </ul>
+ * Any number of blocks of each type may appear, so a file can be written
+ * as a stream by {@link SceneWriter}. Every header is a multiple of eight
+ * bytes long, so the columns stay aligned.
+ * <p>
+ * A loaded scene is traced straight from its charge store through
+ * {@link #getField()}. The charges can also be made into objects again by
+ * {@link #toCharges()}, for a display that places them one by one; the
+ * poles of each magnet are remembered, so the magnets come back whole.
+ *
+ * @author Jeff Niu
+ */
+public class SceneFile {
+
+    /**
+     * The first four bytes of a scene file, "FVSC".
+     */
+    public static final int MAGIC = 0x43535646;
+    /**
+     * The version of the format.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The block types.
+     */
+    public static final int POINT = 1;
+    public static final int WIRE = 2;
+    public static final int MAGNET = 3;
+
+    /**
+     * The byte order of the numbers.
+     */
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    /**
+     * The length of the file header and of a block header, in bytes.
+     */
+    static final int HEADER = 16;
+    static final int BLOCK_HEADER = 8;
+
+    /**
+     * The size of the picture.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * The charges in the scene, with each magnet stored as its two poles.
+     */
+    private final ChargeStore charges;
+    /**
+     * The first point of each run of magnet poles in the store and the
+     * number of magnets in the run, in pairs.
+     */
+    private final int[] magnetRuns;
+
+    /**
+     * Create a loaded scene.
+     *
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @param charges the charges
+     * @param magnetRuns the runs of magnet poles in the store
+     */
+    private SceneFile(int width, int height, ChargeStore charges,
+            int[] magnetRuns) {
+        this.width = width;
+        this.height = height;
+        this.charges = charges;
+        this.magnetRuns = magnetRuns;
+    }
+
+    /**
+     * @return the width of the picture
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the picture
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the charges in the scene
+     */
+    public ChargeStore getCharges() {
+        return charges;
+    }
+
+    /**
+     * @return the viewport of the picture, which shows the plane at its
+     * original scale
+     */
+    public Viewport getViewport() {
+        return new Viewport(0, 0, 1, width, height);
+    }
+
+    /**
+     * @return a field that traces straight from the charge store of the
+     * scene
+     */
+    public Field getField() {
+        return new StoreField(charges);
+    }
+
+    /**
+     * Make the charges of the scene into objects: point charges, then
+     * wires, then magnets, which are put together again from their poles.
+     * Other charges would not be in a loaded store.
+     *
+     * @return the charges
+     */
+    public List<Charge> toCharges() {
+        List<Charge> list = new ArrayList<>(charges.pointCount()
+                + charges.wireCount());
+        List<Charge> magnets = new ArrayList<>();
+        int run = 0;
+        int i = 0;
+        while (i < charges.pointCount()) {
+            if (run < magnetRuns.length && i == magnetRuns[run]) {
+                for (int m = 0; m < magnetRuns[run + 1]; m++) {
+                    magnets.add(toMagnet(i));
+                    i += 2;
+                }
+                run += 2;
+            } else {
+                list.add(new PointCharge(charges.getPointX(i),
+                        charges.getPointY(i), charges.getPointQ(i)));
+                i++;
+            }
+        }
+        for (int w = 0; w < charges.wireCount(); w++) {
+            list.add(new Wire(charges.getWireX(w), charges.getWireY(w),
+                    charges.getWireQ(w)));
+        }
+        list.addAll(magnets);
+        return list;
+    }
+
+    /**
+     * Put a magnet together from its poles, the north pole first, undoing
+     * the placement of the poles by the bar magnet constructor.
+     *
+     * @param north the index of the north pole in the store
+     * @return the magnet
+     */
+    private BarMagnet toMagnet(int north) {
+        double nx = charges.getPointX(north);
+        double ny = charges.getPointY(north);
+        double sx = charges.getPointX(north + 1);
+        double sy = charges.getPointY(north + 1);
+        double dx = nx - sx;
+        double dy = ny - sy;
+        return new BarMagnet((nx + sx) / 2, (ny + sy) / 2,
+                charges.getPointQ(north), Math.hypot(dx, dy) / 2,
+                Vector.arg(dx, dy));
+    }
+
+    /**
+     * @param type a block type
+     * @return the number of columns in a block of the type
+     */
+    static int columns(int type) {
+        return type == MAGNET ? 5 : 3;
+    }
+
+    /**
+     * Load a scene file. Files are mapped whole, so they may be at most 2
+     * GB, which holds about 89 million point charges.
+     *
+     * @param file the file
+     * @return the scene
+     * @throws IOException if the file cannot be read or is not a valid
+     * scene file
+     */
+    public static SceneFile load(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file + ": too large to map");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        buffer.order(ORDER);
+        if (buffer.remaining() < HEADER || buffer.getInt() != MAGIC) {
+            throw new IOException(file + ": not a scene file");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(file + ": unknown version " + version);
+        }
+        int width = buffer.getInt();
+        int height = buffer.getInt();
+        ChargeStore charges = new ChargeStore();
+        int[] magnetRuns = new int[0];
+        while (buffer.remaining() >= BLOCK_HEADER) {
+            int type = buffer.getInt();
+            int count = buffer.getInt();
+            long length = (long) count * columns(type) * 8;
+            if (count < 0 || length > buffer.remaining()) {
+                throw new IOException(file + ": truncated block at "
+                        + (buffer.position() - BLOCK_HEADER));
+            }
+            DoubleBuffer columns = buffer.asDoubleBuffer();
+            switch (type) {
+                case POINT:
+                    charges.addPoints(columns, count);
+                    break;
+                case WIRE:
+                    charges.addWires(columns, count);
+                    break;
+                case MAGNET:
+                    magnetRuns = Arrays.copyOf(magnetRuns,
+                            magnetRuns.length + 2);
+                    magnetRuns[magnetRuns.length - 2] = charges.pointCount();
+                    magnetRuns[magnetRuns.length - 1] = count;
+                    addMagnets(charges, columns, count);
+                    break;
+                default:
+                    throw new IOException(file + ": unknown block type "
+                            + type);
+            }
+            buffer.position(buffer.position() + (int) length);
+        }
+        return new SceneFile(width, height, charges, magnetRuns);
+    }
+
+    /**
+     * Add magnets from their columns as their two poles, placed as by the
+     * bar magnet constructor.
+     *
+     * @param charges the store to add the poles to
+     * @param in the columns of the magnets
+     * @param count the number of magnets
+     */
+    private static void addMagnets(ChargeStore charges, DoubleBuffer in,
+            int count) {
+        charges.reservePoints(2 * count);
+        for (int i = 0; i < count; i++) {
+            double x = in.get(i);
+            double y = in.get(count + i);
+            double q = in.get(2 * count + i);
+            double l = in.get(3 * count + i);
+            double arg = in.get(4 * count + i);
+            double lcosa = l * cos(arg);
+            double lsina = l * sin(arg);
+            charges.addPoint(x + lcosa, y + lsina, q);
+            charges.addPoint(x - lcosa, y - lsina, -q);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+package fieldvisualizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import static java.lang.Math.atan2;
+import static java.lang.Math.hypot;
+
+/**
+ * A scene writer saves a scene as a {@link SceneFile} while the charges
+ * are given to it one at a time. Charges of each type are gathered into a
+ * block, which is written out once it is full, so a scene of any size is
+ * saved with a fixed amount of memory. The writer must be closed to write
+ * the blocks that are not full.
+ *
+ * @author Jeff Niu
+ */
+public class SceneWriter implements Closeable {
+
+    /**
+     * The number of charges in a full block.
+     */
+    private static final int BLOCK = 4096;
+
+    /**
+     * The file being written.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The blocks being gathered.
+     */
+    private final Block points;
+    private final Block wires;
+    private final Block magnets;
+
+    /**
+     * The buffer that headers and blocks are written through.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Create a scene file and write its header. An existing file is
+     * replaced.
+     *
+     * @param file the file
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @throws IOException if the file cannot be written
+     */
+    public SceneWriter(Path file, int width, int height)
+            throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        points = new Block(SceneFile.POINT);
+        wires = new Block(SceneFile.WIRE);
+        magnets = new Block(SceneFile.MAGNET);
+        buffer = ByteBuffer.allocateDirect(SceneFile.BLOCK_HEADER
+                + BLOCK * SceneFile.columns(SceneFile.MAGNET) * 8);
+        buffer.order(SceneFile.ORDER);
+        buffer.putInt(SceneFile.MAGIC);
+        buffer.putInt(SceneFile.VERSION);
+        buffer.putInt(width);
+        buffer.putInt(height);
+        drain();
+    }
+
+    /**
+     * Write a charge. Point charges, wires and bar magnets can be written,
+     * including those of subclasses.
+     *
+     * @param charge the charge
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the charge is of another type
+     */
+    public void write(Charge charge) throws IOException {
+        if (charge instanceof PointCharge) {
+            PointCharge point = (PointCharge) charge;
+            writePoint(point.x, point.y, point.q);
+        } else if (charge instanceof Wire) {
+            Wire wire = (Wire) charge;
+            writeWire(wire.x, wire.y, wire.q);
+        } else if (charge instanceof BarMagnet) {
+            BarMagnet magnet = (BarMagnet) charge;
+            double x = (magnet.north.x + magnet.south.x) / 2;
+            double y = (magnet.north.y + magnet.south.y) / 2;
+            double dx = magnet.north.x - x;
+            double dy = magnet.north.y - y;
+            writeMagnet(x, y, magnet.north.q, hypot(dx, dy), atan2(dy, dx));
+        } else {
+            throw new IllegalArgumentException("Cannot save "
+                    + charge.getClass().getName());
+        }
+    }
+
+    /**
+     * Write a point charge.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param q the charge
+     * @throws IOException if the file cannot be written
+     */
+    public void writePoint(double x, double y, double q) throws IOException {
+        points.set(0, x);
+        points.set(1, y);
+        points.set(2, q);
+        points.next();
+    }
+
+    /**
+     * Write a wire.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param q the current strength and direction
+     * @throws IOException if the file cannot be written
+     */
+    public void writeWire(double x, double y, double q) throws IOException {
+        wires.set(0, x);
+        wires.set(1, y);
+        wires.set(2, q);
+        wires.next();
+    }
+
+    /**
+     * Write a bar magnet.
+     *
+     * @param x the center x coordinate
+     * @param y the center y coordinate
+     * @param q the magnetic strength
+     * @param l the length of the magnet from the center to the edge
+     * @param arg the orientation angle of the magnet
+     * @throws IOException if the file cannot be written
+     */
+    public void writeMagnet(double x, double y, double q, double l,
+            double arg) throws IOException {
+        magnets.set(0, x);
+        magnets.set(1, y);
+        magnets.set(2, q);
+        magnets.set(3, l);
+        magnets.set(4, arg);
+        magnets.next();
+    }
+
+    /**
+     * Write the blocks that are not full and close the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            points.flush();
+            wires.flush();
+            magnets.flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write out what has been put in the buffer.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * A block of charges of one type being gathered, kept as columns.
+     */
+    private class Block {
+
+        private final int type;
+        private final int columns;
+        private final double[] data;
+        private int count;
+
+        Block(int type) {
+            this.type = type;
+            columns = SceneFile.columns(type);
+            data = new double[columns * BLOCK];
+        }
+
+        /**
+         * Set a number of the charge being added.
+         *
+         * @param column the index of the number
+         * @param value the number
+         */
+        void set(int column, double value) {
+            data[column * BLOCK + count] = value;
+        }
+
+        /**
+         * Finish the charge being added, writing the block if it is full.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        void next() throws IOException {
+            count++;
+            if (count == BLOCK) {
+                flush();
+            }
+        }
+
+        /**
+         * Write the block if it holds any charges.
+         *
+         * @throws IOException if the file cannot be written
+         */
+        void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            buffer.putInt(type);
+            buffer.putInt(count);
+            for (int c = 0; c < columns; c++) {
+                buffer.asDoubleBuffer().put(data, c * BLOCK, count);
+                buffer.position(buffer.position() + count * 8);
+            }
+            drain();
+            count = 0;
+        }
+
+    }
+
+}
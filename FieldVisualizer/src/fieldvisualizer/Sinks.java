@@ -0,0 +1,299 @@
+package fieldvisualizer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sinks of a field are the points that field lines run into and end
+ * at: the negative point charges, including the south poles of the bar
+ * magnets. A line that comes within the capture radius of a sink has
+ * nowhere else to go, so it is ended there at once rather than stepped
+ * past the sink until it turns back.
+ * <p>
+ * The sinks are kept in a hash grid of square cells twice the capture
+ * radius wide, so checking a point only looks at the four cells its capture
+ * circle can touch, however many sinks there are. The grid is a table of
+ * cell keys with open addressing, and the sinks are sorted by cell into
+ * columns, so a check does not allocate. Points outside the box around
+ * every sink are rejected before the grid is looked at.
+ *
+ * @author Jeff Niu
+ */
+public class Sinks {
+
+    /**
+     * The capture radius used when tracing through a viewport, in pixels,
+     * which is about one step of a line.
+     */
+    public static final double CAPTURE = 3;
+
+    /**
+     * No sinks at all, for tracing that ends lines only by turning back.
+     */
+    public static final Sinks NONE = new Sinks(new double[0], 0);
+
+    /**
+     * The capture radius, in world units.
+     */
+    private final double radius;
+    /**
+     * The width of a cell, in world units.
+     */
+    private final double width;
+    /**
+     * The positions of the sinks, sorted by cell.
+     */
+    private final double[] x;
+    private final double[] y;
+    /**
+     * The keys of the occupied cells, and where the sinks of each cell
+     * start in the columns and how many there are. The table is a power
+     * of two long, and empty slots have a count of zero.
+     */
+    private final long[] keys;
+    private final int[] first;
+    private final int[] count;
+    /**
+     * The box around every sink, grown by the capture radius.
+     */
+    private final double minX, minY, maxX, maxY;
+
+    /**
+     * Find the sinks of a set of charges. The sinks of the reversed field,
+     * in which lines are traced backward, are the positive point charges
+     * and north poles.
+     *
+     * @param charges the charges
+     * @param radius the capture radius, in world units
+     * @param reversed whether the field is traced backward
+     */
+    public Sinks(List<? extends Charge> charges, double radius,
+            boolean reversed) {
+        this(collect(charges, reversed ? -1 : 1), radius);
+    }
+
+    /**
+     * Find the sinks of a set of charges for tracing through a viewport,
+     * with a capture radius of a few pixels.
+     *
+     * @param charges the charges
+     * @param view the viewport
+     * @param reversed whether the field is traced backward
+     * @return the sinks
+     */
+    public static Sinks of(List<? extends Charge> charges, Viewport view,
+            boolean reversed) {
+        return new Sinks(charges, CAPTURE * view.getPixelSize(), reversed);
+    }
+
+    /**
+     * Collect the positions of the point charges of a sign.
+     *
+     * @param charges the charges
+     * @param sign 1 for the negative charges, -1 for the positive
+     * @return the packed positions
+     */
+    private static double[] collect(List<? extends Charge> charges,
+            double sign) {
+        double[] packed = new double[16];
+        int n = 0;
+        for (Charge charge : charges) {
+            PointCharge[] poles;
+            if (charge instanceof PointCharge) {
+                poles = new PointCharge[]{(PointCharge) charge};
+            } else if (charge instanceof BarMagnet) {
+                BarMagnet magnet = (BarMagnet) charge;
+                poles = new PointCharge[]{magnet.north, magnet.south};
+            } else {
+                continue;
+            }
+            for (PointCharge pole : poles) {
+                if (pole.q * sign < 0) {
+                    if (n == packed.length) {
+                        packed = Arrays.copyOf(packed, n * 2);
+                    }
+                    packed[n++] = pole.x;
+                    packed[n++] = pole.y;
+                }
+            }
+        }
+        return Arrays.copyOf(packed, n);
+    }
+
+    /**
+     * Put packed positions into the grid.
+     *
+     * @param packed the packed positions
+     * @param radius the capture radius, in world units
+     */
+    private Sinks(double[] packed, double radius) {
+        int n = packed.length / 2;
+        if (n > 0 && !(radius > 0)) {
+            throw new IllegalArgumentException(
+                    "Capture radius must be positive: " + radius);
+        }
+        this.radius = radius;
+        width = 2 * radius;
+        x = new double[n];
+        y = new double[n];
+        int capacity = Integer.highestOneBit(Math.max(1, n) * 4);
+        keys = new long[capacity];
+        first = new int[capacity];
+        count = new int[capacity];
+        double loX = Double.POSITIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY;
+        double hiX = Double.NEGATIVE_INFINITY;
+        double hiY = Double.NEGATIVE_INFINITY;
+        // Count the sinks of each cell, then lay the cells out one after
+        // another and place each sink in its cell
+        int[] slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            double px = packed[2 * i];
+            double py = packed[2 * i + 1];
+            slots[i] = slot(key(cell(px), cell(py)));
+            count[slots[i]]++;
+            loX = Math.min(loX, px);
+            loY = Math.min(loY, py);
+            hiX = Math.max(hiX, px);
+            hiY = Math.max(hiY, py);
+        }
+        int start = 0;
+        for (int s = 0; s < capacity; s++) {
+            first[s] = start;
+            start += count[s];
+        }
+        int[] filled = new int[capacity];
+        for (int i = 0; i < n; i++) {
+            int k = first[slots[i]] + filled[slots[i]]++;
+            x[k] = packed[2 * i];
+            y[k] = packed[2 * i + 1];
+        }
+        minX = loX - radius;
+        minY = loY - radius;
+        maxX = hiX + radius;
+        maxY = hiY + radius;
+    }
+
+    /**
+     * @return the capture radius, in world units
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return the number of sinks
+     */
+    public int size() {
+        return x.length;
+    }
+
+    /**
+     * Find the sink that captures a point, which is any sink within the
+     * capture radius of it.
+     *
+     * @param px the x coordinate
+     * @param py the y coordinate
+     * @return the index of the sink, or -1 if the point is not captured
+     */
+    public int captures(double px, double py) {
+        if (!(px >= minX && px <= maxX && py >= minY && py <= maxY)) {
+            return -1;
+        }
+        double limit = radius * radius;
+        int right = cell(px + radius);
+        int bottom = cell(py + radius);
+        for (int j = cell(py - radius); j <= bottom; j++) {
+            for (int i = cell(px - radius); i <= right; i++) {
+                int s = find(key(i, j));
+                if (s < 0) {
+                    continue;
+                }
+                for (int k = first[s]; k < first[s] + count[s]; k++) {
+                    double dx = x[k] - px;
+                    double dy = y[k] - py;
+                    if (dx * dx + dy * dy <= limit) {
+                        return k;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param i the index of a sink
+     * @return the x coordinate of the sink
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * @param i the index of a sink
+     * @return the y coordinate of the sink
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * @param coordinate a world coordinate
+     * @return the column or row of the cell holding it
+     */
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / width);
+    }
+
+    /**
+     * @param i the column of a cell
+     * @param j the row of a cell
+     * @return the key of the cell
+     */
+    private static long key(int i, int j) {
+        return (long) i << 32 | j & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @param key the key of a cell
+     * @return the first slot of the table to look in for the cell
+     */
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (keys.length - 1);
+    }
+
+    /**
+     * Find the slot of a cell while building the table, claiming an empty
+     * slot for a new cell.
+     *
+     * @param key the key of the cell
+     * @return the slot
+     */
+    private int slot(long key) {
+        int s = hash(key);
+        while (count[s] > 0 && keys[s] != key) {
+            s = (s + 1) & (keys.length - 1);
+        }
+        keys[s] = key;
+        return s;
+    }
+
+    /**
+     * Find the slot of a cell that holds sinks.
+     *
+     * @param key the key of the cell
+     * @return the slot, or -1 if the cell is empty
+     */
+    private int find(long key) {
+        int s = hash(key);
+        while (count[s] > 0) {
+            if (keys[s] == key) {
+                return s;
+            }
+            s = (s + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,93 @@
+package fieldvisualizer;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * A store field is a field whose charges are kept in a charge store, such
+ * as the one a scene file is loaded into, rather than as a list of charge
+ * objects. The store itself is the sampler of the field, so nothing is
+ * copied before tracing, however many charges there are. The list of
+ * charges is a view of the columns of the store that makes a charge object
+ * whenever one is asked for, which is how the field lines find their
+ * origins. Bar magnets are kept in a store as their two poles, so they are
+ * seen as point charges.
+ *
+ * @author Jeff Niu
+ */
+public class StoreField implements Field {
+
+    /**
+     * The charges in this field.
+     */
+    private final ChargeStore store;
+
+    /**
+     * The view of the charges, in the order of points, wires and then any
+     * others.
+     */
+    private final List<Charge> charges = new AbstractList<Charge>() {
+
+        @Override
+        public Charge get(int i) {
+            if (i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + i);
+            }
+            if (i < store.pointCount()) {
+                return new PointCharge(store.getPointX(i), store.getPointY(i),
+                        store.getPointQ(i));
+            }
+            i -= store.pointCount();
+            if (i < store.wireCount()) {
+                return new Wire(store.getWireX(i), store.getWireY(i),
+                        store.getWireQ(i));
+            }
+            return store.getOther(i - store.wireCount());
+        }
+
+        @Override
+        public int size() {
+            return store.pointCount() + store.wireCount()
+                    + store.otherCount();
+        }
+
+    };
+
+    /**
+     * Create a field of the charges in a store. The store is used as it
+     * is, so charges added to it later are in the field.
+     *
+     * @param store the charges
+     */
+    public StoreField(ChargeStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Add a charge to the store of this field.
+     *
+     * @param charge the charge to add
+     */
+    @Override
+    public void add(Charge charge) {
+        store.add(charge);
+    }
+
+    /**
+     * @return a view of the charges in this field, which cannot be changed
+     * through it
+     */
+    @Override
+    public List<Charge> getCharges() {
+        return charges;
+    }
+
+    /**
+     * @return the store of the charges, which samples the field exactly
+     */
+    @Override
+    public FieldSampler sampler() {
+        return store;
+    }
+
+}
@@ -0,0 +1,495 @@
+package fieldvisualizer;
+
+import fieldvisualizer.PathIterator.Termination;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A streamline placer traces field lines that are spread evenly over a
+ * viewport, after the method of Jobard and Lefer. Every line is grown
+ * forward and backward from a seed until it comes within half the
+ * separation of a line already placed, leaves the screen, runs into a
+ * source or closes on itself. The points of the placed lines are kept in
+ * an occupancy grid of square cells one separation wide, so finding the
+ * lines near a point only looks at the nine cells around it. New seeds are
+ * taken a separation to either side of each placed line, and are only
+ * used where no line is nearer than the separation, so each line fills a
+ * gap next to the last. When these seeds run out, the cells of the grid
+ * are swept for any that are still empty, which reaches the regions that
+ * no line led to. The number of lines follows the area of the screen
+ * divided by the separation, however many sources there are.
+ * <p>
+ * The grid is in screen pixels, while the lines are traced in world
+ * coordinates with an integrator fitted to the viewport. A placer keeps
+ * its grid, so it places the lines of one frame and is then dropped.
+ *
+ * @author Jeff Niu
+ */
+public class StreamlinePlacer {
+
+    /**
+     * The distance at which a growing line stops near another line, as a
+     * fraction of the separation.
+     */
+    private static final double TEST = 0.5;
+    /**
+     * The greatest distance between the points kept in the grid along a
+     * line, as a fraction of the separation. Long steps are filled in with
+     * points between their ends, so that a line cannot slip past another
+     * between two of its points.
+     */
+    private static final double SAMPLE = 0.25;
+    /**
+     * The length along a line, in separations, within which a line does
+     * not count as coming near itself.
+     */
+    private static final double SELF = 3;
+    /**
+     * The most steps taken each way from a seed.
+     */
+    private static final int MAX_STEPS = 1500;
+
+    /**
+     * The sampler of the field, and the same field pointing the other way,
+     * which grows the lines backward.
+     */
+    private final FieldSampler field;
+    private final FieldSampler reversed;
+    /**
+     * The sinks that end the lines grown forward, and the sources, which
+     * are the sinks of the lines grown backward.
+     */
+    private final Sinks sinks;
+    private final Sinks sources;
+    /**
+     * The integrator, with steps in world units.
+     */
+    private final Integrator integrator;
+    /**
+     * The viewport that the lines are placed in.
+     */
+    private final Viewport view;
+    /**
+     * The separation between the lines, in pixels.
+     */
+    private final double separation;
+
+    /**
+     * The number of cells across and down.
+     */
+    private final int cols;
+    private final int rows;
+    /**
+     * The first point in each cell, or -1 if the cell is empty, and the
+     * next point in the same cell after each point.
+     */
+    private final int[] head;
+    private int[] next;
+    /**
+     * The screen position of each point in the grid, the line it is on and
+     * how far along the line it is, in pixels.
+     */
+    private float[] gridX;
+    private float[] gridY;
+    private int[] owner;
+    private float[] along;
+    /**
+     * The number of points in the grid.
+     */
+    private int count;
+    /**
+     * The number of lines placed so far.
+     */
+    private int lines;
+
+    /**
+     * The seeds waiting to be tried, as screen positions.
+     */
+    private final Deque<double[]> seeds = new ArrayDeque<>();
+    /**
+     * The cell that the sweep for empty cells has reached.
+     */
+    private int sweep;
+
+    /**
+     * Why the last half line grown ended.
+     */
+    private Termination ended;
+    /**
+     * The number of times the field has been evaluated for the line being
+     * grown.
+     */
+    private int spent;
+
+    /**
+     * The points of the half line being grown, as packed world
+     * coordinates.
+     */
+    private double[] half = new double[256];
+    private double[] backward = new double[256];
+
+    /**
+     * Create a placer for a viewport.
+     *
+     * @param field the sampler of the field
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @param separation the separation between the lines, in pixels
+     */
+    public StreamlinePlacer(FieldSampler field, Integrator integrator,
+            Viewport view, double separation) {
+        this(field, integrator, view, separation, Sinks.NONE, Sinks.NONE);
+    }
+
+    /**
+     * Create a placer for a viewport whose lines end at the sinks and
+     * sources of the field.
+     *
+     * @param field the sampler of the field
+     * @param integrator the integrator, with steps in pixels
+     * @param view the viewport
+     * @param separation the separation between the lines, in pixels
+     * @param sinks the sinks that capture the lines grown forward
+     * @param sources the sources that capture the lines grown backward
+     */
+    public StreamlinePlacer(FieldSampler field, Integrator integrator,
+            Viewport view, double separation, Sinks sinks, Sinks sources) {
+        if (!(separation > 0)) {
+            throw new IllegalArgumentException(
+                    "Separation must be positive: " + separation);
+        }
+        this.field = field;
+        this.sinks = sinks;
+        this.sources = sources;
+        reversed = (x, y, out) -> {
+            field.fieldAt(x, y, out);
+            out[0] = -out[0];
+            out[1] = -out[1];
+        };
+        this.integrator = view.fit(integrator);
+        this.view = view;
+        this.separation = separation;
+        cols = Math.max(1, (int) Math.ceil(view.getWidth() / separation));
+        rows = Math.max(1, (int) Math.ceil(view.getHeight() / separation));
+        head = new int[cols * rows];
+        Arrays.fill(head, -1);
+        next = new int[1024];
+        gridX = new float[1024];
+        gridY = new float[1024];
+        owner = new int[1024];
+        along = new float[1024];
+    }
+
+    /**
+     * Place the lines and hand each one to a consumer as soon as it has
+     * been placed. The first seeds are tried in order before any others,
+     * so lines may be started from chosen points, such as around the
+     * sources.
+     *
+     * @param first the first seeds, in world coordinates
+     * @param sink the consumer of the field lines
+     */
+    public void place(List<Vector> first,
+            Consumer<? super PathIterator> sink) {
+        for (Vector seed : first) {
+            seeds.add(new double[]{view.toScreenX(seed.x),
+                view.toScreenY(seed.y)});
+        }
+        double[] seed;
+        while ((seed = nextSeed()) != null) {
+            PathIterator path = grow(seed[0], seed[1]);
+            if (path != null) {
+                sink.accept(path);
+            }
+        }
+    }
+
+    /**
+     * Take the next seed that is far enough from every line: from the
+     * queue while it lasts, and then from the middle of the next empty
+     * cell.
+     *
+     * @return the screen position of the seed, or null if there are none
+     * left
+     */
+    private double[] nextSeed() {
+        while (!seeds.isEmpty()) {
+            double[] seed = seeds.poll();
+            if (isFree(seed[0], seed[1])) {
+                return seed;
+            }
+        }
+        while (sweep < head.length) {
+            int cell = sweep++;
+            double sx = (cell % cols + 0.5) * separation;
+            double sy = (cell / cols + 0.5) * separation;
+            if (head[cell] < 0 && isFree(sx, sy)) {
+                return new double[]{sx, sy};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether a seed may be used, which is when it is on the screen
+     * and no line is nearer to it than the separation.
+     *
+     * @param sx the screen x coordinate
+     * @param sy the screen y coordinate
+     * @return whether a line may start there
+     */
+    private boolean isFree(double sx, double sy) {
+        return sx >= 0 && sx < view.getWidth() && sy >= 0
+                && sy < view.getHeight() && !isNear(sx, sy, separation, -1,
+                0);
+    }
+
+    /**
+     * Check whether any point in the grid is within a distance of a screen
+     * position. The points of one line are passed over while they are
+     * within a length of the position along the line, since those are the
+     * points just grown.
+     *
+     * @param sx the screen x coordinate
+     * @param sy the screen y coordinate
+     * @param distance the distance, at most the separation
+     * @param line the line being grown, or -1 for none
+     * @param s how far along that line the position is
+     * @return whether a point is that near
+     */
+    private boolean isNear(double sx, double sy, double distance, int line,
+            double s) {
+        int ci = (int) Math.floor(sx / separation);
+        int cj = (int) Math.floor(sy / separation);
+        double limit = distance * distance;
+        double self = SELF * separation;
+        for (int j = Math.max(0, cj - 1); j <= Math.min(rows - 1, cj + 1);
+                j++) {
+            for (int i = Math.max(0, ci - 1); i <= Math.min(cols - 1, ci + 1);
+                    i++) {
+                for (int k = head[j * cols + i]; k >= 0; k = next[k]) {
+                    double dx = gridX[k] - sx;
+                    double dy = gridY[k] - sy;
+                    if (dx * dx + dy * dy < limit && (owner[k] != line
+                            || Math.abs(along[k] - s) > self)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Put a point of a line into the grid.
+     *
+     * @param sx the screen x coordinate
+     * @param sy the screen y coordinate
+     * @param line the line
+     * @param s how far along the line the point is
+     */
+    private void insert(double sx, double sy, int line, double s) {
+        int ci = (int) (sx / separation);
+        int cj = (int) (sy / separation);
+        if (ci < 0 || ci >= cols || cj < 0 || cj >= rows) {
+            return;
+        }
+        if (count == next.length) {
+            int capacity = count * 2;
+            next = Arrays.copyOf(next, capacity);
+            gridX = Arrays.copyOf(gridX, capacity);
+            gridY = Arrays.copyOf(gridY, capacity);
+            owner = Arrays.copyOf(owner, capacity);
+            along = Arrays.copyOf(along, capacity);
+        }
+        int cell = cj * cols + ci;
+        gridX[count] = (float) sx;
+        gridY[count] = (float) sy;
+        owner[count] = line;
+        along[count] = (float) s;
+        next[count] = head[cell];
+        head[cell] = count;
+        count++;
+    }
+
+    /**
+     * Grow a line both ways from a seed, and queue the seeds beside it.
+     *
+     * @param sx the screen x coordinate of the seed
+     * @param sy the screen y coordinate of the seed
+     * @return the line, or null if it has no length
+     */
+    private PathIterator grow(double sx, double sy) {
+        int line = lines++;
+        double wx = view.toWorldX(sx);
+        double wy = view.toWorldY(sy);
+        insert(sx, sy, line, 0);
+        spent = 0;
+        int back = grow(wx, wy, reversed, sources, line, -1);
+        double[] points = backward;
+        if (points.length < back) {
+            points = new double[back];
+            backward = points;
+        }
+        // The backward half is reversed, so the line runs along the field
+        for (int k = 0; k < back; k += 2) {
+            points[k] = half[back - k - 2];
+            points[k + 1] = half[back - k - 1];
+        }
+        int forth = grow(wx, wy, field, sinks, line, 1);
+        int n = back + forth - 2;
+        if (n < 4) {
+            return null;
+        }
+        if (points.length < n) {
+            points = Arrays.copyOf(points, n);
+            backward = points;
+        }
+        // The forward half starts at the seed, which the backward half
+        // already ends with
+        System.arraycopy(half, 2, points, back, forth - 2);
+        queueSeeds(points, n);
+        return new PathIterator(points, n, ended, spent);
+    }
+
+    /**
+     * Grow one half of a line from a seed into the half buffer. The half
+     * ends where it comes near another line or near an earlier part of
+     * itself, leaves the screen, reverses, runs into a sink, which it ends
+     * on, or after the most steps. The points between its steps are put
+     * into the grid, and why the half ended is kept.
+     *
+     * @param x the world x coordinate of the seed
+     * @param y the world y coordinate of the seed
+     * @param sampler the field, pointing the way to grow
+     * @param ends the sinks of the field pointing that way
+     * @param line the line
+     * @param sign 1 if growing forward, -1 if backward
+     * @return the number of coordinates in the half, starting at the seed
+     */
+    private int grow(double x, double y, FieldSampler sampler, Sinks ends,
+            int line, int sign) {
+        TracePoint point = new TracePoint(x, y, integrator.getStep(),
+                sampler);
+        half[0] = x;
+        half[1] = y;
+        int n = 2;
+        ended = Termination.UNDEFINED;
+        if (!(point.ux == point.ux && point.uy == point.uy)) {
+            spent += point.evaluations;
+            return n;
+        }
+        ended = Termination.LIMIT;
+        double test = TEST * separation;
+        double sample = SAMPLE * separation;
+        double s = 0;
+        double turned = 0;
+        double lastX = view.toScreenX(x);
+        double lastY = view.toScreenY(y);
+        for (int i = 0; i < MAX_STEPS; i++) {
+            double ux = point.ux;
+            double uy = point.uy;
+            integrator.step(sampler, point);
+            int sink = ends.captures(point.x, point.y);
+            if (sink >= 0) {
+                if (n + 2 > half.length) {
+                    half = Arrays.copyOf(half, n * 2);
+                }
+                half[n++] = ends.getX(sink);
+                half[n++] = ends.getY(sink);
+                ended = Termination.CAPTURED;
+                break;
+            }
+            if (!(point.ux == point.ux && point.uy == point.uy)) {
+                ended = Termination.UNDEFINED;
+                break;
+            }
+            if (!Field.nonReversed(ux, uy, point.ux, point.uy)) {
+                ended = Termination.REVERSED;
+                break;
+            }
+            turned += Vector.turn(ux, uy, point.ux, point.uy);
+            double sx = view.toScreenX(point.x);
+            double sy = view.toScreenY(point.y);
+            if (!(sx >= 0 && sx < view.getWidth() && sy >= 0
+                    && sy < view.getHeight())) {
+                ended = Termination.ESCAPED;
+                break;
+            }
+            // Check and keep the points along the step, a fraction of the
+            // separation apart
+            double dx = sx - lastX;
+            double dy = sy - lastY;
+            double length = Math.sqrt(dx * dx + dy * dy);
+            int parts = Math.max(1, (int) Math.ceil(length / sample));
+            boolean blocked = false;
+            for (int p = 1; p <= parts && !blocked; p++) {
+                double t = (double) p / parts;
+                double at = s + t * length;
+                blocked = isNear(lastX + t * dx, lastY + t * dy, test, line,
+                        sign * at);
+            }
+            if (blocked) {
+                ended = Termination.BLOCKED;
+                break;
+            }
+            for (int p = 1; p <= parts; p++) {
+                double t = (double) p / parts;
+                insert(lastX + t * dx, lastY + t * dy, line,
+                        sign * (s + t * length));
+            }
+            s += length;
+            lastX = sx;
+            lastY = sy;
+            if (n == half.length) {
+                half = Arrays.copyOf(half, n * 2);
+            }
+            half[n++] = point.x;
+            half[n++] = point.y;
+            // A line that has turned all the way round has closed a loop
+            if (Math.abs(turned) >= 2 * Math.PI) {
+                ended = Termination.CLOSED;
+                break;
+            }
+        }
+        spent += point.evaluations;
+        return n;
+    }
+
+    /**
+     * Queue the seeds a separation to either side of a placed line, at
+     * every separation along it.
+     *
+     * @param points the packed world coordinates of the line
+     * @param n the number of coordinates
+     */
+    private void queueSeeds(double[] points, int n) {
+        double s = 0;
+        double due = separation / 2;
+        for (int k = 2; k < n; k += 2) {
+            double x1 = view.toScreenX(points[k - 2]);
+            double y1 = view.toScreenY(points[k - 1]);
+            double dx = view.toScreenX(points[k]) - x1;
+            double dy = view.toScreenY(points[k + 1]) - y1;
+            double length = Math.sqrt(dx * dx + dy * dy);
+            if (length == 0) {
+                continue;
+            }
+            // The normal to the line, a separation long
+            double nx = -dy / length * separation;
+            double ny = dx / length * separation;
+            for (; due <= s + length; due += separation) {
+                double t = (due - s) / length;
+                double x = x1 + dx * t;
+                double y = y1 + dy * t;
+                seeds.add(new double[]{x + nx, y + ny});
+                seeds.add(new double[]{x - nx, y - ny});
+            }
+            s += length;
+        }
+    }
+
+}
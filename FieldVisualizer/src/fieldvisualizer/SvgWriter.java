@@ -0,0 +1,86 @@
+package fieldvisualizer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * An SVG writer writes field lines as a scalable vector picture. Each
+ * field line becomes one path element, holding the line and then the two
+ * strokes of each of its arrowheads.
+ *
+ * @author Jeff Niu
+ */
+public class SvgWriter extends PathWriter {
+
+    /**
+     * The ends of the strokes of the arrowhead being written.
+     */
+    private final double[] head = new double[4];
+
+    /**
+     * Create an SVG file and write its start.
+     *
+     * @param file the file
+     * @param width the width of the picture
+     * @param height the height of the picture
+     * @throws IOException if the file cannot be written
+     */
+    public SvgWriter(Path file, int width, int height) throws IOException {
+        super(file);
+        write("<?xml version=\"1.0\" encoding=\"US-ASCII\"?>\n");
+        write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        write((long) width);
+        write("\" height=\"");
+        write((long) height);
+        write("\" viewBox=\"0 0 ");
+        write((long) width);
+        write(' ');
+        write((long) height);
+        write("\">\n");
+        write("<g fill=\"none\" stroke=\"black\" stroke-width=\"1\">\n");
+    }
+
+    @Override
+    protected void writePath(PathIterator path, int index)
+            throws IOException {
+        if (path.size() < 2) {
+            return;
+        }
+        write("<path d=\"M");
+        point(path.getX(0), path.getY(0));
+        write('L');
+        for (int i = 1; i < path.size(); i++) {
+            point(path.getX(i), path.getY(i));
+        }
+        for (int i = 0; i < path.getArrowCount(); i++) {
+            int k = path.getArrow(i);
+            path.getArrowHead(i, head);
+            write('M');
+            point(head[0], head[1]);
+            write('L');
+            point(path.getX(k), path.getY(k));
+            point(head[2], head[3]);
+        }
+        write("\"/>\n");
+    }
+
+    @Override
+    protected void writeEnd() throws IOException {
+        write("</g>\n</svg>\n");
+    }
+
+    /**
+     * Write the coordinates of a point, followed by a space.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @throws IOException if the file cannot be written
+     */
+    private void point(double x, double y) throws IOException {
+        write(x);
+        write(' ');
+        write(y);
+        write(' ');
+    }
+
+}
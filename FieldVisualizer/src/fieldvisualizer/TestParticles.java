@@ -0,0 +1,374 @@
+package fieldvisualizer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Test particles are charged particles that are moved by the field of the
+ * sources without adding any field of their own, so each one moves on its
+ * own and a great many of them can be moved at once. Point charges make
+ * the electric field, while wires and bar magnets make the magnetic field,
+ * and every particle feels the Lorentz force of both. Any other kind of
+ * charge is taken to be electric. Every particle has the same ratio of
+ * charge to mass, which is negative for electrons.
+ * <p>
+ * The sources are lines and poles that stretch straight out of the
+ * screen, so their fields are the same at every depth. A particle keeps
+ * its position on the screen only, but keeps all three components of its
+ * velocity, since a magnetic field in the screen turns a particle moving
+ * in the screen out of it, and back. The particles are stepped with the
+ * Boris pusher: half a kick of the electric field, a rotation about the
+ * magnetic field, and another half kick. The rotation keeps the speed of
+ * a particle exactly, so a magnetic field never pumps energy in however
+ * long the step.
+ * <p>
+ * The particles are kept in primitive columns rather than as objects.
+ * Each step, the columns are split into chunks that are pushed in parallel
+ * on the common pool, and the fields of a chunk are found in two batches
+ * from charge stores, one electric and one magnetic. A particle dies when
+ * it leaves the bounds, or when a step would move it further than the
+ * longest step, which happens as it falls into a source where the field
+ * is too strong for the step to follow. Dead particles are removed at the
+ * end of the step, keeping the order of the rest.
+ *
+ * @author Jeff Niu
+ */
+public class TestParticles {
+
+    /**
+     * The number of particles in a chunk, whose fields are found in one
+     * batch.
+     */
+    private static final int CHUNK = 1024;
+    /**
+     * The initial capacity of each column.
+     */
+    private static final int CAPACITY = 1024;
+
+    /**
+     * The ratio of charge to mass of every particle.
+     */
+    private final double chargeToMass;
+    /**
+     * The square of the longest distance that a particle may move in one
+     * step.
+     */
+    private final double maxStepSq;
+
+    /**
+     * The sources of the electric field and of the magnetic field, and
+     * whether each has any.
+     */
+    private final ChargeStore electric = new ChargeStore();
+    private final ChargeStore magnetic = new ChargeStore();
+    private boolean hasElectric;
+    private boolean hasMagnetic;
+
+    /**
+     * The bounds that the particles live in.
+     */
+    private double left = Double.NEGATIVE_INFINITY;
+    private double top = Double.NEGATIVE_INFINITY;
+    private double right = Double.POSITIVE_INFINITY;
+    private double bottom = Double.POSITIVE_INFINITY;
+
+    /**
+     * The positions and velocities of the particles.
+     */
+    private double[] x;
+    private double[] y;
+    private double[] vx;
+    private double[] vy;
+    private double[] vz;
+    /**
+     * The number of particles.
+     */
+    private int count;
+
+    /**
+     * The buffers of each thread that pushes chunks.
+     */
+    private final ThreadLocal<Chunk> chunks
+            = ThreadLocal.withInitial(Chunk::new);
+
+    /**
+     * Create an empty set of test particles.
+     *
+     * @param sources the sources of the fields
+     * @param chargeToMass the ratio of charge to mass of every particle
+     * @param maxStep the longest distance that a particle may move in one
+     * step
+     */
+    public TestParticles(List<? extends Charge> sources,
+            double chargeToMass, double maxStep) {
+        if (!(maxStep > 0)) {
+            throw new IllegalArgumentException(
+                    "Longest step must be positive: " + maxStep);
+        }
+        this.chargeToMass = chargeToMass;
+        maxStepSq = maxStep * maxStep;
+        x = new double[CAPACITY];
+        y = new double[CAPACITY];
+        vx = new double[CAPACITY];
+        vy = new double[CAPACITY];
+        vz = new double[CAPACITY];
+        setSources(sources);
+    }
+
+    /**
+     * Replace the sources of the fields. The positions and strengths of
+     * the sources are copied, so later changes to them are not seen.
+     *
+     * @param sources the sources of the fields
+     */
+    public final void setSources(List<? extends Charge> sources) {
+        electric.clear();
+        magnetic.clear();
+        hasElectric = false;
+        hasMagnetic = false;
+        for (Charge source : sources) {
+            if (source instanceof Wire || source instanceof BarMagnet) {
+                magnetic.add(source);
+                hasMagnetic = true;
+            } else {
+                electric.add(source);
+                hasElectric = true;
+            }
+        }
+    }
+
+    /**
+     * Set the bounds that the particles live in. Particles outside of the
+     * bounds die on their next step.
+     *
+     * @param x the world x coordinate of the left edge
+     * @param y the world y coordinate of the top edge
+     * @param width the world width
+     * @param height the world height
+     */
+    public void setBounds(double x, double y, double width, double height) {
+        left = x;
+        top = y;
+        right = x + width;
+        bottom = y + height;
+    }
+
+    /**
+     * Add a particle.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param vx the x velocity
+     * @param vy the y velocity
+     * @param vz the velocity out of the screen
+     */
+    public void add(double x, double y, double vx, double vy, double vz) {
+        if (count == this.x.length) {
+            int capacity = count * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.vx = Arrays.copyOf(this.vx, capacity);
+            this.vy = Arrays.copyOf(this.vy, capacity);
+            this.vz = Arrays.copyOf(this.vz, capacity);
+        }
+        this.x[count] = x;
+        this.y[count] = y;
+        this.vx[count] = vx;
+        this.vy[count] = vy;
+        this.vz[count] = vz;
+        count++;
+    }
+
+    /**
+     * Remove every particle, keeping the allocated columns.
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * @return the number of particles
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i the index of a particle
+     * @return the x position of the particle
+     */
+    public double getX(int i) {
+        return x[i];
+    }
+
+    /**
+     * @param i the index of a particle
+     * @return the y position of the particle
+     */
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * @param i the index of a particle
+     * @return the x velocity of the particle
+     */
+    public double getVelocityX(int i) {
+        return vx[i];
+    }
+
+    /**
+     * @param i the index of a particle
+     * @return the y velocity of the particle
+     */
+    public double getVelocityY(int i) {
+        return vy[i];
+    }
+
+    /**
+     * @param i the index of a particle
+     * @return the velocity of the particle out of the screen
+     */
+    public double getVelocityZ(int i) {
+        return vz[i];
+    }
+
+    /**
+     * Advance every particle by one step of time and remove those that
+     * died.
+     *
+     * @param dt the length of the step
+     */
+    public void step(double dt) {
+        int batches = (count + CHUNK - 1) / CHUNK;
+        int dead = IntStream.range(0, batches).parallel()
+                .map((batch) -> push(batch * CHUNK,
+                        Math.min(count, (batch + 1) * CHUNK), dt))
+                .sum();
+        if (dead > 0) {
+            compact();
+        }
+    }
+
+    /**
+     * Push a chunk of the particles with the Boris pusher. A dead particle
+     * has its x position set to not a number.
+     *
+     * @param from the first particle
+     * @param to the particle after the last
+     * @param dt the length of the step
+     * @return the number of particles that died
+     */
+    private int push(int from, int to, double dt) {
+        int n = to - from;
+        Chunk chunk = chunks.get();
+        System.arraycopy(x, from, chunk.x, 0, n);
+        System.arraycopy(y, from, chunk.y, 0, n);
+        chunk.field(electric, hasElectric, chunk.ex, chunk.ey, n);
+        chunk.field(magnetic, hasMagnetic, chunk.bx, chunk.by, n);
+        double h = chargeToMass * dt / 2;
+        int dead = 0;
+        for (int k = 0; k < n; k++) {
+            int i = from + k;
+            // Half a kick of the electric field
+            double ux = vx[i] + h * chunk.ex[k];
+            double uy = vy[i] + h * chunk.ey[k];
+            double uz = vz[i];
+            // Rotate about the magnetic field, which lies in the screen
+            double tx = h * chunk.bx[k];
+            double ty = h * chunk.by[k];
+            double s = 2 / (1 + tx * tx + ty * ty);
+            double wx = ux - uz * ty;
+            double wy = uy + uz * tx;
+            double wz = uz + ux * ty - uy * tx;
+            ux -= wz * s * ty;
+            uy += wz * s * tx;
+            uz += (wx * ty - wy * tx) * s;
+            // And the other half kick
+            ux += h * chunk.ex[k];
+            uy += h * chunk.ey[k];
+            double nx = chunk.x[k] + ux * dt;
+            double ny = chunk.y[k] + uy * dt;
+            vx[i] = ux;
+            vy[i] = uy;
+            vz[i] = uz;
+            // Comparisons with not a number are false, so a particle
+            // whose field blew up dies too
+            if ((ux * ux + uy * uy) * dt * dt <= maxStepSq
+                    && nx >= left && ny >= top && nx < right
+                    && ny < bottom) {
+                x[i] = nx;
+                y[i] = ny;
+            } else {
+                x[i] = Double.NaN;
+                dead++;
+            }
+        }
+        return dead;
+    }
+
+    /**
+     * Remove the dead particles, keeping the order of the rest.
+     */
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < count; i++) {
+            if (x[i] == x[i]) {
+                x[live] = x[i];
+                y[live] = y[i];
+                vx[live] = vx[i];
+                vy[live] = vy[i];
+                vz[live] = vz[i];
+                live++;
+            }
+        }
+        count = live;
+    }
+
+    /**
+     * Count every particle in the cell of a density buffer that it is in.
+     *
+     * @param density the density buffer
+     */
+    public void deposit(DensityBuffer density) {
+        for (int i = 0; i < count; i++) {
+            density.add(x[i], y[i]);
+        }
+    }
+
+    /**
+     * The buffers that a thread pushes a chunk with.
+     */
+    private static class Chunk {
+
+        final double[] x = new double[CHUNK];
+        final double[] y = new double[CHUNK];
+        final double[] ex = new double[CHUNK];
+        final double[] ey = new double[CHUNK];
+        final double[] bx = new double[CHUNK];
+        final double[] by = new double[CHUNK];
+
+        /**
+         * Find the field of a charge store at the positions of the chunk,
+         * which is zero if the store has no sources.
+         *
+         * @param store the charge store
+         * @param any whether the store has any sources
+         * @param xField receives the x components
+         * @param yField receives the y components
+         * @param n the number of particles in the chunk
+         */
+        void field(ChargeStore store, boolean any, double[] xField,
+                double[] yField, int n) {
+            if (any) {
+                store.fieldAt(x, y, xField, yField, n);
+            } else {
+                Arrays.fill(xField, 0, n, 0);
+                Arrays.fill(yField, 0, n, 0);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package fieldvisualizer;
+
+/**
+ * A trace point is the moving end of a field line while it is traced: its
+ * position, the unit direction of the field there, and the step sizes used
+ * by the integrator. One trace point is created per line and updated in
+ * place by every step, so tracing does not allocate per step.
+ *
+ * @author Jeff Niu
+ */
+public class TracePoint {
+
+    /**
+     * The x position.
+     */
+    public double x;
+    /**
+     * The y position.
+     */
+    public double y;
+    /**
+     * The x component of the field direction at the position.
+     */
+    public double ux;
+    /**
+     * The y component of the field direction at the position.
+     */
+    public double uy;
+    /**
+     * The length of the next step to try.
+     */
+    public double step;
+    /**
+     * The length of the last step taken.
+     */
+    public double taken;
+    /**
+     * The number of times the field has been evaluated for this line.
+     */
+    public int evaluations;
+
+    /**
+     * A scratch array receiving the output of the field sampler.
+     */
+    private final double[] out = new double[2];
+
+    /**
+     * Create a trace point at the start of a line.
+     *
+     * @param x the x position
+     * @param y the y position
+     * @param step the length of the first step to try
+     * @param field the sampler of the field
+     */
+    public TracePoint(double x, double y, double step, FieldSampler field) {
+        this.x = x;
+        this.y = y;
+        this.step = step;
+        direction(field, x, y);
+        ux = out[0];
+        uy = out[1];
+    }
+
+    /**
+     * Find the unit direction of the field at a point. The components are
+     * left in the scratch array, where {@link #dx()} and {@link #dy()} read
+     * them.
+     *
+     * @param field the sampler of the field
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    public void direction(FieldSampler field, double x, double y) {
+        field.directionAt(x, y, out);
+        evaluations++;
+    }
+
+    /**
+     * @return the x component of the last direction found
+     */
+    public double dx() {
+        return out[0];
+    }
+
+    /**
+     * @return the y component of the last direction found
+     */
+    public double dy() {
+        return out[1];
+    }
+
+}
@@ -43,6 +43,26 @@ public class Vector {
         return diff;
     }
 
+    /**
+     * The signed angle turned from one unit vector to another, measured
+     * counterclockwise like the difference of their arguments. The angle
+     * is approximated without trigonometry as 2 sin / (1 + cos), using
+     * the cross and dot products, which is twice the tangent of half the
+     * angle and is accurate for the small turns between steps of a trace.
+     *
+     * @param ux1 the first direction x component
+     * @param uy1 the first direction y component
+     * @param ux2 the second direction x component
+     * @param uy2 the second direction y component
+     * @return the angle turned
+     */
+    public static double turn(double ux1, double uy1, double ux2,
+            double uy2) {
+        double cross = ux1 * uy2 - uy1 * ux2;
+        double dot = ux1 * ux2 + uy1 * uy2;
+        return 2 * cross / (1 + dot);
+    }
+
     /**
      * Add two vectors.
      *
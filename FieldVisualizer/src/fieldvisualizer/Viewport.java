@@ -0,0 +1,334 @@
+package fieldvisualizer;
+
+/**
+ * A viewport is the part of the plane that is shown on the screen. It maps
+ * world coordinates, in which the charges are placed, to screen pixels by
+ * a scale and the world position of the top left corner of the screen.
+ * Tracing through a viewport skips the charges that are far from it, ends
+ * the lines that leave it, and steps in proportion to the world size of a
+ * pixel, so the cost of a trace follows what is on the screen rather than
+ * the size of the whole scene. How far past the screen a line may go, and
+ * how straight a line leaving the screen must be to be given up on, can
+ * be set for each viewport. A viewport does not change; panning and
+ * zooming give a new viewport, so one can be handed to another thread.
+ *
+ * @author Jeff Niu
+ */
+public class Viewport {
+
+    /**
+     * The original screen of the simulator, which shows the world one to
+     * one from the origin.
+     */
+    public static final Viewport DEFAULT = new Viewport(0, 0, 1, 1600, 900);
+
+    /**
+     * The smallest and largest scales.
+     */
+    private static final double MIN_SCALE = 1.0 / 64;
+    private static final double MAX_SCALE = 64;
+
+    /**
+     * The default distance past each side of the viewport, as a fraction
+     * of its size, beyond which charges are not traced and lines are
+     * ended.
+     */
+    private static final double NEAR = 1;
+    /**
+     * The default turn of a step, as the sine of the angle turned through
+     * in a nominal step, below which a line leaving the screen counts as
+     * straight and is ended.
+     */
+    private static final double STRAIGHT = 0.002;
+
+    /**
+     * The world coordinates of the top left corner of the screen.
+     */
+    private final double x;
+    private final double y;
+    /**
+     * The number of pixels per unit of world length.
+     */
+    private final double scale;
+    /**
+     * The size of the screen in pixels.
+     */
+    private final int width;
+    private final int height;
+    /**
+     * The distance past each side as a fraction of the size, and the turn
+     * of a straight step, which decide when a line has escaped.
+     */
+    private final double margin;
+    private final double straight;
+
+    /**
+     * Create a new viewport.
+     *
+     * @param x the world x coordinate of the left side of the screen
+     * @param y the world y coordinate of the top of the screen
+     * @param scale the number of pixels per unit of world length
+     * @param width the width of the screen in pixels
+     * @param height the height of the screen in pixels
+     */
+    public Viewport(double x, double y, double scale, int width,
+            int height) {
+        this(x, y, scale, width, height, NEAR, STRAIGHT);
+    }
+
+    /**
+     * Create a new viewport with an escape criterion.
+     *
+     * @param x the world x coordinate of the left side of the screen
+     * @param y the world y coordinate of the top of the screen
+     * @param scale the number of pixels per unit of world length
+     * @param width the width of the screen in pixels
+     * @param height the height of the screen in pixels
+     * @param margin the distance past each side, as a fraction of the size
+     * @param straight the turn of a straight step
+     */
+    private Viewport(double x, double y, double scale, int width,
+            int height, double margin, double straight) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("Scale must be positive: "
+                    + scale);
+        }
+        if (!(margin >= 0)) {
+            throw new IllegalArgumentException(
+                    "Margin must not be negative: " + margin);
+        }
+        this.x = x;
+        this.y = y;
+        this.scale = scale;
+        this.width = width;
+        this.height = height;
+        this.margin = margin;
+        this.straight = straight;
+    }
+
+    /**
+     * @return the world x coordinate of the left side of the screen
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return the world y coordinate of the top of the screen
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return the number of pixels per unit of world length
+     */
+    public double getScale() {
+        return scale;
+    }
+
+    /**
+     * @return the width of the screen in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the screen in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the distance past each side of the screen, as a fraction of
+     * its size, beyond which lines are ended
+     */
+    public double getMargin() {
+        return margin;
+    }
+
+    /**
+     * @return the turn of a step below which a line leaving the screen is
+     * ended
+     */
+    public double getStraightness() {
+        return straight;
+    }
+
+    /**
+     * @return the world length covered by one pixel
+     */
+    public double getPixelSize() {
+        return 1 / scale;
+    }
+
+    /**
+     * @param wx a world x coordinate
+     * @return the screen x coordinate
+     */
+    public double toScreenX(double wx) {
+        return (wx - x) * scale;
+    }
+
+    /**
+     * @param wy a world y coordinate
+     * @return the screen y coordinate
+     */
+    public double toScreenY(double wy) {
+        return (wy - y) * scale;
+    }
+
+    /**
+     * @param sx a screen x coordinate
+     * @return the world x coordinate
+     */
+    public double toWorldX(double sx) {
+        return x + sx / scale;
+    }
+
+    /**
+     * @param sy a screen y coordinate
+     * @return the world y coordinate
+     */
+    public double toWorldY(double sy) {
+        return y + sy / scale;
+    }
+
+    /**
+     * Check whether a world point is on the screen.
+     *
+     * @param wx the world x coordinate
+     * @param wy the world y coordinate
+     * @return whether the point is visible
+     */
+    public boolean contains(double wx, double wy) {
+        double sx = toScreenX(wx);
+        double sy = toScreenY(wy);
+        return sx >= 0 && sx <= width && sy >= 0 && sy <= height;
+    }
+
+    /**
+     * Check whether a line through a world point is moving away from the
+     * screen, which is when the point is past a side of the screen and the
+     * line heads further past that side. A straight line that is leaving
+     * is never seen again.
+     *
+     * @param wx the world x coordinate
+     * @param wy the world y coordinate
+     * @param ux the x direction of the line
+     * @param uy the y direction of the line
+     * @return whether the line is leaving the screen
+     */
+    public boolean isLeaving(double wx, double wy, double ux, double uy) {
+        double sx = toScreenX(wx);
+        double sy = toScreenY(wy);
+        return sx < 0 && ux < 0 || sx > width && ux > 0
+                || sy < 0 && uy < 0 || sy > height && uy > 0;
+    }
+
+    /**
+     * Check whether a world point is near enough to the screen that lines
+     * through it may still be seen. The region extends past each side of
+     * the screen by the margin, which is the size of the screen unless
+     * set otherwise.
+     *
+     * @param wx the world x coordinate
+     * @param wy the world y coordinate
+     * @return whether the point is near the screen
+     */
+    public boolean isNear(double wx, double wy) {
+        double sx = toScreenX(wx);
+        double sy = toScreenY(wy);
+        return sx >= -margin * width && sx <= (1 + margin) * width
+                && sy >= -margin * height && sy <= (1 + margin) * height;
+    }
+
+    /**
+     * Check whether a line has escaped the viewport, so that tracing it
+     * further would add nothing to the screen. A line escapes when it goes
+     * past the margin, or when it is past a side of the screen, heading
+     * further past it, and turning by less than a straight step does.
+     *
+     * @param wx the world x coordinate
+     * @param wy the world y coordinate
+     * @param ux the x direction of the line
+     * @param uy the y direction of the line
+     * @param turn the sine of the angle turned through in the last step,
+     * scaled to a nominal step
+     * @return whether the line has escaped
+     */
+    public boolean hasEscaped(double wx, double wy, double ux, double uy,
+            double turn) {
+        return isLeaving(wx, wy, ux, uy) && Math.abs(turn) < straight
+                || !isNear(wx, wy);
+    }
+
+    /**
+     * Fit an integrator to the viewport. Its steps are given in pixels, so
+     * they are scaled to the world length of a pixel, and lines are traced
+     * coarsely when zoomed out and finely when zoomed in.
+     *
+     * @param integrator the integrator with steps in pixels
+     * @return the integrator with steps in world units
+     */
+    public Integrator fit(Integrator integrator) {
+        return scale == 1 ? integrator : integrator.scaled(1 / scale);
+    }
+
+    /**
+     * Change when lines are taken to have escaped the screen. A wider
+     * margin keeps lines that wander far off the screen and come back,
+     * and a smaller straightness keeps lines that leave the screen while
+     * curving slowly, at the cost of tracing further.
+     *
+     * @param margin the distance past each side, as a fraction of the size
+     * @param straight the turn of a step, as the sine of the angle turned
+     * through in a nominal step, below which a line leaving the screen is
+     * ended
+     * @return the viewport with the escape criterion
+     */
+    public Viewport withEscape(double margin, double straight) {
+        return new Viewport(x, y, scale, width, height, margin, straight);
+    }
+
+    /**
+     * Move the viewport with the screen contents, as when dragging.
+     *
+     * @param dx the pixels moved right
+     * @param dy the pixels moved down
+     * @return the moved viewport
+     */
+    public Viewport pan(double dx, double dy) {
+        return new Viewport(x - dx / scale, y - dy / scale, scale, width,
+                height, margin, straight);
+    }
+
+    /**
+     * Zoom about a point of the screen, which stays where it is. The scale
+     * is kept between a sixty-fourth and sixty-four.
+     *
+     * @param factor the factor that the scale is multiplied by
+     * @param sx the screen x coordinate of the fixed point
+     * @param sy the screen y coordinate of the fixed point
+     * @return the zoomed viewport
+     */
+    public Viewport zoom(double factor, double sx, double sy) {
+        double s = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        return new Viewport(toWorldX(sx) - sx / s, toWorldY(sy) - sy / s, s,
+                width, height, margin, straight);
+    }
+
+    /**
+     * Change the size of the screen, keeping its top left corner and scale.
+     *
+     * @param width the new width in pixels
+     * @param height the new height in pixels
+     * @return the resized viewport
+     */
+    public Viewport resize(int width, int height) {
+        return new Viewport(x, y, scale, width, height, margin, straight);
+    }
+
+}
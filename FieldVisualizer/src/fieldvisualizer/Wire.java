@@ -1,11 +1,10 @@
 package fieldvisualizer;
 
+import fieldvisualizer.PathIterator.Termination;
 import static java.lang.Math.PI;
 import static java.lang.Math.abs;
-import static java.lang.Math.cos;
-import static java.lang.Math.sin;
-import static java.lang.Math.sqrt;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -47,9 +46,19 @@ public class Wire implements Charge {
         this.q = q;
     }
 
+    /**
+     * @return this wire, which cannot change
+     */
+    @Override
+    public Wire copy() {
+        return this;
+    }
+
     /**
      * The magnetic field vector at a particular point around the wire has
-     * an inverse relationship with distance and is circular.
+     * an inverse relationship with distance and is circular. The tangent
+     * direction is the displacement rotated by a quarter turn, (-dy, dx),
+     * divided by the distance.
      *
      * @param x the x coordinate
      * @param y the y coordinate
@@ -62,10 +71,22 @@ public class Wire implements Charge {
         double xSq = dx * dx;
         double ySq = dy * dy;
         double rSq = xSq + ySq;
-        double r = sqrt(rSq);
-        double B = q / r;
-        double arg = Vector.arg(dx, dy) + PI / 2;
-        return new Vector(B * cos(arg), B * sin(arg));
+        double B = q / rSq; // q / r / r
+        return new Vector(-B * dy, B * dx);
+    }
+
+    /**
+     * The field of a wire circles it, so it has no potential that is the
+     * same after going around the wire once. A wire adds nothing to the
+     * potential, and its field is shown by its field lines instead.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return zero
+     */
+    @Override
+    public double potentialAt(double x, double y) {
+        return 0;
     }
 
     /**
@@ -81,38 +102,78 @@ public class Wire implements Charge {
     }
 
     /**
-     * @return the trace of the magnetic field lines from the origins
+     * The origins of a wire do not depend on the projection angle.
+     *
+     * @param angle the projection angle, which is unused
+     * @return a set of points projected around the wire
      */
     @Override
-    public List<PathIterator> trace(double angle, double step,
-            Charge[] charges) {
-        List<PathIterator> trace = new ArrayList<>();
-        List<Vector> origins = getOrigins();
+    public List<Vector> getOrigins(double angle) {
+        return getOrigins();
+    }
+
+    /**
+     * Trace a magnetic field line from one of the origins. The line is
+     * stepped until it has turned through a full circle, which closes the
+     * loop, until it runs into a sink or reverses direction, or until it
+     * has wandered past the margin of the viewport. Lines around wires
+     * keep turning, so one leaving the screen is not ended for being
+     * straight.
+     *
+     * @param origin the initial point
+     * @param integrator the integrator that steps along the line
+     * @param field the sampler of the field
+     * @param view the viewport that the line is traced for
+     * @param sinks the sinks that capture the line
+     * @return the trace of the magnetic field line from the origin
+     */
+    @Override
+    public PathIterator trace(Vector origin, Integrator integrator,
+            FieldSampler field, Viewport view, Sinks sinks) {
         //step *= signum(q);
-        for (Vector origin : origins) {
-            List<Vector> points = new ArrayList<>();
-            double px = origin.x;
-            double py = origin.y;
-            double totalChange = 0;
-            double theta1;
-            double theta2
-                    = Field.fieldAt(origin.x, origin.y, charges).arg();
-            int i = 0;
-            do {
-                theta1 = theta2;
-                points.add(new Vector(px, py));
-                px += step * cos(theta1);
-                py += step * sin(theta1);
-                theta2 = Field.fieldAt(px, py, charges).arg();
-                totalChange += Vector.angleDiff(theta1, theta2);
-                i++;
-                if (!Field.nonReversed(theta1, theta2)) {
-                    break;
-                }
-            } while (abs(totalChange) < 2 * PI && i < 1500);
-            trace.add(new PathIterator(points.iterator()));
-        }
-        return trace;
+        double step = integrator.getStep();
+        TracePoint point = new TracePoint(origin.x, origin.y, step, field);
+        double[] points = new double[256];
+        int n = 0;
+        double length = 0;
+        double totalChange = 0;
+        double ux;
+        double uy;
+        Termination end = Termination.LIMIT;
+        int i = 0;
+        do {
+            ux = point.ux;
+            uy = point.uy;
+            if (n + 4 > points.length) {
+                points = Arrays.copyOf(points, points.length * 2);
+            }
+            points[n++] = point.x;
+            points[n++] = point.y;
+            integrator.step(field, point);
+            length += point.taken;
+            totalChange += Vector.turn(ux, uy, point.ux, point.uy);
+            i++;
+            int sink = sinks.captures(point.x, point.y);
+            if (sink >= 0) {
+                points[n++] = sinks.getX(sink);
+                points[n++] = sinks.getY(sink);
+                end = Termination.CAPTURED;
+                break;
+            }
+            if (!Field.nonReversed(ux, uy, point.ux, point.uy)) {
+                end = Termination.REVERSED;
+                break;
+            }
+            if (!view.isNear(point.x, point.y)) {
+                end = Termination.ESCAPED;
+                break;
+            }
+            if (abs(totalChange) >= 2 * PI) {
+                end = Termination.CLOSED;
+                break;
+            }
+        } while (i < 1500 && length < 1500 * step);
+        return new PathIterator(points, n, end, point.evaluations);
     }
 
 }
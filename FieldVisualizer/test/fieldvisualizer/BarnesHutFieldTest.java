@@ -0,0 +1,79 @@
+package fieldvisualizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Checks that a Barnes-Hut field refuses charges its tree cannot hold
+ * whether or not the tree is waiting to be rebuilt, so that a refused
+ * charge never breaks the field.
+ *
+ * @author Jeff Niu
+ */
+public class BarnesHutFieldTest {
+
+    /**
+     * A charge added after a removal, while the tree is stale, is still
+     * refused.
+     */
+    @Test
+    public void addAfterRemoveRejectsNonFinite() {
+        BarnesHutField field = field();
+        field.getCharges().remove(0);
+        reject(() -> field.add(new PointCharge(Double.NaN, 0, 1)));
+        assertEquals(1, field.getCharges().size());
+        assertSamples(field);
+    }
+
+    /**
+     * A charge set in place of another is refused.
+     */
+    @Test
+    public void setRejectsNonFinite() {
+        BarnesHutField field = field();
+        reject(() -> field.getCharges().set(0,
+                new Wire(0, Double.POSITIVE_INFINITY, 1)));
+        assertEquals(2, field.getCharges().size());
+        assertSamples(field);
+    }
+
+    /**
+     * @return a field of two point charges
+     */
+    private static BarnesHutField field() {
+        BarnesHutField field = new BarnesHutField();
+        field.add(new PointCharge(0, 0, 1));
+        field.add(new PointCharge(100, 0, -1));
+        return field;
+    }
+
+    /**
+     * Check that a field can still be sampled, twice in a row, and that
+     * its tree holds every charge.
+     *
+     * @param field the field
+     */
+    private static void assertSamples(BarnesHutField field) {
+        List<Charge> charges = field.getCharges();
+        for (int k = 0; k < 2; k++) {
+            QuadTree tree = (QuadTree) field.sampler();
+            assertEquals(charges.size(), tree.size());
+        }
+    }
+
+    /**
+     * Run something that must throw an illegal argument exception.
+     *
+     * @param action the action
+     */
+    private static void reject(Runnable action) {
+        try {
+            action.run();
+            fail("Accepted a non-finite charge");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package fieldvisualizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Checks that the field grid of an electromagnetic field follows its
+ * charges, including charges that are moved in place.
+ *
+ * @author Jeff Niu
+ */
+public class ElectroMagneticFieldTest {
+
+    /**
+     * The grid is kept while the charges stay where they are.
+     */
+    @Test
+    public void gridIsKeptWhileStill() {
+        ElectroMagneticField field = field(new PointCharge(50, 50, 1));
+        assertSame(field.sampler(), field.sampler());
+    }
+
+    /**
+     * Moving a charge in place samples the grid again.
+     */
+    @Test
+    public void gridFollowsMovedCharge() {
+        PointCharge charge = new PointCharge(50, 50, 1);
+        ElectroMagneticField field = field(charge);
+        FieldSampler before = field.sampler();
+        charge.x = 150;
+        FieldSampler after = field.sampler();
+        assertNotSame(before, after);
+        double[] exact = new double[2];
+        double[] grid = new double[2];
+        new ChargeStore(field.getCharges()).fieldAt(100, 20, exact);
+        after.fieldAt(100, 20, grid);
+        assertEquals(exact[0], grid[0], 1e-3 * Math.abs(exact[0]));
+        assertEquals(exact[1], grid[1], 1e-3 * Math.abs(exact[1]));
+    }
+
+    /**
+     * Changing the strength of a charge in place samples the grid again.
+     */
+    @Test
+    public void gridFollowsStrength() {
+        PointCharge charge = new PointCharge(50, 50, 1);
+        ElectroMagneticField field = field(charge);
+        FieldSampler before = field.sampler();
+        charge.q = -1;
+        assertNotSame(before, field.sampler());
+    }
+
+    /**
+     * Setting the grid over the same viewport again keeps the samples,
+     * while a new viewport samples the grid again over the part of the
+     * world it sees.
+     */
+    @Test
+    public void gridFollowsViewport() {
+        ElectroMagneticField field = new ElectroMagneticField();
+        field.add(new PointCharge(50, 50, 1));
+        Viewport view = new Viewport(0, 0, 1, 200, 100);
+        field.setGrid(view, 2);
+        FieldSampler before = field.sampler();
+        field.setGrid(new Viewport(0, 0, 1, 200, 100), 2);
+        assertSame(before, field.sampler());
+        Viewport panned = view.pan(300, 0);
+        field.setGrid(panned, 2);
+        FieldSampler after = field.sampler();
+        assertNotSame(before, after);
+        // A point that only the panned grid covers
+        double x = panned.toWorldX(100);
+        double[] exact = new double[2];
+        double[] grid = new double[2];
+        new ChargeStore(field.getCharges()).fieldAt(x, 20, exact);
+        after.fieldAt(x, 20, grid);
+        assertEquals(exact[0], grid[0], 1e-3 * Math.abs(exact[0]));
+        assertEquals(exact[1], grid[1], 1e-3 * Math.abs(exact[1]));
+    }
+
+    /**
+     * @param charge the charge
+     * @return a field of one charge with a grid over it
+     */
+    private static ElectroMagneticField field(Charge charge) {
+        ElectroMagneticField field = new ElectroMagneticField();
+        field.add(charge);
+        field.setGrid(0, 0, 200, 100, 1);
+        return field;
+    }
+
+}
@@ -0,0 +1,185 @@
+package fieldvisualizer;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+/**
+ * Checks that the field kernels agree with each other to within
+ * {@link FieldKernel#TOLERANCE} of the sum of the magnitudes of the terms,
+ * on random point charges and wires, at single points and in batches. The
+ * vector kernel is only checked when the test JVM can load it.
+ *
+ * @author Jeff Niu
+ */
+public class FieldKernelTest {
+
+    /**
+     * The numbers of charges tried, which include none, one, and counts on
+     * either side of every lane width.
+     */
+    private static final int[] COUNTS = {0, 1, 2, 3, 4, 5, 7, 8, 9, 15, 16,
+        17, 31, 33, 64, 100, 257};
+    /**
+     * The number of points the fields are found at for each count.
+     */
+    private static final int POINTS = 41;
+
+    /**
+     * The scalar kernel gives the same field in a batch as one point at a
+     * time.
+     */
+    @Test
+    public void scalarBatchMatchesSinglePoints() {
+        FieldKernel scalar = new ScalarKernel();
+        check(scalar, scalar);
+    }
+
+    /**
+     * The vector kernel agrees with the scalar kernel.
+     */
+    @Test
+    public void vectorMatchesScalar() {
+        FieldKernel vector = loadVector();
+        assumeTrue("vector kernel not available", vector != null);
+        check(vector, new ScalarKernel());
+    }
+
+    /**
+     * The vector kernel is the one chosen when it can be loaded.
+     */
+    @Test
+    public void selectPrefersVector() {
+        assumeTrue("vector kernel not available", loadVector() != null);
+        assumeTrue(System.getProperty(FieldKernel.PROPERTY) == null);
+        assertEquals("vector", FieldKernel.select().getName());
+    }
+
+    /**
+     * @return the vector kernel, or null if it cannot be loaded
+     */
+    private static FieldKernel loadVector() {
+        try {
+            return (FieldKernel) Class.forName(FieldKernel.VECTOR)
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check a kernel against a reference kernel on random charges of each
+     * count, for point charges and wires apart.
+     *
+     * @param kernel the kernel to check
+     * @param reference the kernel taken to be right
+     */
+    private static void check(FieldKernel kernel, FieldKernel reference) {
+        Random random = new Random(4);
+        for (int n : COUNTS) {
+            double[] cx = new double[n];
+            double[] cy = new double[n];
+            double[] q = new double[n];
+            for (int i = 0; i < n; i++) {
+                cx[i] = random.nextDouble() * 1600;
+                cy[i] = random.nextDouble() * 900;
+                q[i] = random.nextDouble() * 2 - 1;
+            }
+            double[] x = new double[POINTS];
+            double[] y = new double[POINTS];
+            for (int j = 0; j < POINTS; j++) {
+                x[j] = random.nextDouble() * 1600;
+                y[j] = random.nextDouble() * 900;
+            }
+            for (boolean wires : new boolean[]{false, true}) {
+                double[][] want = field(reference, wires, cx, cy, q, n, x,
+                        y, false);
+                double[][] batch = field(kernel, wires, cx, cy, q, n, x,
+                        y, false);
+                double[][] single = field(kernel, wires, cx, cy, q, n, x,
+                        y, true);
+                for (int j = 0; j < POINTS; j++) {
+                    double delta = FieldKernel.TOLERANCE
+                            * scale(cx, cy, q, n, x[j], y[j], wires);
+                    String where = (wires ? "wires" : "points") + ", n = "
+                            + n + ", point " + j;
+                    assertEquals(where, want[0][j], batch[0][j], delta);
+                    assertEquals(where, want[1][j], batch[1][j], delta);
+                    assertEquals(where, want[0][j], single[0][j], delta);
+                    assertEquals(where, want[1][j], single[1][j], delta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the field of a column of charges at each of a set of points.
+     *
+     * @param kernel the kernel
+     * @param wires whether the charges are wires rather than points
+     * @param cx the x positions of the charges
+     * @param cy the y positions of the charges
+     * @param q the strengths of the charges
+     * @param n the number of charges
+     * @param x the x coordinates of the points
+     * @param y the y coordinates of the points
+     * @param single whether to find the field one point at a time rather
+     * than in a batch
+     * @return the x components and the y components
+     */
+    private static double[][] field(FieldKernel kernel, boolean wires,
+            double[] cx, double[] cy, double[] q, int n, double[] x,
+            double[] y, boolean single) {
+        int m = x.length;
+        double[][] field = new double[2][m];
+        if (!single) {
+            if (wires) {
+                kernel.wireField(cx, cy, q, n, x, y, field[0], field[1], m);
+            } else {
+                kernel.pointField(cx, cy, q, n, x, y, field[0], field[1],
+                        m);
+            }
+            return field;
+        }
+        double[] out = new double[2];
+        for (int j = 0; j < m; j++) {
+            out[0] = 0;
+            out[1] = 0;
+            if (wires) {
+                kernel.wireField(cx, cy, q, n, x[j], y[j], out);
+            } else {
+                kernel.pointField(cx, cy, q, n, x[j], y[j], out);
+            }
+            field[0][j] = out[0];
+            field[1][j] = out[1];
+        }
+        return field;
+    }
+
+    /**
+     * Find the sum of the magnitudes of the terms of a field, which bounds
+     * the rounding error of adding them in any order.
+     *
+     * @param cx the x positions of the charges
+     * @param cy the y positions of the charges
+     * @param q the strengths of the charges
+     * @param n the number of charges
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param wires whether the charges are wires rather than points
+     * @return the sum of the magnitudes
+     */
+    private static double scale(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, boolean wires) {
+        double scale = 0;
+        for (int i = 0; i < n; i++) {
+            double dx = x - cx[i];
+            double dy = y - cy[i];
+            double rSq = dx * dx + dy * dy;
+            scale += Math.abs(q[i]) / (wires ? Math.sqrt(rSq) : rSq);
+        }
+        return scale;
+    }
+
+}
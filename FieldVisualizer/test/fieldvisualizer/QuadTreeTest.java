@@ -0,0 +1,65 @@
+package fieldvisualizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+/**
+ * Checks that a quadtree refuses sources that its root could never grow to
+ * cover, and is left as it was.
+ *
+ * @author Jeff Niu
+ */
+public class QuadTreeTest {
+
+    /**
+     * Sources that are not at a finite position are refused.
+     */
+    @Test(timeout = 1000)
+    public void rejectsNonFinite() {
+        QuadTree tree = new QuadTree(0.5);
+        tree.add(new PointCharge(10, 20, 1));
+        double[] bad = {Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY};
+        for (double v : bad) {
+            reject(tree, new PointCharge(v, 0, 1));
+            reject(tree, new Wire(0, v, 1));
+        }
+        assertEquals(1, tree.size());
+    }
+
+    /**
+     * Sources out to the limit on both sides are taken without the root
+     * overflowing, and one beyond it is refused rather than growing the
+     * root forever.
+     */
+    @Test(timeout = 1000)
+    public void rejectsOutOfRange() {
+        QuadTree tree = new QuadTree(0.5);
+        tree.add(new PointCharge(0, 0, 1));
+        tree.add(new PointCharge(-QuadTree.LIMIT, QuadTree.LIMIT, 1));
+        tree.add(new Wire(QuadTree.LIMIT, -QuadTree.LIMIT, 1));
+        reject(tree, new PointCharge(Double.MAX_VALUE, 0, 1));
+        reject(tree, new BarMagnet(0, 0, 1, 10, Double.NaN));
+        assertEquals(3, tree.size());
+        double[] out = new double[2];
+        tree.fieldAt(1, 1, out);
+        assertTrue(Double.isFinite(out[0]) && Double.isFinite(out[1]));
+    }
+
+    /**
+     * Add a charge to a tree that must refuse it.
+     *
+     * @param tree the tree
+     * @param charge the charge
+     */
+    private static void reject(QuadTree tree, Charge charge) {
+        try {
+            tree.add(charge);
+            fail("Accepted " + charge);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+}
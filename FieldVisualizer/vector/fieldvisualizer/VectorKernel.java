@@ -0,0 +1,163 @@
+package fieldvisualizer;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The vector kernel sums the field of as many charges at once as fit in
+ * the widest vector register of the processor, four doubles with AVX2 and
+ * eight with AVX-512, using the incubating JDK vector API. At a single
+ * point, the charges are loaded a vector at a time, and the sums of each
+ * lane are added together at the end. For a batch of points, the points
+ * are loaded a vector at a time and each charge is broadcast to every
+ * lane. The charges left over after the last whole vector are summed one
+ * at a time. Square roots and divisions are correctly rounded in every
+ * lane, so the terms are the same as in the scalar kernel and only the
+ * order of the additions differs.
+ *
+ * This class is compiled separately, against a JDK with the vector module,
+ * and is loaded by name, so the rest of the engine does not depend on it.
+ *
+ * @author Jeff Niu
+ */
+class VectorKernel implements FieldKernel {
+
+    /**
+     * The widest vector shape of the processor.
+     */
+    private static final VectorSpecies<Double> SPECIES =
+            DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getName() {
+        return "vector";
+    }
+
+    @Override
+    public void pointField(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, double[] out) {
+        DoubleVector px = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector py = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector xSum = DoubleVector.zero(SPECIES);
+        DoubleVector ySum = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dx = px.sub(DoubleVector.fromArray(SPECIES, cx, i));
+            DoubleVector dy = py.sub(DoubleVector.fromArray(SPECIES, cy, i));
+            DoubleVector rSq = dx.mul(dx).add(dy.mul(dy));
+            DoubleVector mag = DoubleVector.fromArray(SPECIES, q, i)
+                    .div(rSq.mul(rSq.sqrt()));
+            xSum = xSum.add(mag.mul(dx));
+            ySum = ySum.add(mag.mul(dy));
+        }
+        double xField = xSum.reduceLanes(VectorOperators.ADD);
+        double yField = ySum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double dx = x - cx[i];
+            double dy = y - cy[i];
+            double rSq = dx * dx + dy * dy;
+            double mag = q[i] / (rSq * Math.sqrt(rSq));
+            xField += mag * dx;
+            yField += mag * dy;
+        }
+        out[0] += xField;
+        out[1] += yField;
+    }
+
+    @Override
+    public void wireField(double[] cx, double[] cy, double[] q, int n,
+            double x, double y, double[] out) {
+        DoubleVector px = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector py = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector xSum = DoubleVector.zero(SPECIES);
+        DoubleVector ySum = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(n);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector dx = px.sub(DoubleVector.fromArray(SPECIES, cx, i));
+            DoubleVector dy = py.sub(DoubleVector.fromArray(SPECIES, cy, i));
+            DoubleVector mag = DoubleVector.fromArray(SPECIES, q, i)
+                    .div(dx.mul(dx).add(dy.mul(dy)));
+            xSum = xSum.sub(mag.mul(dy));
+            ySum = ySum.add(mag.mul(dx));
+        }
+        double xField = xSum.reduceLanes(VectorOperators.ADD);
+        double yField = ySum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            double dx = x - cx[i];
+            double dy = y - cy[i];
+            double mag = q[i] / (dx * dx + dy * dy);
+            xField -= mag * dy;
+            yField += mag * dx;
+        }
+        out[0] += xField;
+        out[1] += yField;
+    }
+
+    @Override
+    public void pointField(double[] cx, double[] cy, double[] q, int n,
+            double[] x, double[] y, double[] xField, double[] yField,
+            int m) {
+        int bound = SPECIES.loopBound(m);
+        for (int i = 0; i < n; i++) {
+            double px = cx[i];
+            double py = cy[i];
+            DoubleVector pq = DoubleVector.broadcast(SPECIES, q[i]);
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j)
+                        .sub(px);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j)
+                        .sub(py);
+                DoubleVector rSq = dx.mul(dx).add(dy.mul(dy));
+                DoubleVector mag = pq.div(rSq.mul(rSq.sqrt()));
+                DoubleVector.fromArray(SPECIES, xField, j)
+                        .add(mag.mul(dx)).intoArray(xField, j);
+                DoubleVector.fromArray(SPECIES, yField, j)
+                        .add(mag.mul(dy)).intoArray(yField, j);
+            }
+            for (; j < m; j++) {
+                double dx = x[j] - px;
+                double dy = y[j] - py;
+                double rSq = dx * dx + dy * dy;
+                double mag = q[i] / (rSq * Math.sqrt(rSq));
+                xField[j] += mag * dx;
+                yField[j] += mag * dy;
+            }
+        }
+    }
+
+    @Override
+    public void wireField(double[] cx, double[] cy, double[] q, int n,
+            double[] x, double[] y, double[] xField, double[] yField,
+            int m) {
+        int bound = SPECIES.loopBound(m);
+        for (int i = 0; i < n; i++) {
+            double wx = cx[i];
+            double wy = cy[i];
+            DoubleVector wq = DoubleVector.broadcast(SPECIES, q[i]);
+            int j = 0;
+            for (; j < bound; j += SPECIES.length()) {
+                DoubleVector dx = DoubleVector.fromArray(SPECIES, x, j)
+                        .sub(wx);
+                DoubleVector dy = DoubleVector.fromArray(SPECIES, y, j)
+                        .sub(wy);
+                DoubleVector mag = wq.div(dx.mul(dx).add(dy.mul(dy)));
+                DoubleVector.fromArray(SPECIES, xField, j)
+                        .sub(mag.mul(dy)).intoArray(xField, j);
+                DoubleVector.fromArray(SPECIES, yField, j)
+                        .add(mag.mul(dx)).intoArray(yField, j);
+            }
+            for (; j < m; j++) {
+                double dx = x[j] - wx;
+                double dy = y[j] - wy;
+                double mag = q[i] / (dx * dx + dy * dy);
+                xField[j] -= mag * dy;
+                yField[j] += mag * dx;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,4 @@
+package fieldvisualizer.benchmarks.jmh_generated;
+public class FieldAtBenchmark_jmhType extends FieldAtBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package fieldvisualizer.benchmarks.jmh_generated;
+public class TraceBenchmark_jmhType extends TraceBenchmark_jmhType_B3 {
+}
+
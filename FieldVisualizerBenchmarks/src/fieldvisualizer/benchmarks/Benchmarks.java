@@ -0,0 +1,35 @@
+package fieldvisualizer.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler, so that the allocation rate of
+ * each benchmark is reported next to its time. The arguments are the usual
+ * JMH options, such as a pattern of the benchmarks to run or
+ * {@code -p scene=dipole} to run a single scene.
+ *
+ * @author Jeff Niu
+ */
+public class Benchmarks {
+
+    /**
+     * @param args the JMH options
+     * @throws CommandLineOptionException if the options are not valid
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String[] args) throws CommandLineOptionException,
+            RunnerException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,106 @@
+package fieldvisualizer.benchmarks;
+
+import fieldvisualizer.Charge;
+import fieldvisualizer.ChargeStore;
+import fieldvisualizer.Field;
+import fieldvisualizer.QuadTree;
+import fieldvisualizer.Vector;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of evaluating the field at a single point, through the
+ * static sum over the charge objects, through the primitive columns of a
+ * charge store, and through a Barnes-Hut quadtree. Each call evaluates the
+ * field at the next of a fixed set of random points on the screen.
+ *
+ * @author Jeff Niu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAtBenchmark {
+
+    /**
+     * The number of points that the field is evaluated at in turn.
+     */
+    private static final int POINTS = 1024;
+
+    /**
+     * The scene.
+     */
+    @Param({"dipole", "cloud-10", "cloud-100", "cloud-1000", "cloud-10000",
+        "solenoid-40", "magnets-16"})
+    public String scene;
+
+    private Charge[] charges;
+    private ChargeStore store;
+    private QuadTree tree;
+    private double[] x;
+    private double[] y;
+    private double[] out;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<Charge> list = Scenes.create(scene);
+        charges = list.toArray(new Charge[list.size()]);
+        store = new ChargeStore(charges);
+        tree = new QuadTree(0.5);
+        for (Charge charge : charges) {
+            tree.add(charge);
+        }
+        Random random = new Random(7);
+        x = new double[POINTS];
+        y = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = random.nextDouble() * Scenes.WIDTH;
+            y[i] = random.nextDouble() * Scenes.HEIGHT;
+        }
+        out = new double[2];
+    }
+
+    /**
+     * @return the index of the next point
+     */
+    private int point() {
+        next = (next + 1) & (POINTS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public Vector charges() {
+        int i = point();
+        return Field.fieldAt(x[i], y[i], charges);
+    }
+
+    @Benchmark
+    public double[] store() {
+        int i = point();
+        store.fieldAt(x[i], y[i], out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] barnesHut() {
+        int i = point();
+        tree.fieldAt(x[i], y[i], out);
+        return out;
+    }
+
+}
@@ -0,0 +1,85 @@
+package fieldvisualizer.benchmarks;
+
+import fieldvisualizer.ElectroMagneticField;
+import fieldvisualizer.EulerIntegrator;
+import fieldvisualizer.PathIterator;
+import static java.lang.Math.PI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of turning traced points into paths and of visiting the
+ * segments of the paths, apart from the cost of tracing. The points of
+ * every line of a scene are traced once, and each call builds or visits
+ * the paths of all of them.
+ *
+ * @author Jeff Niu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+    /**
+     * The scene.
+     */
+    @Param({"dipole", "cloud-100", "solenoid-40", "magnets-16"})
+    public String scene;
+
+    private double[][] points;
+    private PathIterator[] paths;
+
+    @Setup
+    public void setup() {
+        ElectroMagneticField field = new ElectroMagneticField();
+        field.getCharges().addAll(Scenes.create(scene));
+        List<PathIterator> trace = field.trace(PI / 6,
+                new EulerIntegrator(3));
+        paths = trace.toArray(new PathIterator[trace.size()]);
+        points = new double[paths.length][];
+        for (int i = 0; i < paths.length; i++) {
+            PathIterator path = paths[i];
+            points[i] = new double[path.size() * 2];
+            for (int k = 0; k < path.size(); k++) {
+                points[i][2 * k] = path.getX(k);
+                points[i][2 * k + 1] = path.getY(k);
+            }
+        }
+    }
+
+    @Benchmark
+    public void materialize(Blackhole hole) {
+        for (double[] line : points) {
+            hole.consume(new PathIterator(line, line.length));
+        }
+    }
+
+    @Benchmark
+    public double iterate() {
+        double sum = 0;
+        for (PathIterator path : paths) {
+            path.reset();
+            while (path.hasNext()) {
+                path.next();
+                sum += path.getX2() - path.getX1();
+            }
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,135 @@
+package fieldvisualizer.benchmarks;
+
+import fieldvisualizer.BarMagnet;
+import fieldvisualizer.Charge;
+import fieldvisualizer.PointCharge;
+import fieldvisualizer.Wire;
+import static java.lang.Math.PI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The standard scenes that the benchmarks are run on. A scene is named by
+ * its kind and, except for the dipole, the number of objects in it:
+ * <ul>
+ * <li>{@code dipole}, a positive and a negative point charge;</li>
+ * <li>{@code cloud-n}, n point charges of random sign and size scattered
+ * over the screen;</li>
+ * <li>{@code solenoid-n}, the cross section of a solenoid, as two facing
+ * rows of n / 2 wires carrying current in and out of the screen;</li>
+ * <li>{@code magnets-n}, a grid of n bar magnets of alternating
+ * orientation.</li>
+ * </ul>
+ * Every scene fits the 1600 by 900 screen of the simulator, and random
+ * scenes are seeded, so a scene is the same in every run.
+ *
+ * @author Jeff Niu
+ */
+public final class Scenes {
+
+    /**
+     * The size of the screen that the scenes are laid out on.
+     */
+    public static final double WIDTH = 1600;
+    public static final double HEIGHT = 900;
+
+    /**
+     * The seed of the random scenes.
+     */
+    private static final long SEED = 42;
+
+    private Scenes() {
+    }
+
+    /**
+     * Create a scene by name.
+     *
+     * @param name the name of the scene
+     * @return the objects in the scene
+     * @throws IllegalArgumentException if there is no scene of the name
+     */
+    public static List<Charge> create(String name) {
+        if (name.equals("dipole")) {
+            return dipole();
+        }
+        int dash = name.indexOf('-');
+        if (dash > 0) {
+            String kind = name.substring(0, dash);
+            int count = Integer.parseInt(name.substring(dash + 1));
+            switch (kind) {
+                case "cloud":
+                    return cloud(count);
+                case "solenoid":
+                    return solenoid(count);
+                case "magnets":
+                    return magnets(count);
+            }
+        }
+        throw new IllegalArgumentException("Unknown scene " + name);
+    }
+
+    /**
+     * @return a positive and a negative point charge
+     */
+    public static List<Charge> dipole() {
+        List<Charge> scene = new ArrayList<>();
+        scene.add(new PointCharge(500, 450, 1));
+        scene.add(new PointCharge(1100, 450, -1));
+        return scene;
+    }
+
+    /**
+     * @param count the number of charges
+     * @return point charges of random sign and size
+     */
+    public static List<Charge> cloud(int count) {
+        Random random = new Random(SEED);
+        List<Charge> scene = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double x = 100 + random.nextDouble() * (WIDTH - 200);
+            double y = 100 + random.nextDouble() * (HEIGHT - 200);
+            double q = (0.5 + random.nextDouble())
+                    * (random.nextBoolean() ? 1 : -1);
+            scene.add(new PointCharge(x, y, q));
+        }
+        return scene;
+    }
+
+    /**
+     * @param count the number of wires
+     * @return two facing rows of wires with opposite currents
+     */
+    public static List<Charge> solenoid(int count) {
+        List<Charge> scene = new ArrayList<>(count);
+        int turns = count / 2;
+        double spacing = (WIDTH - 400) / Math.max(turns, 1);
+        for (int i = 0; i < turns; i++) {
+            double x = 200 + (i + 0.5) * spacing;
+            scene.add(new Wire(x, HEIGHT / 2 - 150, 1));
+            scene.add(new Wire(x, HEIGHT / 2 + 150, -1));
+        }
+        return scene;
+    }
+
+    /**
+     * @param count the number of magnets
+     * @return a grid of bar magnets of alternating orientation
+     */
+    public static List<Charge> magnets(int count) {
+        List<Charge> scene = new ArrayList<>(count);
+        int columns = (int) Math.ceil(Math.sqrt(count * WIDTH / HEIGHT));
+        int rows = (count + columns - 1) / columns;
+        double dx = WIDTH / columns;
+        double dy = HEIGHT / rows;
+        for (int i = 0; i < count; i++) {
+            int row = i / columns;
+            int column = i % columns;
+            double arg = (row + column) % 2 == 0 ? 0 : PI / 2;
+            scene.add(new BarMagnet((column + 0.5) * dx, (row + 0.5) * dy,
+                    1, Math.min(dx, dy) / 4, arg));
+        }
+        return scene;
+    }
+
+}
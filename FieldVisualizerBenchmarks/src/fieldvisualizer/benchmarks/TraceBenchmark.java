@@ -0,0 +1,111 @@
+package fieldvisualizer.benchmarks;
+
+import fieldvisualizer.DormandPrinceIntegrator;
+import fieldvisualizer.ElectroMagneticField;
+import fieldvisualizer.EulerIntegrator;
+import fieldvisualizer.Integrator;
+import fieldvisualizer.ParallelTracer;
+import fieldvisualizer.PathIterator;
+import fieldvisualizer.Viewport;
+import static java.lang.Math.PI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of tracing every field line of a scene, as the displays do for
+ * each frame, on the calling thread and on a parallel tracer. The larger
+ * random clouds are left out, since tracing them takes minutes. The GC
+ * profiler only counts what the benchmark thread allocates, so the lines
+ * traced by the pool threads of the parallel tracer are not in its
+ * allocation rate.
+ *
+ * @author Jeff Niu
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraceBenchmark {
+
+    /**
+     * The scene.
+     */
+    @Param({"dipole", "cloud-10", "cloud-100", "solenoid-40", "magnets-16"})
+    public String scene;
+
+    /**
+     * The integrator, either {@code euler} with the original step of 3 or
+     * {@code dormand-prince} with the tolerance used by the displays.
+     */
+    @Param({"euler", "dormand-prince"})
+    public String integrator;
+
+    /**
+     * The middle of the screen zoomed in four times.
+     */
+    private static final Viewport ZOOMED = Viewport.DEFAULT.zoom(4, 800, 450);
+
+    private ElectroMagneticField field;
+    private ElectroMagneticField parallelField;
+    private ParallelTracer tracer;
+    private Integrator stepper;
+
+    @Setup
+    public void setup() {
+        field = new ElectroMagneticField();
+        field.getCharges().addAll(Scenes.create(scene));
+        tracer = new ParallelTracer();
+        parallelField = new ElectroMagneticField();
+        parallelField.getCharges().addAll(Scenes.create(scene));
+        parallelField.setTracer(tracer);
+        switch (integrator) {
+            case "euler":
+                stepper = new EulerIntegrator(3);
+                break;
+            case "dormand-prince":
+                stepper = new DormandPrinceIntegrator(3, 0.05);
+                break;
+            default:
+                throw new IllegalArgumentException(integrator);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        tracer.shutdown();
+    }
+
+    @Benchmark
+    public List<PathIterator> trace() {
+        return field.trace(PI / 6, stepper);
+    }
+
+    @Benchmark
+    public List<PathIterator> parallelTrace() {
+        return parallelField.trace(PI / 6, stepper);
+    }
+
+    /**
+     * Trace the middle of the scene zoomed in four times, which should
+     * cost less than the whole screen since lines end once they leave it.
+     */
+    @Benchmark
+    public List<PathIterator> zoomedTrace() {
+        return field.trace(PI / 6, stepper, ZOOMED);
+    }
+
+}